@@ -81,8 +81,8 @@ public class ExampleUsage {
             public void onDataReceived(byte[] data) {
                 Log.d(TAG, "Data received: " + RadioProtocolCommands.bytesToHex(data));
                 
-                // Parse the received data
-                protocolHandler.parseReceivedData(data);
+                // Reassemble frames and parse them
+                protocolHandler.onNotificationReceived(data);
             }
         });
         
@@ -0,0 +1,521 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Radio Async Listener
+ * 
+ * Delivers updates to a RadioStatusListener on its own executor through a
+ * bounded queue, so a slow consumer (e.g. one writing to disk) cannot hold
+ * up the thread that parses notifications or the other listeners.
+ * 
+ * When the queue is full the overflow policy decides what happens:
+ * - BLOCK: the parsing thread waits for room (nothing is lost, but a slow
+ *   consumer slows parsing down again)
+ * - DROP_OLDEST: the oldest queued update is discarded
+ * - CONFLATE: at most one update per field is queued; a newer value
+ *   replaces the queued one, so the consumer always sees the latest signal
+ *   or volume value and the queue never fills
+ * 
+ * Queue slots are allocated once and reused; enqueueing copies the values
+ * (including RadioStatus and channel text) into the slot, so queuing an
+ * update allocates nothing.
+ */
+public class RadioAsyncListener implements RadioStatusListener {
+    
+    private static final String TAG = "RadioAsyncListener";
+    
+    /** Default queue capacity */
+    public static final int DEFAULT_CAPACITY = 64;
+    
+    /**
+     * What to do with an update when the queue is full
+     */
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP_OLDEST,
+        CONFLATE
+    }
+    
+    
+    // ==================== QUEUE SLOT ====================
+    
+    /**
+     * One queued update; field is a RadioChangeFilter.FIELD_* identifier
+     */
+    private static final class Event {
+        int field;
+        long longValue;           // Frequency
+        int intValue;             // Band, volume, strength, record index, battery
+        boolean flag;             // Locked, recording
+        String text;              // Device info
+        RadioStatus status;       // Created on first status update
+        StringBuilder chars;      // Created on first channel display update
+        
+        void copyFrom(Event other) {
+            field = other.field;
+            longValue = other.longValue;
+            intValue = other.intValue;
+            flag = other.flag;
+            text = other.text;
+            if (other.field == RadioChangeFilter.FIELD_STATUS) {
+                if (status == null) {
+                    status = new RadioStatus();
+                }
+                status.copyFrom(other.status);
+            } else if (other.field == RadioChangeFilter.FIELD_CHANNEL_DISPLAY) {
+                if (chars == null) {
+                    chars = new StringBuilder();
+                }
+                chars.setLength(0);
+                chars.append(other.chars);
+            }
+        }
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final RadioStatusListener target;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor; // Shut down by shutdown(), null for a caller's executor
+    private final Runnable drainTask = this::drain;
+    
+    // Ring of reusable slots (guarded by this)
+    private final Event[] ring;
+    private int head;
+    private int count;
+    private final int[] queuedSlot = new int[RadioChangeFilter.FIELD_COUNT]; // CONFLATE: slot per field, or -1
+    private boolean drainScheduled;
+    private boolean shutdown;
+    
+    // Only touched by the running drain
+    private final Event delivering = new Event();
+    
+    // Statistics (guarded by this)
+    private long eventsEnqueued;
+    private long eventsDelivered;
+    private long eventsDropped;
+    private long eventsConflated;
+    private int peakQueueDepth;
+    private long blockedNanos;
+    
+    
+    // ==================== CONSTRUCTORS ====================
+    
+    /**
+     * Create an async listener with its own daemon thread
+     * 
+     * @param target Listener to call on the delivery thread
+     * @param policy What to do when the queue is full
+     * @param capacity Queue capacity (at least RadioChangeFilter.FIELD_COUNT for CONFLATE)
+     */
+    public RadioAsyncListener(RadioStatusListener target, OverflowPolicy policy, int capacity) {
+        this(target, policy, capacity, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RadioAsyncListener");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+    
+    /**
+     * Create an async listener that delivers on a caller-supplied executor
+     * (e.g. one posting to the UI thread). Deliveries never overlap.
+     * 
+     * @param target Listener to call on the executor
+     * @param policy What to do when the queue is full
+     * @param capacity Queue capacity (at least RadioChangeFilter.FIELD_COUNT for CONFLATE)
+     * @param executor Executor that runs deliveries
+     */
+    public RadioAsyncListener(RadioStatusListener target, OverflowPolicy policy, int capacity, Executor executor) {
+        this(target, policy, capacity, executor, false);
+    }
+    
+    private RadioAsyncListener(RadioStatusListener target, OverflowPolicy policy, int capacity,
+                               Executor executor, boolean ownsExecutor) {
+        if (target == null || policy == null || executor == null) {
+            throw new IllegalArgumentException("Target, policy and executor must not be null");
+        }
+        int minimum = policy == OverflowPolicy.CONFLATE ? RadioChangeFilter.FIELD_COUNT : 1;
+        if (capacity < minimum) {
+            throw new IllegalArgumentException("Capacity must be >= " + minimum + " for " + policy + ": " + capacity);
+        }
+        this.target = target;
+        this.policy = policy;
+        this.executor = executor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+        }
+        Arrays.fill(queuedSlot, -1);
+    }
+    
+    
+    // ==================== LISTENER METHODS ====================
+    
+    @Override
+    public void onFrequencyChanged(long frequencyHz, byte band) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_FREQUENCY);
+            if (event == null) {
+                return;
+            }
+            event.longValue = frequencyHz;
+            event.intValue = band;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onVolumeChanged(int volume) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_VOLUME);
+            if (event == null) {
+                return;
+            }
+            event.intValue = volume;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onSignalStrengthChanged(int strength) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_SIGNAL_STRENGTH);
+            if (event == null) {
+                return;
+            }
+            event.intValue = strength;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onStatusUpdate(RadioStatus status) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_STATUS);
+            if (event == null) {
+                return;
+            }
+            if (event.status == null) {
+                event.status = new RadioStatus();
+            }
+            event.status.copyFrom(status);
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onDeviceInfo(String deviceInfo) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_DEVICE_INFO);
+            if (event == null) {
+                return;
+            }
+            event.text = deviceInfo;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onLockStatusChanged(boolean isLocked) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_LOCK_STATUS);
+            if (event == null) {
+                return;
+            }
+            event.flag = isLocked;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_RECORDING_STATUS);
+            if (event == null) {
+                return;
+            }
+            event.flag = isRecording;
+            event.intValue = recordIndex;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onBatteryLevel(int batteryPercent) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_BATTERY);
+            if (event == null) {
+                return;
+            }
+            event.intValue = batteryPercent;
+        }
+        scheduleDrain();
+    }
+    
+    @Override
+    public void onChannelDisplay(CharSequence channelText) {
+        synchronized (this) {
+            Event event = claim(RadioChangeFilter.FIELD_CHANNEL_DISPLAY);
+            if (event == null) {
+                return;
+            }
+            if (event.chars == null) {
+                event.chars = new StringBuilder();
+            }
+            event.chars.setLength(0);
+            event.chars.append(channelText);
+        }
+        scheduleDrain();
+    }
+    
+    
+    // ==================== CONTROL ====================
+    
+    /**
+     * Stop accepting updates, discard queued ones and stop the delivery
+     * thread if this listener created it
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            eventsDropped += count;
+            head = 0;
+            count = 0;
+            Arrays.fill(queuedSlot, -1);
+            notifyAll();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+    
+    
+    // ==================== QUEUE HANDLING ====================
+    
+    /**
+     * Get the slot to write an update into, applying the overflow policy
+     * (caller holds the lock)
+     * 
+     * @param field RadioChangeFilter.FIELD_* identifier
+     * @return Slot to fill, or null if the update is discarded
+     */
+    private Event claim(int field) {
+        if (shutdown) {
+            return null;
+        }
+        if (policy == OverflowPolicy.CONFLATE && queuedSlot[field] >= 0) {
+            eventsConflated++;
+            return ring[queuedSlot[field]];
+        }
+        
+        if (count == ring.length) {
+            if (policy == OverflowPolicy.BLOCK) {
+                if (!awaitRoom()) {
+                    eventsDropped++;
+                    return null;
+                }
+            } else {
+                head = (head + 1) % ring.length;
+                count--;
+                eventsDropped++;
+            }
+        }
+        
+        int slot = (head + count) % ring.length;
+        count++;
+        if (policy == OverflowPolicy.CONFLATE) {
+            queuedSlot[field] = slot;
+        }
+        eventsEnqueued++;
+        if (count > peakQueueDepth) {
+            peakQueueDepth = count;
+        }
+        Event event = ring[slot];
+        event.field = field;
+        return event;
+    }
+    
+    /**
+     * Wait until the queue has room (caller holds the lock)
+     * 
+     * @return false if interrupted or shut down while waiting
+     */
+    private boolean awaitRoom() {
+        long start = System.nanoTime();
+        try {
+            while (count == ring.length && !shutdown) {
+                wait();
+            }
+            return !shutdown;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            blockedNanos += System.nanoTime() - start;
+        }
+    }
+    
+    private void scheduleDrain() {
+        synchronized (this) {
+            if (drainScheduled || count == 0) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        try {
+            executor.execute(drainTask);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            RadioLog.w(TAG, "Executor rejected delivery: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Delivery task: hand queued updates to the target until the queue is
+     * empty. Only one drain runs at a time.
+     */
+    private void drain() {
+        while (true) {
+            synchronized (this) {
+                if (count == 0 || shutdown) {
+                    drainScheduled = false;
+                    return;
+                }
+                Event event = ring[head];
+                delivering.copyFrom(event);
+                if (policy == OverflowPolicy.CONFLATE) {
+                    queuedSlot[event.field] = -1;
+                }
+                head = (head + 1) % ring.length;
+                count--;
+                eventsDelivered++;
+                notifyAll();
+            }
+            deliver(delivering);
+        }
+    }
+    
+    private void deliver(Event event) {
+        try {
+            switch (event.field) {
+                case RadioChangeFilter.FIELD_FREQUENCY:
+                    target.onFrequencyChanged(event.longValue, (byte) event.intValue);
+                    break;
+                case RadioChangeFilter.FIELD_VOLUME:
+                    target.onVolumeChanged(event.intValue);
+                    break;
+                case RadioChangeFilter.FIELD_SIGNAL_STRENGTH:
+                    target.onSignalStrengthChanged(event.intValue);
+                    break;
+                case RadioChangeFilter.FIELD_STATUS:
+                    target.onStatusUpdate(event.status);
+                    break;
+                case RadioChangeFilter.FIELD_DEVICE_INFO:
+                    target.onDeviceInfo(event.text);
+                    break;
+                case RadioChangeFilter.FIELD_LOCK_STATUS:
+                    target.onLockStatusChanged(event.flag);
+                    break;
+                case RadioChangeFilter.FIELD_RECORDING_STATUS:
+                    target.onRecordingStatusChanged(event.flag, event.intValue);
+                    break;
+                case RadioChangeFilter.FIELD_BATTERY:
+                    target.onBatteryLevel(event.intValue);
+                    break;
+                case RadioChangeFilter.FIELD_CHANNEL_DISPLAY:
+                    target.onChannelDisplay(event.chars);
+                    break;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            RadioLog.e(TAG, "Listener " + target + " failed", e);
+        }
+    }
+    
+    
+    // ==================== STATISTICS ====================
+    
+    /** Updates currently queued */
+    public synchronized int getQueueDepth() {
+        return count;
+    }
+    
+    /** Highest queue depth seen since creation or the last reset */
+    public synchronized int getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+    
+    /** Updates queued so far (conflated updates are not counted again) */
+    public synchronized long getEventsEnqueued() {
+        return eventsEnqueued;
+    }
+    
+    /** Updates handed to the target so far */
+    public synchronized long getEventsDelivered() {
+        return eventsDelivered;
+    }
+    
+    /** Updates discarded because the queue was full or shut down */
+    public synchronized long getEventsDropped() {
+        return eventsDropped;
+    }
+    
+    /** Updates that replaced a queued value of the same field (CONFLATE) */
+    public synchronized long getEventsConflated() {
+        return eventsConflated;
+    }
+    
+    /** Total time the parsing thread spent waiting for room (BLOCK) */
+    public synchronized long getBlockedNanos() {
+        return blockedNanos;
+    }
+    
+    /**
+     * Reset the peak queue depth to the current depth
+     */
+    public synchronized void resetPeakQueueDepth() {
+        peakQueueDepth = count;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "RadioAsyncListener{" +
+                "policy=" + policy +
+                ", depth=" + count + '/' + ring.length +
+                ", peak=" + peakQueueDepth +
+                ", enqueued=" + eventsEnqueued +
+                ", delivered=" + eventsDelivered +
+                ", dropped=" + eventsDropped +
+                ", conflated=" + eventsConflated +
+                '}';
+    }
+    
+    
+    // ==================== GETTERS ====================
+    
+    public RadioStatusListener getTarget() {
+        return target;
+    }
+    
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+    
+    public int getCapacity() {
+        return ring.length;
+    }
+}
@@ -10,8 +10,8 @@ import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.BluetoothProfile;
 import android.content.Context;
-import android.util.Log;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -24,8 +24,11 @@ import java.util.UUID;
  * - Main Service: Standard BLE service containing radio characteristics
  * - Write Characteristic: 0000ff13-0000-1000-8000-00805f9b34fb (for sending commands)
  * - Notify Characteristic: 0000ff14-0000-1000-8000-00805f9b34fb (for receiving data)
+ * 
+ * Notifications are delivered to the DataReceivedListeners on the GATT
+ * callback thread, or copied into a RadioNotificationRing when one is set.
  */
-public class RadioBluetoothManager {
+public class RadioBluetoothManager implements RadioLinkWatchdog.Link {
     
     private static final String TAG = "RadioBluetooth";
     
@@ -68,7 +71,19 @@ public class RadioBluetoothManager {
     
     private ConnectionState connectionState = ConnectionState.DISCONNECTED;
     private ConnectionListener connectionListener;
-    private DataReceivedListener dataReceivedListener;
+    private volatile DataReceivedListener[] dataReceivedListeners = new DataReceivedListener[0]; // Copy-on-write
+    private volatile RadioNotificationRing notificationRing; // When set, receives notifications instead of the listeners
+    private final CommandWriter commandWriter;
+    private volatile RadioSessionJournal journal; // When set, records every frame received and written
+    private volatile RadioMetrics metrics; // When set, counts commands and write failures
+    private volatile RadioTracer tracer; // When set, times receipts, sends and write completions
+    private volatile RadioRoundTripTracker roundTripTracker; // When set, stamps every command written
+    private volatile Object pendingWriteTrace; // WRITE event of the command awaiting onCharacteristicWrite
+    private volatile byte[] pendingWriteCommand;
+    private volatile String deviceAddress;
+    private volatile RadioLinkWatchdog watchdog; // When set, told about every notification
+    private BluetoothDevice device; // Last passed to connect(), for restart()
+    private volatile boolean reconnecting; // Reconnect on the next STATE_DISCONNECTED instead of closing
     
     
     // ==================== LISTENER INTERFACES ====================
@@ -83,11 +98,24 @@ public class RadioBluetoothManager {
     
     /**
      * Listener for received data from radio
+     * 
+     * Each call delivers one raw notification, which may hold a partial frame
+     * or several frames; pass it to RadioProtocolHandler.onNotificationReceived().
      */
     public interface DataReceivedListener {
         void onDataReceived(byte[] data);
     }
     
+    /**
+     * Writes one command packet to the radio
+     * 
+     * The default writes the GATT write characteristic; benchmarks and tools
+     * substitute an in-memory writer.
+     */
+    interface CommandWriter {
+        boolean write(byte[] command);
+    }
+    
     
     // ==================== CONSTRUCTOR ====================
     
@@ -100,6 +128,21 @@ public class RadioBluetoothManager {
         this.context = context;
         this.bluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
         this.bluetoothAdapter = bluetoothManager.getAdapter();
+        this.commandWriter = this::writeToGatt;
+    }
+    
+    /**
+     * Create a manager without a Bluetooth connection that sends commands
+     * to the given writer; it starts in the READY state
+     * 
+     * @param commandWriter Receives every command passed to sendCommand()
+     */
+    RadioBluetoothManager(CommandWriter commandWriter) {
+        this.context = null;
+        this.bluetoothManager = null;
+        this.bluetoothAdapter = null;
+        this.commandWriter = commandWriter;
+        this.connectionState = ConnectionState.READY;
     }
     
     
@@ -113,39 +156,61 @@ public class RadioBluetoothManager {
      */
     public boolean connect(BluetoothDevice device) {
         if (bluetoothAdapter == null || device == null) {
-            Log.e(TAG, "BluetoothAdapter not initialized or device null");
+            RadioLog.e(TAG, "BluetoothAdapter not initialized or device null");
             return false;
         }
         
         if (bluetoothGatt != null) {
-            Log.w(TAG, "Closing existing GATT connection");
+            RadioLog.w(TAG, "Closing existing GATT connection");
             bluetoothGatt.close();
             bluetoothGatt = null;
         }
         
-        Log.d(TAG, "Connecting to device: " + device.getAddress());
+        RadioLog.d(TAG, "Connecting to device: {}", device.getAddress());
+        deviceAddress = device.getAddress();
+        this.device = device;
         connectionState = ConnectionState.CONNECTING;
         notifyConnectionStateChanged();
         
+        RadioLinkWatchdog watchdog = this.watchdog;
+        if (watchdog != null) {
+            watchdog.resume();
+        }
+        
         // Connect to GATT server on the device
         bluetoothGatt = device.connectGatt(context, false, gattCallback);
         return bluetoothGatt != null;
     }
     
     /**
-     * Disconnect from the radio device
+     * Disconnect from the radio device; the watchdog is paused until the
+     * next connect()
      */
     public void disconnect() {
+        pauseWatchdog();
         if (bluetoothGatt != null) {
-            Log.d(TAG, "Disconnecting from device");
+            RadioLog.d(TAG, "Disconnecting from device");
             bluetoothGatt.disconnect();
         }
     }
     
     /**
-     * Close and cleanup the GATT connection
+     * Close and cleanup the GATT connection; the watchdog is paused until
+     * the next connect()
      */
     public void close() {
+        pauseWatchdog();
+        closeGatt();
+    }
+    
+    private void pauseWatchdog() {
+        RadioLinkWatchdog watchdog = this.watchdog;
+        if (watchdog != null) {
+            watchdog.pause();
+        }
+    }
+    
+    private void closeGatt() {
         if (bluetoothGatt != null) {
             bluetoothGatt.close();
             bluetoothGatt = null;
@@ -157,6 +222,65 @@ public class RadioBluetoothManager {
     }
     
     
+    // ==================== LINK RECOVERY ====================
+    
+    /**
+     * Enable notifications again on the current connection, for a link
+     * that is connected but has stopped delivering them
+     * 
+     * @return true if the descriptor write was initiated
+     */
+    @Override
+    public boolean reenableNotifications() {
+        RadioLog.w(TAG, "Re-enabling notifications");
+        return enableNotifications();
+    }
+    
+    /**
+     * Drop the GATT connection and re-establish it with the same client;
+     * services are discovered again once connected
+     * 
+     * @return true if the disconnect was initiated
+     */
+    @Override
+    public boolean reconnect() {
+        BluetoothGatt gatt = bluetoothGatt;
+        if (gatt == null) {
+            return restart();
+        }
+        RadioLog.w(TAG, "Reconnecting to device: {}", deviceAddress);
+        RadioMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onReconnect();
+        }
+        reconnecting = true;
+        gatt.disconnect();
+        return true;
+    }
+    
+    /**
+     * Close the GATT client and connect again from scratch
+     * 
+     * @return true if the connection attempt started
+     */
+    @Override
+    public boolean restart() {
+        BluetoothDevice device = this.device;
+        if (device == null) {
+            RadioLog.e(TAG, "No device to restart the connection to");
+            return false;
+        }
+        RadioLog.w(TAG, "Restarting connection to device: {}", deviceAddress);
+        RadioMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onRestart();
+        }
+        reconnecting = false;
+        closeGatt(); // Not close(): that would pause the watchdog running this recovery
+        return connect(device);
+    }
+    
+    
     // ==================== DATA TRANSMISSION ====================
     
     /**
@@ -165,26 +289,78 @@ public class RadioBluetoothManager {
      * @param command Command byte array to send
      * @return true if write was initiated successfully
      */
+    @Override
     public boolean sendCommand(byte[] command) {
+        RadioMetrics metrics = this.metrics;
         if (connectionState != ConnectionState.READY) {
-            Log.e(TAG, "Not ready to send commands. State: " + connectionState);
+            RadioLog.e(TAG, "Not ready to send commands. State: {}", connectionState);
+            if (metrics != null) {
+                metrics.onCommandRejected();
+            }
             return false;
         }
         
-        if (writeCharacteristic == null) {
-            Log.e(TAG, "Write characteristic not available");
-            return false;
+        RadioTracer tracer = this.tracer;
+        if (tracer == null) {
+            return writeCommand(command, metrics);
+        }
+        Object sendTrace = tracer.begin(RadioTracer.SEND);
+        Object writeTrace = tracer.begin(RadioTracer.WRITE);
+        if (writeTrace != null) {
+            // Set before the write so a fast onCharacteristicWrite finds it
+            pendingWriteCommand = command;
+            pendingWriteTrace = writeTrace;
+        }
+        boolean result = writeCommand(command, metrics);
+        if (writeTrace != null && !result) {
+            pendingWriteTrace = null;
+        }
+        if (sendTrace != null) {
+            tracer.end(sendTrace, deviceAddress, opcodeOf(command), command.length, result ? 1 : 0);
+        }
+        return result;
+    }
+    
+    private boolean writeCommand(byte[] command, RadioMetrics metrics) {
+        boolean result = commandWriter.write(command);
+        if (metrics != null) {
+            if (result) {
+                metrics.onCommandSent(command);
+            } else {
+                metrics.onCommandRejected();
+            }
         }
         
-        writeCharacteristic.setValue(command);
-        boolean result = bluetoothGatt.writeCharacteristic(writeCharacteristic);
+        RadioSessionJournal journal = this.journal;
+        if (result && journal != null) {
+            journal.appendSent(command);
+        }
         
-        Log.d(TAG, "Sending command: " + RadioProtocolCommands.bytesToHex(command) + 
-                   " Result: " + result);
+        RadioRoundTripTracker roundTripTracker = this.roundTripTracker;
+        if (result && roundTripTracker != null) {
+            roundTripTracker.onCommandSent(command);
+        }
+        
+        if (RadioLog.isDebugEnabled()) {
+            RadioLog.d(TAG, "Sending command: {} Result: {}", RadioProtocolCommands.bytesToHex(command), result);
+        }
         
         return result;
     }
     
+    /**
+     * Write a command to the GATT write characteristic
+     */
+    private boolean writeToGatt(byte[] command) {
+        if (writeCharacteristic == null) {
+            RadioLog.e(TAG, "Write characteristic not available");
+            return false;
+        }
+        
+        writeCharacteristic.setValue(command);
+        return bluetoothGatt.writeCharacteristic(writeCharacteristic);
+    }
+    
     /**
      * Enable notifications from the radio device
      * 
@@ -192,7 +368,7 @@ public class RadioBluetoothManager {
      */
     private boolean enableNotifications() {
         if (bluetoothGatt == null || notifyCharacteristic == null) {
-            Log.e(TAG, "GATT or notify characteristic not available");
+            RadioLog.e(TAG, "GATT or notify characteristic not available");
             return false;
         }
         
@@ -200,21 +376,21 @@ public class RadioBluetoothManager {
         boolean success = bluetoothGatt.setCharacteristicNotification(notifyCharacteristic, true);
         
         if (!success) {
-            Log.e(TAG, "Failed to enable characteristic notification");
+            RadioLog.e(TAG, "Failed to enable characteristic notification");
             return false;
         }
         
         // Enable remote notifications by writing to the descriptor
         BluetoothGattDescriptor descriptor = notifyCharacteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG);
         if (descriptor == null) {
-            Log.e(TAG, "Notification descriptor not found");
+            RadioLog.e(TAG, "Notification descriptor not found");
             return false;
         }
         
         descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
         success = bluetoothGatt.writeDescriptor(descriptor);
         
-        Log.d(TAG, "Notification descriptor write initiated: " + success);
+        RadioLog.d(TAG, "Notification descriptor write initiated: {}", success);
         return success;
     }
     
@@ -229,20 +405,31 @@ public class RadioBluetoothManager {
         @Override
         public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
             if (newState == BluetoothProfile.STATE_CONNECTED) {
-                Log.d(TAG, "Connected to GATT server");
+                RadioLog.d(TAG, "Connected to GATT server");
                 connectionState = ConnectionState.CONNECTED;
                 notifyConnectionStateChanged();
                 
                 // Discover services
-                Log.d(TAG, "Attempting to start service discovery");
+                RadioLog.d(TAG, "Attempting to start service discovery");
                 connectionState = ConnectionState.DISCOVERING_SERVICES;
                 gatt.discoverServices();
                 
             } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                Log.d(TAG, "Disconnected from GATT server");
+                RadioLog.d(TAG, "Disconnected from GATT server");
                 connectionState = ConnectionState.DISCONNECTED;
                 notifyConnectionStateChanged();
                 
+                if (reconnecting) {
+                    // reconnect(): keep the client and connect it again
+                    reconnecting = false;
+                    connectionState = ConnectionState.CONNECTING;
+                    notifyConnectionStateChanged();
+                    if (gatt.connect()) {
+                        return;
+                    }
+                    RadioLog.e(TAG, "Reconnect failed to start");
+                }
+                
                 if (bluetoothGatt != null) {
                     bluetoothGatt.close();
                     bluetoothGatt = null;
@@ -253,7 +440,7 @@ public class RadioBluetoothManager {
         @Override
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
             if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(TAG, "Services discovered successfully");
+                RadioLog.d(TAG, "Services discovered successfully");
                 
                 // Find our service and characteristics
                 boolean setupSuccess = setupCharacteristics(gatt);
@@ -267,15 +454,15 @@ public class RadioBluetoothManager {
                     
                     connectionState = ConnectionState.READY;
                     notifyConnectionStateChanged();
-                    Log.d(TAG, "Radio is ready for communication");
+                    RadioLog.d(TAG, "Radio is ready for communication");
                 } else {
-                    Log.e(TAG, "Failed to setup characteristics");
+                    RadioLog.e(TAG, "Failed to setup characteristics");
                     if (connectionListener != null) {
                         connectionListener.onConnectionError("Failed to find required characteristics");
                     }
                 }
             } else {
-                Log.e(TAG, "Service discovery failed with status: " + status);
+                RadioLog.e(TAG, "Service discovery failed with status: {}", status);
                 if (connectionListener != null) {
                     connectionListener.onConnectionError("Service discovery failed");
                 }
@@ -286,19 +473,64 @@ public class RadioBluetoothManager {
         public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
             // Data received from radio
             byte[] data = characteristic.getValue();
-            Log.d(TAG, "Data received: " + RadioProtocolCommands.bytesToHex(data));
             
-            if (dataReceivedListener != null) {
-                dataReceivedListener.onDataReceived(data);
+            RadioLinkWatchdog watchdog = RadioBluetoothManager.this.watchdog;
+            if (watchdog != null) {
+                watchdog.onFrameReceived();
+            }
+            
+            RadioTracer tracer = RadioBluetoothManager.this.tracer;
+            if (tracer == null) {
+                deliverNotification(data);
+                return;
+            }
+            Object trace = tracer.begin(RadioTracer.RECEIVE);
+            deliverNotification(data);
+            if (trace != null) {
+                tracer.end(trace, deviceAddress, opcodeOf(data), data.length, 0);
+            }
+        }
+        
+        private void deliverNotification(byte[] data) {
+            RadioSessionJournal journal = RadioBluetoothManager.this.journal;
+            if (journal != null) {
+                journal.appendReceived(data);
+            }
+            
+            RadioNotificationRing ring = notificationRing;
+            if (ring != null) {
+                // Copy into the ring and return to the Bluetooth stack; parsing runs on the ring's thread
+                if (!ring.publish(data)) {
+                    RadioLog.w(TAG, "Notification ring full, dropped {} bytes", data.length);
+                }
+                return;
+            }
+            
+            RadioLog.dHex(TAG, "Data received: ", data);
+            
+            for (DataReceivedListener listener : dataReceivedListeners) {
+                listener.onDataReceived(data);
             }
         }
         
         @Override
         public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            Object trace = pendingWriteTrace;
+            RadioTracer tracer = RadioBluetoothManager.this.tracer;
+            if (trace != null && tracer != null) {
+                pendingWriteTrace = null;
+                byte[] command = pendingWriteCommand;
+                tracer.end(trace, deviceAddress, opcodeOf(command), command.length, status);
+            }
+            
             if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(TAG, "Characteristic write successful");
+                RadioLog.d(TAG, "Characteristic write successful");
             } else {
-                Log.e(TAG, "Characteristic write failed with status: " + status);
+                RadioLog.e(TAG, "Characteristic write failed with status: {}", status);
+                RadioMetrics metrics = RadioBluetoothManager.this.metrics;
+                if (metrics != null) {
+                    metrics.onWriteFailure();
+                }
             }
         }
     };
@@ -306,6 +538,13 @@ public class RadioBluetoothManager {
     
     // ==================== HELPER METHODS ====================
     
+    /**
+     * Byte 1 of a frame or command, -1 if it is too short
+     */
+    private static int opcodeOf(byte[] data) {
+        return data != null && data.length > 1 ? data[1] & 0xFF : -1;
+    }
+    
     /**
      * Setup the GATT characteristics for communication
      * 
@@ -315,21 +554,21 @@ public class RadioBluetoothManager {
     private boolean setupCharacteristics(BluetoothGatt gatt) {
         // Iterate through all services to find our characteristics
         for (BluetoothGattService service : gatt.getServices()) {
-            Log.d(TAG, "Service UUID: " + service.getUuid());
+            RadioLog.d(TAG, "Service UUID: {}", service.getUuid());
             
             for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
                 UUID uuid = characteristic.getUuid();
-                Log.d(TAG, "  Characteristic UUID: " + uuid);
+                RadioLog.d(TAG, "  Characteristic UUID: {}", uuid);
                 
                 if (CHARACTERISTIC_WRITE_UUID.equals(uuid)) {
                     writeCharacteristic = characteristic;
                     gattService = service;
-                    Log.d(TAG, "Found write characteristic");
+                    RadioLog.d(TAG, "Found write characteristic");
                 }
                 
                 if (CHARACTERISTIC_NOTIFY_UUID.equals(uuid)) {
                     notifyCharacteristic = characteristic;
-                    Log.d(TAG, "Found notify characteristic");
+                    RadioLog.d(TAG, "Found notify characteristic");
                 }
             }
         }
@@ -341,6 +580,10 @@ public class RadioBluetoothManager {
      * Notify connection state changed
      */
     private void notifyConnectionStateChanged() {
+        RadioMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onConnectionState(connectionState);
+        }
         if (connectionListener != null) {
             connectionListener.onConnectionStateChanged(connectionState);
         }
@@ -361,8 +604,121 @@ public class RadioBluetoothManager {
         this.connectionListener = listener;
     }
     
-    public void setDataReceivedListener(DataReceivedListener listener) {
-        this.dataReceivedListener = listener;
+    /**
+     * Set the only data listener, replacing any added listeners
+     */
+    public synchronized void setDataReceivedListener(DataReceivedListener listener) {
+        this.dataReceivedListeners = listener != null
+                ? new DataReceivedListener[]{listener} : new DataReceivedListener[0];
+    }
+    
+    /**
+     * Add a data listener; every listener receives every notification
+     */
+    public synchronized void addDataReceivedListener(DataReceivedListener listener) {
+        DataReceivedListener[] current = dataReceivedListeners;
+        DataReceivedListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        this.dataReceivedListeners = updated;
+    }
+    
+    /**
+     * Remove a data listener
+     * 
+     * @return true if the listener was registered
+     */
+    public synchronized boolean removeDataReceivedListener(DataReceivedListener listener) {
+        DataReceivedListener[] current = dataReceivedListeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                DataReceivedListener[] updated = new DataReceivedListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                this.dataReceivedListeners = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public RadioNotificationRing getNotificationRing() {
+        return notificationRing;
+    }
+    
+    /**
+     * Hand notifications to a ring instead of calling the data listeners on
+     * the GATT callback thread; null restores direct delivery
+     */
+    public void setNotificationRing(RadioNotificationRing ring) {
+        this.notificationRing = ring;
+    }
+    
+    public RadioSessionJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Record every frame received and written to a journal; null to stop
+     * (the journal is not closed)
+     */
+    public void setJournal(RadioSessionJournal journal) {
+        this.journal = journal;
+    }
+    
+    public RadioMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Count commands sent, rejected and failed in shared metrics; null to stop
+     */
+    public void setMetrics(RadioMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    public RadioTracer getTracer() {
+        return tracer;
+    }
+    
+    /**
+     * Time notification receipt, sendCommand() and write completion with a
+     * tracer (e.g. Flight Recorder events); null to stop
+     */
+    public void setTracer(RadioTracer tracer) {
+        this.tracer = tracer;
+        this.pendingWriteTrace = null;
+    }
+    
+    public RadioRoundTripTracker getRoundTripTracker() {
+        return roundTripTracker;
+    }
+    
+    /**
+     * Stamp every command written for round-trip timing; pass the same
+     * tracker to RadioProtocolHandler.setRoundTripTracker(). Null to stop
+     */
+    public void setRoundTripTracker(RadioRoundTripTracker tracker) {
+        this.roundTripTracker = tracker;
+    }
+    
+    public RadioLinkWatchdog getWatchdog() {
+        return watchdog;
+    }
+    
+    /**
+     * Report every notification to a link watchdog, and pause and resume
+     * it with disconnect()/close() and connect(); null to stop (the
+     * watchdog is not stopped)
+     */
+    public void setWatchdog(RadioLinkWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+    
+    /**
+     * Address of the device last passed to connect(), null before that
+     */
+    public String getDeviceAddress() {
+        return deviceAddress;
     }
     
     public BluetoothAdapter getBluetoothAdapter() {
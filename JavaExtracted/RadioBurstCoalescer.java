@@ -0,0 +1,391 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Burst Coalescer
+ * 
+ * Gathers the field updates of one burst of frames (e.g. the ~30 frame
+ * state dump after CMD_HANDSHAKE) and publishes them as a single
+ * RadioSnapshot, so consumers redraw once and never see half-updated state.
+ * 
+ * A burst ends when any of these is reached:
+ * - Quiet gap: no frame has arrived for quietGapMillis
+ * - Frame count: maxBurstFrames frames arrived since the first update
+ * - Latency bound: maxLatencyMillis passed since the first update, so a
+ *   steady stream of frames cannot hold interactive changes back
+ * 
+ * Snapshot values are taken from a RadioStateStore, which must have seen
+ * the frame before onFrameParsed() is called here; the coalescer itself
+ * only tracks which fields changed and when. Updates join the burst at the
+ * frame boundary, so a snapshot only ever announces values the store has
+ * committed; a deadline that passes while a frame is being parsed is
+ * handled when that frame ends.
+ * 
+ * Individual callbacks are still forwarded to the target listener as they
+ * arrive. Snapshots are delivered on the parsing thread (frame count) or on
+ * the coalescer's timer thread (quiet gap, latency bound).
+ */
+public class RadioBurstCoalescer implements RadioStatusListener {
+    
+    /** Default quiet gap that ends a burst (milliseconds) */
+    public static final long DEFAULT_QUIET_GAP_MILLIS = 100;
+    
+    /** Default frame count that ends a burst */
+    public static final int DEFAULT_MAX_BURST_FRAMES = 32;
+    
+    /** Default longest time an update is held back (milliseconds) */
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 250;
+    
+    
+    // ==================== LISTENER INTERFACE ====================
+    
+    /**
+     * Listener for coalesced state snapshots
+     */
+    public interface SnapshotListener {
+        void onSnapshot(RadioSnapshot snapshot);
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private RadioStatusListener target;
+    private final RadioStateStore stateStore;
+    private volatile SnapshotListener snapshotListener;
+    
+    private long quietGapNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUIET_GAP_MILLIS);
+    private long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_LATENCY_MILLIS);
+    private int maxBurstFrames = DEFAULT_MAX_BURST_FRAMES;
+    
+    private ScheduledExecutorService scheduler; // Created on first use
+    private boolean flushScheduled;
+    
+    // Current burst (guarded by this)
+    private int frameFields;          // Fields updated by the frame being parsed
+    private long frameVersion;        // Store version when the last frame ended
+    private int changedFields;        // 0 when no update is pending
+    private boolean flushDue;         // A deadline passed mid-frame; publish at the frame boundary
+    private int burstFrames;
+    private long burstStartNanos;
+    private long lastFrameNanos;
+    
+    // Statistics
+    private long snapshotsPublished;
+    private long updatesCoalesced;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a coalescer
+     * 
+     * @param target Listener that receives every update as it arrives, may be null
+     * @param stateStore Store the snapshot values are read from
+     */
+    public RadioBurstCoalescer(RadioStatusListener target, RadioStateStore stateStore) {
+        this.target = target;
+        this.stateStore = stateStore;
+    }
+    
+    
+    // ==================== FRAME TRACKING ====================
+    
+    /**
+     * Record that a frame was parsed; called once per frame after its
+     * callbacks
+     */
+    public void onFrameParsed() {
+        if (snapshotListener == null) {
+            return;
+        }
+        
+        RadioSnapshot snapshot = null;
+        synchronized (this) {
+            lastFrameNanos = System.nanoTime();
+            frameVersion = stateStore.version();
+            if (frameFields != 0) {
+                if (changedFields == 0) {
+                    burstStartNanos = lastFrameNanos;
+                    burstFrames = 0;
+                }
+                changedFields |= frameFields;
+                frameFields = 0;
+            }
+            if (changedFields == 0) {
+                return;
+            }
+            burstFrames++;
+            if (burstFrames >= maxBurstFrames || flushDue) {
+                snapshot = takeSnapshot();
+            } else {
+                scheduleFlush(Math.min(quietGapNanos, burstStartNanos + maxLatencyNanos - lastFrameNanos));
+            }
+        }
+        publish(snapshot);
+    }
+    
+    /**
+     * Publish pending updates immediately
+     */
+    public void flush() {
+        RadioSnapshot snapshot;
+        synchronized (this) {
+            snapshot = changedFields != 0 ? takeSnapshot() : null;
+        }
+        publish(snapshot);
+    }
+    
+    /**
+     * Stop the timer thread; pending updates are dropped
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        flushScheduled = false;
+        flushDue = false;
+        frameFields = 0;
+        changedFields = 0;
+        burstFrames = 0;
+    }
+    
+    
+    // ==================== LISTENER METHODS ====================
+    
+    @Override
+    public void onFrequencyChanged(long frequencyHz, byte band) {
+        markChanged(RadioChangeFilter.FIELD_FREQUENCY);
+        if (target != null) {
+            target.onFrequencyChanged(frequencyHz, band);
+        }
+    }
+    
+    @Override
+    public void onVolumeChanged(int volume) {
+        markChanged(RadioChangeFilter.FIELD_VOLUME);
+        if (target != null) {
+            target.onVolumeChanged(volume);
+        }
+    }
+    
+    @Override
+    public void onSignalStrengthChanged(int strength) {
+        markChanged(RadioChangeFilter.FIELD_SIGNAL_STRENGTH);
+        if (target != null) {
+            target.onSignalStrengthChanged(strength);
+        }
+    }
+    
+    @Override
+    public void onStatusUpdate(RadioStatus status) {
+        markChanged(RadioChangeFilter.FIELD_STATUS);
+        if (target != null) {
+            target.onStatusUpdate(status);
+        }
+    }
+    
+    @Override
+    public void onDeviceInfo(String info) {
+        markChanged(RadioChangeFilter.FIELD_DEVICE_INFO);
+        if (target != null) {
+            target.onDeviceInfo(info);
+        }
+    }
+    
+    @Override
+    public void onLockStatusChanged(boolean isLocked) {
+        markChanged(RadioChangeFilter.FIELD_LOCK_STATUS);
+        if (target != null) {
+            target.onLockStatusChanged(isLocked);
+        }
+    }
+    
+    @Override
+    public void onRecordingStatusChanged(boolean isRecording, int index) {
+        markChanged(RadioChangeFilter.FIELD_RECORDING_STATUS);
+        if (target != null) {
+            target.onRecordingStatusChanged(isRecording, index);
+        }
+    }
+    
+    @Override
+    public void onBatteryLevel(int batteryPercent) {
+        markChanged(RadioChangeFilter.FIELD_BATTERY);
+        if (target != null) {
+            target.onBatteryLevel(batteryPercent);
+        }
+    }
+    
+    @Override
+    public void onChannelDisplay(CharSequence text) {
+        markChanged(RadioChangeFilter.FIELD_CHANNEL_DISPLAY);
+        if (target != null) {
+            target.onChannelDisplay(text);
+        }
+    }
+    
+    
+    // ==================== BURST HANDLING ====================
+    
+    /**
+     * Record a field update of the frame being parsed; it joins the burst
+     * in onFrameParsed()
+     */
+    private void markChanged(int field) {
+        if (snapshotListener == null) {
+            return;
+        }
+        synchronized (this) {
+            frameFields |= 1 << field;
+            updatesCoalesced++;
+        }
+    }
+    
+    /**
+     * Check whether a frame has updates not yet committed here or in the
+     * store (caller holds the lock)
+     */
+    private boolean isFrameInProgress() {
+        return frameFields != 0 || stateStore.version() != frameVersion;
+    }
+    
+    /**
+     * Schedule a deadline check unless one is already pending
+     * (caller holds the lock)
+     */
+    private void scheduleFlush(long delayNanos) {
+        if (flushScheduled) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "RadioBurstCoalescer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        flushScheduled = true;
+        scheduler.schedule(this::checkDeadlines, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Timer task: publish if the quiet gap or latency bound has passed,
+     * otherwise check again at the earlier of the two deadlines
+     */
+    private void checkDeadlines() {
+        RadioSnapshot snapshot = null;
+        synchronized (this) {
+            flushScheduled = false;
+            if (changedFields == 0) {
+                return;
+            }
+            
+            long now = System.nanoTime();
+            long quietDeadline = lastFrameNanos + quietGapNanos;
+            long latencyDeadline = burstStartNanos + maxLatencyNanos;
+            long deadline = Math.min(quietDeadline, latencyDeadline);
+            
+            if (now - deadline >= 0) {
+                if (isFrameInProgress()) {
+                    flushDue = true; // The snapshot would miss part of the frame
+                } else {
+                    snapshot = takeSnapshot();
+                }
+            } else {
+                scheduleFlush(deadline - now);
+            }
+        }
+        publish(snapshot);
+    }
+    
+    /**
+     * Build the snapshot for the pending burst and start a new one
+     * (caller holds the lock)
+     */
+    private RadioSnapshot takeSnapshot() {
+        RadioSnapshot snapshot = stateStore.snapshot().withBurst(changedFields, burstFrames,
+                System.currentTimeMillis());
+        changedFields = 0;
+        burstFrames = 0;
+        flushDue = false;
+        snapshotsPublished++;
+        return snapshot;
+    }
+    
+    private void publish(RadioSnapshot snapshot) {
+        SnapshotListener listener = snapshotListener;
+        if (snapshot != null && listener != null) {
+            listener.onSnapshot(snapshot);
+        }
+    }
+    
+    
+    // ==================== STATISTICS ====================
+    
+    /** Snapshots delivered so far */
+    public synchronized long getSnapshotsPublished() {
+        return snapshotsPublished;
+    }
+    
+    /** Field updates folded into snapshots so far */
+    public synchronized long getUpdatesCoalesced() {
+        return updatesCoalesced;
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public RadioStatusListener getTarget() {
+        return target;
+    }
+    
+    public void setTarget(RadioStatusListener target) {
+        this.target = target;
+    }
+    
+    public SnapshotListener getSnapshotListener() {
+        return snapshotListener;
+    }
+    
+    /**
+     * Set the snapshot listener; null turns coalescing off and stops the
+     * timer thread
+     */
+    public void setSnapshotListener(SnapshotListener listener) {
+        this.snapshotListener = listener;
+        if (listener == null) {
+            shutdown();
+        }
+    }
+    
+    /**
+     * Set the quiet gap that ends a burst
+     */
+    public synchronized void setQuietGap(long time, TimeUnit unit) {
+        this.quietGapNanos = unit.toNanos(time);
+    }
+    
+    /**
+     * Set the longest time an update may be held back before it is published
+     */
+    public synchronized void setMaxLatency(long time, TimeUnit unit) {
+        this.maxLatencyNanos = unit.toNanos(time);
+    }
+    
+    /**
+     * Set the number of frames after which a burst is published
+     */
+    public synchronized void setMaxBurstFrames(int maxBurstFrames) {
+        if (maxBurstFrames < 1) {
+            throw new IllegalArgumentException("maxBurstFrames must be >= 1: " + maxBurstFrames);
+        }
+        this.maxBurstFrames = maxBurstFrames;
+    }
+}
@@ -0,0 +1,290 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Radio Capture Reader
+ * 
+ * Loads the recorded RF320 traffic in docs/ for benchmarks, replay and
+ * tools. Two text formats are supported:
+ * 
+ * Frame list ("Messages From RF320.txt"): one frame per line as hex,
+ * starting with AB; other lines are ignored.
+ * 
+ * Annotated capture ("BIDIRECTIONAL_CAPTURE.txt"): blank-line separated
+ * records of "Key : value" lines:
+ *   Frame     : 806
+ *   Time      : 35.634717000
+ *   Direction :  RECV
+ *   Handle    : 0x000e (NOTIFY - RADIO SENDS)
+ *   Value     : AB061C
+ * Handle 0x000e records are notifications from the radio, handle 0x000c
+ * records are writes from the app.
+ */
+public final class RadioCaptureReader {
+    
+    private static final String TAG = "RadioCaptureReader";
+    
+    /** Handle of the notify characteristic in the captures */
+    public static final int HANDLE_NOTIFY = 0x000e;
+    
+    /** Handle of the write characteristic in the captures */
+    public static final int HANDLE_WRITE = 0x000c;
+    
+    
+    // ==================== CAPTURE RECORD ====================
+    
+    /**
+     * One packet of an annotated capture
+     */
+    public static final class Record {
+        public final int frameNumber;     // Capture frame number
+        public final long timeNanos;      // Time since the start of the capture
+        public final int handle;          // ATT handle
+        public final boolean fromRadio;   // true for notifications, false for writes
+        public final byte[] value;        // Packet bytes as captured
+        
+        public Record(int frameNumber, long timeNanos, int handle, boolean fromRadio, byte[] value) {
+            this.frameNumber = frameNumber;
+            this.timeNanos = timeNanos;
+            this.handle = handle;
+            this.fromRadio = fromRadio;
+            this.value = value;
+        }
+        
+        @Override
+        public String toString() {
+            return "Record{" +
+                    "frame=" + frameNumber +
+                    ", timeNanos=" + timeNanos +
+                    ", " + (fromRadio ? "NOTIFY" : "WRITE") +
+                    ", value=" + RadioHexCodec.toHex(value, true) +
+                    '}';
+        }
+    }
+    
+    private RadioCaptureReader() {
+    }
+    
+    
+    // ==================== FRAME LISTS ====================
+    
+    /**
+     * Read every hex frame line (lines starting with AB)
+     * 
+     * @param reader Source text, closed when done
+     * @return Frames in file order
+     * @throws IOException If reading fails
+     */
+    public static List<byte[]> readFrames(Reader reader) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                line = line.trim();
+                if (line.length() >= 2 && line.regionMatches(true, 0, "AB", 0, 2)) {
+                    byte[] frame = parseHex(line);
+                    if (frame != null) {
+                        frames.add(frame);
+                    }
+                }
+            }
+        }
+        return frames;
+    }
+    
+    /**
+     * Read every hex frame line of a file
+     */
+    public static List<byte[]> readFrames(File file) throws IOException {
+        return readFrames(open(file));
+    }
+    
+    
+    // ==================== ANNOTATED CAPTURES ====================
+    
+    /**
+     * Read the records of an annotated capture
+     * 
+     * @param reader Source text, closed when done
+     * @return Records in file order; records without a valid value are skipped
+     * @throws IOException If reading fails
+     */
+    public static List<Record> readRecords(Reader reader) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            int frameNumber = -1;
+            long timeNanos = 0;
+            int handle = -1;
+            boolean fromRadio = false;
+            byte[] value = null;
+            
+            String line;
+            while ((line = lines.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (line.trim().isEmpty() || colon < 0) {
+                    if (value != null) {
+                        records.add(new Record(frameNumber, timeNanos, handle, fromRadio, value));
+                    }
+                    frameNumber = -1;
+                    timeNanos = 0;
+                    handle = -1;
+                    fromRadio = false;
+                    value = null;
+                    continue;
+                }
+                
+                String key = line.substring(0, colon).trim();
+                String text = line.substring(colon + 1).trim();
+                try {
+                    switch (key) {
+                        case "Frame":
+                            frameNumber = Integer.parseInt(text);
+                            break;
+                        case "Time":
+                            timeNanos = Math.round(Double.parseDouble(text) * 1e9);
+                            break;
+                        case "Handle":
+                            handle = parseHandle(text);
+                            fromRadio = handle == HANDLE_NOTIFY || text.contains("NOTIFY");
+                            break;
+                        case "Value":
+                            value = parseHex(text);
+                            break;
+                        default:
+                            break;
+                    }
+                } catch (NumberFormatException e) {
+                    RadioLog.w(TAG, "Skipping malformed line: {}", line);
+                }
+            }
+            if (value != null) {
+                records.add(new Record(frameNumber, timeNanos, handle, fromRadio, value));
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * Read the records of an annotated capture file
+     */
+    public static List<Record> readRecords(File file) throws IOException {
+        return readRecords(open(file));
+    }
+    
+    
+    // ==================== CONVERSIONS ====================
+    
+    /**
+     * Turn a frame list into notification records at a fixed interval
+     * 
+     * @param frames Frames in order
+     * @param intervalNanos Time between consecutive frames
+     * @return One NOTIFY record per frame, numbered from 1
+     */
+    public static List<Record> toRecords(List<byte[]> frames, long intervalNanos) {
+        List<Record> records = new ArrayList<>(frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            records.add(new Record(i + 1, i * intervalNanos, HANDLE_NOTIFY, true, frames.get(i)));
+        }
+        return records;
+    }
+    
+    /**
+     * Replace truncated notification values with complete frames
+     * 
+     * Captures that only kept the start of each packet cannot be parsed.
+     * Each notification shorter than the length in its header is replaced by
+     * a full frame with the same first three bytes, cycling through the
+     * matching frames; notifications with no match are dropped. Complete
+     * notifications and writes are kept unchanged.
+     * 
+     * @param records Capture records
+     * @param frames Complete frames to draw from
+     * @return Records in the same order, with the same timing and direction
+     */
+    public static List<Record> completeValues(List<Record> records, List<byte[]> frames) {
+        Map<Integer, List<byte[]>> byHeader = new HashMap<>();
+        for (byte[] frame : frames) {
+            if (frame.length >= 3) {
+                byHeader.computeIfAbsent(header(frame), key -> new ArrayList<>()).add(frame);
+            }
+        }
+        
+        Map<Integer, Integer> nextIndex = new HashMap<>();
+        List<Record> completed = new ArrayList<>(records.size());
+        for (Record record : records) {
+            if (!record.fromRadio || isComplete(record.value)) {
+                completed.add(record);
+                continue;
+            }
+            if (record.value.length < 3) {
+                continue;
+            }
+            int header = header(record.value);
+            List<byte[]> candidates = byHeader.get(header);
+            if (candidates == null) {
+                continue;
+            }
+            int index = nextIndex.getOrDefault(header, 0);
+            nextIndex.put(header, index + 1);
+            completed.add(new Record(record.frameNumber, record.timeNanos, record.handle, true,
+                    candidates.get(index % candidates.size())));
+        }
+        return completed;
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    /**
+     * Check whether a value holds at least the frame its header announces
+     * ([0xAB][LEN][payload][checksum] is LEN + 3 bytes)
+     */
+    private static boolean isComplete(byte[] value) {
+        return value.length >= 2 && value.length >= (value[1] & 0xFF) + 3;
+    }
+    
+    private static int header(byte[] frame) {
+        return ((frame[0] & 0xFF) << 16) | ((frame[1] & 0xFF) << 8) | (frame[2] & 0xFF);
+    }
+    
+    
+    private static Reader open(File file) throws IOException {
+        return new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Decode a hex token, ignoring anything after the first space
+     * 
+     * @return Bytes, or null if the token is not valid hex
+     */
+    private static byte[] parseHex(String text) {
+        int end = text.indexOf(' ');
+        String hex = end < 0 ? text : text.substring(0, end);
+        try {
+            return RadioHexCodec.fromHex(hex);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static int parseHandle(String text) {
+        int end = text.indexOf(' ');
+        String token = end < 0 ? text : text.substring(0, end);
+        if (token.startsWith("0x") || token.startsWith("0X")) {
+            return Integer.parseInt(token.substring(2), 16);
+        }
+        return Integer.parseInt(token);
+    }
+}
@@ -0,0 +1,418 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Radio Capture Replay
+ * 
+ * Feeds recorded traffic (see RadioCaptureReader) into a
+ * RadioProtocolHandler without a radio or Bluetooth hardware, to reproduce
+ * field incidents and load-test listeners.
+ * 
+ * Notifications are passed to onNotificationReceived() as the GATT
+ * callback would; writes from the app are not fed to the handler but
+ * appear in the event stream. Pacing follows the capture timestamps:
+ * - setSpeed(ORIGINAL_SPEED): real time
+ * - setSpeed(n): n times faster
+ * - setSpeed(MAX_SPEED): as fast as possible
+ * 
+ * Every listener callback is timed from the moment its packet was handed
+ * to the handler. The report gives throughput, callback latency
+ * percentiles and how far pacing fell behind the capture clock.
+ * 
+ * Usage:
+ *   RadioCaptureReplay replay = new RadioCaptureReplay(handler);
+ *   replay.setSpeed(10);
+ *   replay.setEventListener(event -> System.out.println(event));
+ *   RadioCaptureReplay.Report report = replay.replay(records);
+ * 
+ * Run from the repository root to replay docs/ on a plain JVM:
+ *   java ...RadioCaptureReplay [--speed <factor>|max] [--interval-ms <ms>] [--quiet] [capture file]
+ */
+public final class RadioCaptureReplay {
+    
+    private static final String TAG = "RadioCaptureReplay";
+    
+    /** Replay at the pace of the capture */
+    public static final double ORIGINAL_SPEED = 1.0;
+    
+    /** Replay without waiting between packets */
+    public static final double MAX_SPEED = 0;
+    
+    
+    // ==================== EVENT STREAM ====================
+    
+    /**
+     * One decoded callback, or one write from the app
+     */
+    public static final class Event {
+        public final long captureNanos;   // Capture time of the packet
+        public final boolean fromRadio;   // false for writes from the app
+        public final long latencyNanos;   // Packet handed to the handler -> callback (0 for writes)
+        public final String description;  // e.g. "volume 7" or "write AB020C0ABB"
+        
+        Event(long captureNanos, boolean fromRadio, long latencyNanos, String description) {
+            this.captureNanos = captureNanos;
+            this.fromRadio = fromRadio;
+            this.latencyNanos = latencyNanos;
+            this.description = description;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%12.6f %s %s", captureNanos / 1e9, fromRadio ? "RECV" : "SENT", description);
+        }
+    }
+    
+    /**
+     * Receives the event stream on the replay thread
+     */
+    public interface EventListener {
+        void onReplayEvent(Event event);
+    }
+    
+    
+    // ==================== REPORT ====================
+    
+    /**
+     * Result of one replay
+     */
+    public static final class Report {
+        public final int notifications;      // Packets fed to the handler
+        public final int writes;             // Writes from the app seen in the capture
+        public final int bytes;              // Notification bytes fed
+        public final int callbacks;          // Listener callbacks
+        public final long elapsedNanos;      // Wall time of the replay
+        public final long captureNanos;      // Time span of the capture
+        public final long maxLagNanos;       // Largest delay behind the paced capture clock
+        public final long latencyP50Nanos;
+        public final long latencyP99Nanos;
+        public final long latencyMaxNanos;
+        
+        Report(int notifications, int writes, int bytes, int callbacks, long elapsedNanos,
+               long captureNanos, long maxLagNanos, long[] latencies, int latencyCount) {
+            this.notifications = notifications;
+            this.writes = writes;
+            this.bytes = bytes;
+            this.callbacks = callbacks;
+            this.elapsedNanos = elapsedNanos;
+            this.captureNanos = captureNanos;
+            this.maxLagNanos = maxLagNanos;
+            
+            Arrays.sort(latencies, 0, latencyCount);
+            this.latencyP50Nanos = percentile(latencies, latencyCount, 0.50);
+            this.latencyP99Nanos = percentile(latencies, latencyCount, 0.99);
+            this.latencyMaxNanos = latencyCount > 0 ? latencies[latencyCount - 1] : 0;
+        }
+        
+        /** Notifications fed per second of wall time */
+        public double notificationsPerSecond() {
+            return elapsedNanos > 0 ? notifications * 1e9 / elapsedNanos : 0;
+        }
+        
+        /** Listener callbacks per second of wall time */
+        public double callbacksPerSecond() {
+            return elapsedNanos > 0 ? callbacks * 1e9 / elapsedNanos : 0;
+        }
+        
+        private static long percentile(long[] sorted, int count, double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            return sorted[Math.min(count - 1, (int) Math.ceil(fraction * count) - 1)];
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(
+                    "Replayed %d notifications (%d bytes), %d writes, %d callbacks%n" +
+                    "  elapsed %.3f s for %.3f s of capture, max lag %.3f ms%n" +
+                    "  throughput %.0f notifications/s, %.0f callbacks/s%n" +
+                    "  callback latency p50 %d ns, p99 %d ns, max %d ns",
+                    notifications, bytes, writes, callbacks,
+                    elapsedNanos / 1e9, captureNanos / 1e9, maxLagNanos / 1e6,
+                    notificationsPerSecond(), callbacksPerSecond(),
+                    latencyP50Nanos, latencyP99Nanos, latencyMaxNanos);
+        }
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final RadioProtocolHandler handler;
+    private final CallbackRecorder recorder = new CallbackRecorder();
+    
+    private double speed = MAX_SPEED;
+    private EventListener eventListener;
+    private volatile boolean stopped;
+    
+    // Current replay, written on the replay thread only
+    private long[] latencies = new long[1024];
+    private int latencyCount;
+    private long feedStartNanos;
+    private long currentCaptureNanos;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a replay engine
+     * 
+     * @param handler Handler to feed; its other listeners keep receiving updates
+     */
+    public RadioCaptureReplay(RadioProtocolHandler handler) {
+        this.handler = handler;
+    }
+    
+    
+    // ==================== REPLAY ====================
+    
+    /**
+     * Replay records on the calling thread
+     * 
+     * @param records Records in capture order (see RadioCaptureReader)
+     * @return Throughput and latency report
+     */
+    public Report replay(List<RadioCaptureReader.Record> records) {
+        stopped = false;
+        latencyCount = 0;
+        handler.addStatusListener(recorder, RadioListenerRegistry.MASK_ALL);
+        
+        int notifications = 0;
+        int writes = 0;
+        int bytes = 0;
+        int callbacksBefore = recorder.callbacks;
+        long maxLagNanos = 0;
+        long firstCaptureNanos = records.isEmpty() ? 0 : records.get(0).timeNanos;
+        long lastCaptureNanos = firstCaptureNanos;
+        long startNanos = System.nanoTime();
+        
+        try {
+            for (RadioCaptureReader.Record record : records) {
+                if (stopped) {
+                    break;
+                }
+                
+                long offsetNanos = record.timeNanos - firstCaptureNanos;
+                lastCaptureNanos = record.timeNanos;
+                if (speed > 0) {
+                    long dueNanos = startNanos + (long) (offsetNanos / speed);
+                    long remaining;
+                    while ((remaining = dueNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(remaining);
+                    }
+                    maxLagNanos = Math.max(maxLagNanos, System.nanoTime() - dueNanos);
+                }
+                
+                currentCaptureNanos = offsetNanos;
+                if (record.fromRadio) {
+                    notifications++;
+                    bytes += record.value.length;
+                    feedStartNanos = System.nanoTime();
+                    handler.onNotificationReceived(record.value);
+                } else {
+                    writes++;
+                    if (eventListener != null) {
+                        eventListener.onReplayEvent(new Event(offsetNanos, false, 0,
+                                "write " + RadioHexCodec.toHex(record.value, true)));
+                    }
+                }
+            }
+        } finally {
+            handler.removeListener(recorder);
+        }
+        
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Report report = new Report(notifications, writes, bytes, recorder.callbacks - callbacksBefore,
+                elapsedNanos, lastCaptureNanos - firstCaptureNanos, maxLagNanos, latencies, latencyCount);
+        RadioLog.d(TAG, "Replay finished: {} notifications in {} ms", notifications, elapsedNanos / 1_000_000);
+        return report;
+    }
+    
+    /**
+     * Stop a running replay after the current packet; safe from any thread
+     */
+    public void stop() {
+        stopped = true;
+    }
+    
+    
+    // ==================== CALLBACK RECORDER ====================
+    
+    /**
+     * Times every callback and turns it into an event when a listener is set
+     */
+    private final class CallbackRecorder implements RadioStatusListener {
+        int callbacks;
+        long latencyNanos;
+        
+        /**
+         * Record the latency of a callback
+         * 
+         * @return true if an event should be emitted for it
+         */
+        private boolean timed() {
+            latencyNanos = System.nanoTime() - feedStartNanos;
+            callbacks++;
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[latencyCount++] = latencyNanos;
+            return eventListener != null;
+        }
+        
+        private void emit(String description) {
+            EventListener listener = eventListener;
+            if (listener != null) {
+                listener.onReplayEvent(new Event(currentCaptureNanos, true, latencyNanos, description));
+            }
+        }
+        
+        @Override
+        public void onFrequencyChanged(long frequencyHz, byte band) {
+            if (timed()) {
+                emit("frequency " + frequencyHz + " Hz band " + RadioHexCodec.byteToHex(band));
+            }
+        }
+        
+        @Override
+        public void onVolumeChanged(int volume) {
+            if (timed()) {
+                emit("volume " + volume);
+            }
+        }
+        
+        @Override
+        public void onSignalStrengthChanged(int strength) {
+            if (timed()) {
+                emit("signal " + strength);
+            }
+        }
+        
+        @Override
+        public void onStatusUpdate(RadioStatus status) {
+            if (timed()) {
+                emit("status " + status);
+            }
+        }
+        
+        @Override
+        public void onDeviceInfo(String deviceInfo) {
+            if (timed()) {
+                emit("deviceInfo " + deviceInfo.replace('\n', ' ').trim());
+            }
+        }
+        
+        @Override
+        public void onLockStatusChanged(boolean isLocked) {
+            if (timed()) {
+                emit("locked " + isLocked);
+            }
+        }
+        
+        @Override
+        public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+            if (timed()) {
+                emit("recording " + isRecording + " index " + recordIndex);
+            }
+        }
+        
+        @Override
+        public void onBatteryLevel(int batteryPercent) {
+            if (timed()) {
+                emit("battery " + batteryPercent + "%");
+            }
+        }
+        
+        @Override
+        public void onChannelDisplay(CharSequence channelText) {
+            if (timed()) {
+                emit("channel " + channelText);
+            }
+        }
+    }
+    
+    
+    // ==================== COMMAND LINE ====================
+    
+    /**
+     * Replay a capture from docs/ and print the event stream and report
+     * 
+     * Annotated captures are replayed with their timestamps; truncated
+     * notifications are completed from "Messages From RF320.txt" next to
+     * them. Frame lists are replayed at --interval-ms (default 50).
+     */
+    public static void main(String[] args) throws IOException {
+        double speed = ORIGINAL_SPEED;
+        long intervalNanos = 50_000_000L;
+        boolean quiet = false;
+        File file = new File("docs", "BIDIRECTIONAL_CAPTURE.txt");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed":
+                    String value = args[++i];
+                    speed = "max".equals(value) ? MAX_SPEED : Double.parseDouble(value);
+                    break;
+                case "--interval-ms":
+                    intervalNanos = Long.parseLong(args[++i]) * 1_000_000L;
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    file = new File(args[i]);
+                    break;
+            }
+        }
+        
+        RadioLog.setSink((priority, tag, message, error) -> System.err.println(tag + ": " + message));
+        
+        List<RadioCaptureReader.Record> records = RadioCaptureReader.readRecords(file);
+        if (records.isEmpty()) {
+            records = RadioCaptureReader.toRecords(RadioCaptureReader.readFrames(file), intervalNanos);
+        } else {
+            File frames = new File(file.getAbsoluteFile().getParentFile(), "Messages From RF320.txt");
+            if (frames.isFile()) {
+                records = RadioCaptureReader.completeValues(records, RadioCaptureReader.readFrames(frames));
+            }
+        }
+        
+        RadioCaptureReplay replay = new RadioCaptureReplay(new RadioProtocolHandler());
+        replay.setSpeed(speed);
+        if (!quiet) {
+            replay.setEventListener(System.out::println);
+        }
+        System.out.println(replay.replay(records));
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public double getSpeed() {
+        return speed;
+    }
+    
+    /**
+     * Set the pace: ORIGINAL_SPEED, a speed-up factor, or MAX_SPEED
+     */
+    public void setSpeed(double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed must be >= 0: " + speed);
+        }
+        this.speed = speed;
+    }
+    
+    /**
+     * Receive the decoded event stream; null to only measure
+     */
+    public void setEventListener(EventListener listener) {
+        this.eventListener = listener;
+    }
+}
@@ -0,0 +1,325 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+import java.util.Arrays;
+
+/**
+ * Radio Change Filter
+ * 
+ * Sits between the parsers and a RadioStatusListener and drops callbacks
+ * whose value matches the last one delivered. The radio repeats the same
+ * frames constantly (e.g. the AB1119/AB071C/AB061C handshake dump), so most
+ * parsed updates carry no new information.
+ * 
+ * The last delivered value of each field is kept as primitives (or copied
+ * into reused buffers), so comparing allocates nothing. Enable
+ * forward-all mode to deliver every update regardless.
+ * 
+ * Not thread-safe: must be called from the parsing thread.
+ */
+public class RadioChangeFilter implements RadioStatusListener {
+    
+    // ==================== FIELD IDENTIFIERS ====================
+    
+    public static final int FIELD_FREQUENCY = 0;
+    public static final int FIELD_VOLUME = 1;
+    public static final int FIELD_SIGNAL_STRENGTH = 2;
+    public static final int FIELD_STATUS = 3;
+    public static final int FIELD_DEVICE_INFO = 4;
+    public static final int FIELD_LOCK_STATUS = 5;
+    public static final int FIELD_RECORDING_STATUS = 6;
+    public static final int FIELD_BATTERY = 7;
+    public static final int FIELD_CHANNEL_DISPLAY = 8;
+    
+    /** Number of FIELD_* identifiers */
+    public static final int FIELD_COUNT = 9;
+    
+    private static final String[] FIELD_NAMES = {
+        "frequency", "volume", "signalStrength", "status", "deviceInfo",
+        "lockStatus", "recordingStatus", "battery", "channelDisplay"
+    };
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private RadioStatusListener target;
+    private boolean forwardAll;
+    
+    // Which fields hold a delivered value
+    private final boolean[] hasValue = new boolean[FIELD_COUNT];
+    
+    // Last delivered values
+    private long lastFrequencyHz;
+    private byte lastBand;
+    private int lastVolume;
+    private int lastSignalStrength;
+    private final RadioStatus lastStatus = new RadioStatus();
+    private String lastDeviceInfo;
+    private boolean lastLocked;
+    private boolean lastRecording;
+    private int lastRecordIndex;
+    private int lastBatteryPercent;
+    private final StringBuilder lastChannelText = new StringBuilder();
+    
+    // Statistics
+    private final long[] updatesReceived = new long[FIELD_COUNT];
+    private final long[] updatesSuppressed = new long[FIELD_COUNT];
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a filter
+     * 
+     * @param target Listener that receives changed values, may be null
+     */
+    public RadioChangeFilter(RadioStatusListener target) {
+        this.target = target;
+    }
+    
+    
+    // ==================== LISTENER METHODS ====================
+    
+    @Override
+    public void onFrequencyChanged(long frequencyHz, byte band) {
+        if (changed(FIELD_FREQUENCY, lastFrequencyHz == frequencyHz && lastBand == band)) {
+            lastFrequencyHz = frequencyHz;
+            lastBand = band;
+            if (target != null) {
+                target.onFrequencyChanged(frequencyHz, band);
+            }
+        }
+    }
+    
+    @Override
+    public void onVolumeChanged(int volume) {
+        if (changed(FIELD_VOLUME, lastVolume == volume)) {
+            lastVolume = volume;
+            if (target != null) {
+                target.onVolumeChanged(volume);
+            }
+        }
+    }
+    
+    @Override
+    public void onSignalStrengthChanged(int strength) {
+        if (changed(FIELD_SIGNAL_STRENGTH, lastSignalStrength == strength)) {
+            lastSignalStrength = strength;
+            if (target != null) {
+                target.onSignalStrengthChanged(strength);
+            }
+        }
+    }
+    
+    @Override
+    public void onStatusUpdate(RadioStatus status) {
+        if (changed(FIELD_STATUS, sameStatus(lastStatus, status))) {
+            lastStatus.copyFrom(status);
+            if (target != null) {
+                target.onStatusUpdate(status);
+            }
+        }
+    }
+    
+    @Override
+    public void onDeviceInfo(String deviceInfo) {
+        if (changed(FIELD_DEVICE_INFO, deviceInfo.equals(lastDeviceInfo))) {
+            lastDeviceInfo = deviceInfo;
+            if (target != null) {
+                target.onDeviceInfo(deviceInfo);
+            }
+        }
+    }
+    
+    @Override
+    public void onLockStatusChanged(boolean isLocked) {
+        if (changed(FIELD_LOCK_STATUS, lastLocked == isLocked)) {
+            lastLocked = isLocked;
+            if (target != null) {
+                target.onLockStatusChanged(isLocked);
+            }
+        }
+    }
+    
+    @Override
+    public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+        if (changed(FIELD_RECORDING_STATUS, lastRecording == isRecording && lastRecordIndex == recordIndex)) {
+            lastRecording = isRecording;
+            lastRecordIndex = recordIndex;
+            if (target != null) {
+                target.onRecordingStatusChanged(isRecording, recordIndex);
+            }
+        }
+    }
+    
+    @Override
+    public void onBatteryLevel(int batteryPercent) {
+        if (changed(FIELD_BATTERY, lastBatteryPercent == batteryPercent)) {
+            lastBatteryPercent = batteryPercent;
+            if (target != null) {
+                target.onBatteryLevel(batteryPercent);
+            }
+        }
+    }
+    
+    @Override
+    public void onChannelDisplay(CharSequence channelText) {
+        if (changed(FIELD_CHANNEL_DISPLAY, sameText(lastChannelText, channelText))) {
+            lastChannelText.setLength(0);
+            lastChannelText.append(channelText);
+            if (target != null) {
+                target.onChannelDisplay(channelText);
+            }
+        }
+    }
+    
+    
+    // ==================== CONTROL ====================
+    
+    /**
+     * Forget every delivered value so the next update of each field is
+     * delivered (e.g. after reconnecting to the radio)
+     */
+    public void reset() {
+        Arrays.fill(hasValue, false);
+        lastDeviceInfo = null;
+        lastChannelText.setLength(0);
+    }
+    
+    /**
+     * Clear the statistics
+     */
+    public void resetStatistics() {
+        Arrays.fill(updatesReceived, 0);
+        Arrays.fill(updatesSuppressed, 0);
+    }
+    
+    
+    // ==================== STATISTICS ====================
+    
+    /** Updates received for a field (FIELD_*) */
+    public long getUpdatesReceived(int field) {
+        return updatesReceived[field];
+    }
+    
+    /** Updates dropped for a field because the value had not changed */
+    public long getUpdatesSuppressed(int field) {
+        return updatesSuppressed[field];
+    }
+    
+    /**
+     * Fraction of a field's updates that were suppressed
+     * 
+     * @param field FIELD_* identifier
+     * @return Ratio from 0.0 to 1.0 (0.0 before any update)
+     */
+    public double getSuppressionRatio(int field) {
+        long received = updatesReceived[field];
+        return received == 0 ? 0.0 : (double) updatesSuppressed[field] / received;
+    }
+    
+    /**
+     * Fraction of all updates that were suppressed
+     * 
+     * @return Ratio from 0.0 to 1.0 (0.0 before any update)
+     */
+    public double getSuppressionRatio() {
+        long received = 0;
+        long suppressed = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            received += updatesReceived[i];
+            suppressed += updatesSuppressed[i];
+        }
+        return received == 0 ? 0.0 : (double) suppressed / received;
+    }
+    
+    /** Name of a FIELD_* identifier (for reports) */
+    public static String getFieldName(int field) {
+        return FIELD_NAMES[field];
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RadioChangeFilter{");
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(FIELD_NAMES[i]).append('=')
+              .append(updatesSuppressed[i]).append('/').append(updatesReceived[i]);
+        }
+        return sb.append('}').toString();
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    /**
+     * Count an update and decide whether to deliver it
+     * 
+     * @param field FIELD_* identifier
+     * @param unchanged true if the value equals the last delivered value
+     * @return true if the update should be delivered
+     */
+    private boolean changed(int field, boolean unchanged) {
+        updatesReceived[field]++;
+        if (unchanged && hasValue[field] && !forwardAll) {
+            updatesSuppressed[field]++;
+            return false;
+        }
+        hasValue[field] = true;
+        return true;
+    }
+    
+    private static boolean sameStatus(RadioStatus a, RadioStatus b) {
+        return a.frequencyHz == b.frequencyHz
+                && a.band == b.band
+                && a.subBand == b.subBand
+                && a.demodulation == b.demodulation
+                && a.bandwidth == b.bandwidth
+                && a.squelchLevel == b.squelchLevel
+                && a.volumeLevel == b.volumeLevel
+                && a.signalStrength == b.signalStrength
+                && a.batteryPercent == b.batteryPercent
+                && a.flags == b.flags
+                && a.statusBytes == b.statusBytes;
+    }
+    
+    private static boolean sameText(CharSequence a, CharSequence b) {
+        int length = a.length();
+        if (length != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public RadioStatusListener getTarget() {
+        return target;
+    }
+    
+    public void setTarget(RadioStatusListener target) {
+        this.target = target;
+    }
+    
+    public boolean isForwardAll() {
+        return forwardAll;
+    }
+    
+    /**
+     * Deliver every update, even when the value has not changed
+     * (statistics are still collected)
+     */
+    public void setForwardAll(boolean forwardAll) {
+        this.forwardAll = forwardAll;
+    }
+}
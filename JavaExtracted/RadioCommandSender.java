@@ -2,7 +2,6 @@ package com.myhomesmartlife.bluetooth.CleanedUp;
 
 import android.content.Context;
 import android.os.Vibrator;
-import android.util.Log;
 
 /**
  * Radio Command Sender
@@ -30,8 +29,18 @@ public class RadioCommandSender {
      * @param context Application context (for vibration feedback)
      */
     public RadioCommandSender(RadioBluetoothManager bluetoothManager, Context context) {
+        this(bluetoothManager, (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE));
+    }
+    
+    /**
+     * Create a RadioCommandSender with an explicit vibrator
+     * 
+     * @param bluetoothManager The Bluetooth manager for sending commands
+     * @param vibrator Vibrator for haptic feedback, or null for none
+     */
+    RadioCommandSender(RadioBluetoothManager bluetoothManager, Vibrator vibrator) {
         this.bluetoothManager = bluetoothManager;
-        this.vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+        this.vibrator = vibrator;
     }
     
     
@@ -45,7 +54,7 @@ public class RadioCommandSender {
      */
     public boolean sendCommand(byte[] command) {
         if (!bluetoothManager.isReady()) {
-            Log.w(TAG, "Bluetooth not ready");
+            RadioLog.w(TAG, "Bluetooth not ready");
             return false;
         }
         
@@ -63,7 +72,7 @@ public class RadioCommandSender {
      * @return true if sent successfully
      */
     public boolean sendHandshake() {
-        Log.d(TAG, "Sending handshake");
+        RadioLog.d(TAG, "Sending handshake");
         return sendCommand(RadioProtocolCommands.CMD_HANDSHAKE);
     }
     
@@ -220,7 +229,7 @@ public class RadioCommandSender {
             case 8: command = RadioProtocolCommands.CMD_NUMBER_8; break;
             case 9: command = RadioProtocolCommands.CMD_NUMBER_9; break;
             default:
-                Log.w(TAG, "Invalid number: " + number);
+                RadioLog.w(TAG, "Invalid number: {}", number);
                 return false;
         }
         
@@ -248,7 +257,7 @@ public class RadioCommandSender {
             case 8: command = RadioProtocolCommands.CMD_NUMBER_8_LONG; break;
             case 9: command = RadioProtocolCommands.CMD_NUMBER_9_LONG; break;
             default:
-                Log.w(TAG, "Invalid number: " + number);
+                RadioLog.w(TAG, "Invalid number: {}", number);
                 return false;
         }
         
@@ -339,7 +348,7 @@ public class RadioCommandSender {
      * @return true if sent successfully
      */
     public boolean adjustSquelch() {
-        return sendCommand(RadioProtocolCommands.CMD_SQ);
+        return sendCommand(RadioProtocolCommands.CMD_SQUELCH);
     }
     
     /**
@@ -357,7 +366,7 @@ public class RadioCommandSender {
      * @return true if sent successfully
      */
     public boolean toggleDE() {
-        return sendCommand(RadioProtocolCommands.CMD_DE);
+        return sendCommand(RadioProtocolCommands.CMD_DE_EMPHASIS);
     }
     
     
@@ -0,0 +1,217 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Radio Frame View
+ * 
+ * Reusable, mutable view of one protocol frame held in a larger buffer.
+ * A single instance is re-pointed at every frame the handler parses, so
+ * reading fields costs no allocation and the frame bytes are never copied.
+ * 
+ * A RadioFrame is only valid for the duration of the callback that receives
+ * it; the underlying buffer is reused for the next frame. Call toByteArray()
+ * to keep the bytes.
+ * 
+ * Indexes are relative to the start byte:
+ * - Index 0: Start byte (0xAB)
+ * - Index 1: Opcode (length indicator)
+ * - Index 2: Sub-opcode (command type)
+ * - Last index: Checksum
+ */
+public final class RadioFrame {
+    
+    private byte[] data;
+    private int offset;
+    private int length;
+    
+    
+    // ==================== VIEW MANAGEMENT ====================
+    
+    /**
+     * Point this view at a frame
+     * 
+     * @param data Buffer holding the frame
+     * @param offset Offset of the start byte within the buffer
+     * @param length Frame length in bytes
+     * @return This view
+     */
+    public RadioFrame wrap(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Frame range " + offset + "+" + length
+                    + " outside buffer of " + data.length);
+        }
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+    
+    /**
+     * Detach this view from its buffer
+     */
+    public void clear() {
+        this.data = null;
+        this.offset = 0;
+        this.length = 0;
+    }
+    
+    
+    // ==================== TYPED ACCESSORS ====================
+    
+    /** Frame length in bytes, including start byte and checksum */
+    public int length() {
+        return length;
+    }
+    
+    /** Byte 1: opcode (length indicator) */
+    public int opcode() {
+        return u8(1);
+    }
+    
+    /** Byte 2: sub-opcode (command type) */
+    public int subOpcode() {
+        return u8(2);
+    }
+    
+    /** Opcode and sub-opcode packed as (byte 1 << 8) | byte 2 */
+    public int commandKey() {
+        return (u8(1) << 8) | u8(2);
+    }
+    
+    /**
+     * Read an unsigned byte
+     * 
+     * @param index Index relative to the start byte
+     * @return Value 0-255
+     */
+    public int u8(int index) {
+        checkIndex(index, 1);
+        return data[offset + index] & 0xFF;
+    }
+    
+    /**
+     * Read an unsigned 16-bit little endian value
+     * 
+     * @param index Index of the least significant byte
+     * @return Value 0-65535
+     */
+    public int u16le(int index) {
+        checkIndex(index, 2);
+        int i = offset + index;
+        return (data[i] & 0xFF) | ((data[i + 1] & 0xFF) << 8);
+    }
+    
+    /**
+     * Read an unsigned 32-bit little endian value
+     * 
+     * @param index Index of the least significant byte
+     * @return Unsigned value
+     */
+    public long u32le(int index) {
+        checkIndex(index, 4);
+        return RadioProtocolHandler.readUInt32LE(data, offset + index);
+    }
+    
+    /**
+     * Decode a range of the frame as single-byte characters
+     * 
+     * Allocates the returned String; use asciiContains() or appendAscii()
+     * where the text is only inspected or accumulated.
+     * 
+     * @param index First character
+     * @param count Number of characters
+     * @return ASCII text
+     */
+    public String asciiSlice(int index, int count) {
+        checkIndex(index, count);
+        return new String(data, offset + index, count, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Check whether a range of the frame contains the given ASCII text,
+     * ignoring case, without decoding it
+     * 
+     * @param index First character of the range
+     * @param count Number of characters in the range
+     * @param text Text to look for (ASCII)
+     * @return true if the text occurs in the range
+     */
+    public boolean asciiContains(int index, int count, String text) {
+        checkIndex(index, count);
+        int textLength = text.length();
+        int start = offset + index;
+        int last = start + count - textLength;
+        
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < textLength && toUpper(data[i + j]) == toUpper((byte) text.charAt(j))) {
+                j++;
+            }
+            if (j == textLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Append a range of the frame to a builder as single-byte characters
+     * 
+     * @param target Builder to append to
+     * @param index First character
+     * @param count Number of characters
+     */
+    public void appendAscii(StringBuilder target, int index, int count) {
+        checkIndex(index, count);
+        int end = offset + index + count;
+        for (int i = offset + index; i < end; i++) {
+            target.append((char) (data[i] & 0xFF));
+        }
+    }
+    
+    
+    // ==================== CONVERSION ====================
+    
+    /**
+     * Lowercase hex form of a range of the frame (for logging)
+     * 
+     * @param index First byte
+     * @param count Number of bytes
+     * @return Hex string
+     */
+    public String hexSlice(int index, int count) {
+        checkIndex(index, count);
+        return RadioHexCodec.toHex(data, offset + index, count, false);
+    }
+    
+    /**
+     * Copy the frame bytes out of the shared buffer
+     * 
+     * @return New array holding the whole frame
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[length];
+        System.arraycopy(data, offset, copy, 0, length);
+        return copy;
+    }
+    
+    @Override
+    public String toString() {
+        return data == null ? "RadioFrame{}" : "RadioFrame{" + hexSlice(0, length) + "}";
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    private void checkIndex(int index, int count) {
+        if (index < 0 || count < 0 || index + count > length) {
+            throw new IndexOutOfBoundsException("Range " + index + "+" + count
+                    + " outside frame of " + length + " bytes");
+        }
+    }
+    
+    private static int toUpper(byte b) {
+        return (b >= 'a' && b <= 'z') ? b - ('a' - 'A') : b;
+    }
+}
@@ -0,0 +1,255 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+/**
+ * Radio Frame Assembler
+ * 
+ * Rebuilds protocol frames from the raw notification stream. A single BLE
+ * notification may hold part of a frame, exactly one frame, or several
+ * frames back to back, so notifications are appended to a ring buffer and
+ * complete frames are cut out of it.
+ * 
+ * Frame Format:
+ * - Byte 0: Start byte (0xAB)
+ * - Byte 1: Length of the payload that follows
+ * - Bytes 2..(2 + length - 1): Payload
+ * - Last byte: Additive checksum of all preceding bytes
+ * 
+ * Frames whose checksum does not match are dropped and the assembler
+ * resynchronizes on the next 0xAB start byte. Bytes skipped while searching
+ * for a start byte are counted as discarded.
+ * 
+ * Not thread-safe: append() must be called from a single thread.
+ */
+public class RadioFrameAssembler {
+    
+    private static final String TAG = "RadioFrameAssembler";
+    
+    /** Bytes in a frame besides the payload (start, length, checksum) */
+    public static final int FRAME_OVERHEAD = 3;
+    
+    /** Largest frame the length byte can describe */
+    public static final int MAX_FRAME_LENGTH = 0xFF + FRAME_OVERHEAD;
+    
+    /** Default ring buffer capacity (bytes, power of two) */
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    
+    // ==================== LISTENER INTERFACE ====================
+    
+    /**
+     * Listener for complete, checksum-verified frames
+     * 
+     * The buffer is reused for the next frame; copy the bytes if they are
+     * needed after the callback returns.
+     */
+    public interface FrameListener {
+        void onFrame(byte[] frame, int offset, int length);
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final FrameListener frameListener;
+    private final byte[] ring;
+    private final int mask;
+    private final byte[] frameBuffer = new byte[MAX_FRAME_LENGTH];
+    
+    private long readPosition;      // Ring index of the next unread byte
+    private long writePosition;     // Ring index of the next free slot
+    private boolean resynchronizing; // Currently skipping bytes to find a start byte
+    
+    // Statistics
+    private long bytesReceived;
+    private long framesAssembled;
+    private long checksumFailures;
+    private long bytesDiscarded;
+    private long resyncCount;
+    private RadioMetrics metrics;
+    
+    
+    // ==================== CONSTRUCTORS ====================
+    
+    /**
+     * Create an assembler with the default ring buffer capacity
+     * 
+     * @param frameListener Receives each complete frame
+     */
+    public RadioFrameAssembler(FrameListener frameListener) {
+        this(frameListener, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Create an assembler
+     * 
+     * @param frameListener Receives each complete frame
+     * @param capacity Ring buffer capacity in bytes; a power of two of at least
+     *                 MAX_FRAME_LENGTH
+     */
+    public RadioFrameAssembler(FrameListener frameListener, int capacity) {
+        if (capacity < MAX_FRAME_LENGTH || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two >= "
+                    + MAX_FRAME_LENGTH + ": " + capacity);
+        }
+        this.frameListener = frameListener;
+        this.ring = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    
+    // ==================== STREAM INPUT ====================
+    
+    /**
+     * Append a notification payload and deliver every frame it completes
+     * 
+     * @param data Notification bytes
+     */
+    public void append(byte[] data) {
+        if (data != null) {
+            append(data, 0, data.length);
+        }
+    }
+    
+    /**
+     * Append part of a buffer and deliver every frame it completes
+     * 
+     * @param data Buffer holding the received bytes
+     * @param offset First byte to append
+     * @param length Number of bytes to append
+     */
+    public void append(byte[] data, int offset, int length) {
+        bytesReceived += length;
+        
+        while (length > 0) {
+            int free = ring.length - (int) (writePosition - readPosition);
+            int chunk = Math.min(free, length);
+            
+            // Copy in at most two pieces around the end of the ring
+            int start = (int) (writePosition & mask);
+            int firstPart = Math.min(chunk, ring.length - start);
+            System.arraycopy(data, offset, ring, start, firstPart);
+            System.arraycopy(data, offset + firstPart, ring, 0, chunk - firstPart);
+            
+            writePosition += chunk;
+            offset += chunk;
+            length -= chunk;
+            
+            extractFrames();
+        }
+    }
+    
+    /**
+     * Drop any buffered partial frame
+     */
+    public void reset() {
+        readPosition = writePosition;
+        resynchronizing = false;
+    }
+    
+    
+    // ==================== FRAMING ====================
+    
+    /**
+     * Deliver every complete frame currently in the ring
+     */
+    private void extractFrames() {
+        while (writePosition > readPosition) {
+            // Skip to the next start byte
+            if (ring[(int) (readPosition & mask)] != RadioProtocolCommands.PROTOCOL_START_BYTE) {
+                discardByte();
+                continue;
+            }
+            
+            int available = (int) (writePosition - readPosition);
+            if (available < 2) {
+                return;
+            }
+            
+            int frameLength = (ring[(int) ((readPosition + 1) & mask)] & 0xFF) + FRAME_OVERHEAD;
+            if (available < frameLength) {
+                return; // Wait for the rest of the frame
+            }
+            
+            copyFrame(frameLength);
+            
+            byte expected = RadioProtocolCommands.calculateChecksum(frameBuffer, 0, frameLength - 1);
+            if (expected != frameBuffer[frameLength - 1]) {
+                checksumFailures++;
+                if (metrics != null) {
+                    metrics.onChecksumFailure();
+                }
+                RadioLog.w(TAG, "Checksum mismatch, resynchronizing");
+                // Drop this start byte and look for the next one
+                discardByte();
+                continue;
+            }
+            
+            readPosition += frameLength;
+            resynchronizing = false;
+            framesAssembled++;
+            
+            frameListener.onFrame(frameBuffer, 0, frameLength);
+        }
+    }
+    
+    /**
+     * Copy a frame starting at the read position into the frame buffer
+     */
+    private void copyFrame(int frameLength) {
+        int start = (int) (readPosition & mask);
+        int firstPart = Math.min(frameLength, ring.length - start);
+        System.arraycopy(ring, start, frameBuffer, 0, firstPart);
+        System.arraycopy(ring, 0, frameBuffer, firstPart, frameLength - firstPart);
+    }
+    
+    /**
+     * Skip one byte while searching for a start byte
+     */
+    private void discardByte() {
+        readPosition++;
+        bytesDiscarded++;
+        if (!resynchronizing) {
+            resynchronizing = true;
+            resyncCount++;
+        }
+    }
+    
+    
+    // ==================== STATISTICS ====================
+    
+    /** Total bytes appended */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+    
+    /** Frames delivered to the listener */
+    public long getFramesAssembled() {
+        return framesAssembled;
+    }
+    
+    /** Candidate frames rejected because of a checksum mismatch */
+    public long getChecksumFailures() {
+        return checksumFailures;
+    }
+    
+    /** Bytes skipped while searching for a start byte */
+    public long getBytesDiscarded() {
+        return bytesDiscarded;
+    }
+    
+    /** Times the stream lost frame alignment and had to search for a start byte */
+    public long getResyncCount() {
+        return resyncCount;
+    }
+    
+    /** Bytes buffered waiting for the rest of a frame */
+    public int getBufferedBytes() {
+        return (int) (writePosition - readPosition);
+    }
+    
+    /**
+     * Also count checksum failures in shared metrics; null to stop
+     */
+    public void setMetrics(RadioMetrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,375 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Radio Frame Profiler
+ * 
+ * Profiles the frames the handler cannot decode, to show where decoding
+ * effort would pay off in real traffic without keeping debug logs on.
+ * Frames are grouped by kind (KIND_UNKNOWN: no parser for the command
+ * type, e.g. the ab071c/ab101c display labels; KIND_MALFORMED: too short
+ * for its parser, or the parser failed) and command key
+ * (opcode and sub-opcode). Each group keeps:
+ * - count, and first and last seen times
+ * - shortest and longest frame
+ * - a reservoir sample of up to samplesPerGroup frames, uniformly drawn
+ *   from every frame of the group
+ * - for each of the first MAX_TRACKED_BYTES positions: lowest and highest
+ *   value and number of distinct values, so constant bytes, counters and
+ *   flags stand out
+ * 
+ * Memory is bounded: at most maxGroups groups, whose buffers are allocated
+ * when the group is first seen; frames of further groups are only counted
+ * in getDroppedFrames(). Recording a frame of a known group does not
+ * allocate.
+ * 
+ * Query with getGroups() or write a text report with export().
+ */
+public class RadioFrameProfiler {
+    
+    private static final String TAG = "RadioFrameProfiler";
+    
+    /** Frame whose command type has no parser */
+    public static final int KIND_UNKNOWN = 0;
+    
+    /** Frame that was too short for its parser or that its parser failed on */
+    public static final int KIND_MALFORMED = 1;
+    
+    /** Default number of groups kept */
+    public static final int DEFAULT_MAX_GROUPS = 64;
+    
+    /** Default number of sample frames kept per group */
+    public static final int DEFAULT_SAMPLES_PER_GROUP = 8;
+    
+    /** Byte positions whose values are tracked; longer samples are cut here too */
+    public static final int MAX_TRACKED_BYTES = 32;
+    
+    private static final String[] KIND_NAMES = { "unknown", "malformed" };
+    private static final int BITSET_WORDS = 4; // 256 bits: one per byte value
+    
+    
+    // ==================== GROUP SNAPSHOT ====================
+    
+    /**
+     * Copy of one group's statistics
+     */
+    public static final class Group {
+        public final int kind;
+        public final int commandKey;
+        public final long count;
+        public final long firstSeenMillis;
+        public final long lastSeenMillis;
+        public final int minLength;
+        public final int maxLength;
+        private final List<byte[]> samples;
+        private final int[] minValues;
+        private final int[] maxValues;
+        private final int[] distinctValues;
+        
+        Group(GroupStats stats) {
+            this.kind = stats.kind;
+            this.commandKey = stats.commandKey;
+            this.count = stats.count;
+            this.firstSeenMillis = stats.firstSeenMillis;
+            this.lastSeenMillis = stats.lastSeenMillis;
+            this.minLength = stats.minLength;
+            this.maxLength = stats.maxLength;
+            int sampleCount = (int) Math.min(stats.count, stats.samples.length);
+            this.samples = new ArrayList<>(sampleCount);
+            for (int i = 0; i < sampleCount; i++) {
+                samples.add(Arrays.copyOf(stats.samples[i], stats.sampleLengths[i]));
+            }
+            int positions = Math.min(stats.maxLength, MAX_TRACKED_BYTES);
+            this.minValues = Arrays.copyOf(stats.minValues, positions);
+            this.maxValues = Arrays.copyOf(stats.maxValues, positions);
+            this.distinctValues = new int[positions];
+            for (int i = 0; i < positions; i++) {
+                int distinct = 0;
+                for (int w = 0; w < BITSET_WORDS; w++) {
+                    distinct += Long.bitCount(stats.seenValues[i * BITSET_WORDS + w]);
+                }
+                distinctValues[i] = distinct;
+            }
+        }
+        
+        /** Byte 1 */
+        public int getOpcode() {
+            return commandKey >>> 8;
+        }
+        
+        /** Byte 2 */
+        public int getSubOpcode() {
+            return commandKey & 0xFF;
+        }
+        
+        /** Sampled frames (cut at MAX_TRACKED_BYTES) */
+        public List<byte[]> getSamples() {
+            return samples;
+        }
+        
+        /** Number of byte positions with value statistics */
+        public int getTrackedPositions() {
+            return distinctValues.length;
+        }
+        
+        public int getMinValue(int position) {
+            return minValues[position];
+        }
+        
+        public int getMaxValue(int position) {
+            return maxValues[position];
+        }
+        
+        /** Number of distinct values seen at a position; 1 means constant */
+        public int getDistinctValues(int position) {
+            return distinctValues[position];
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s ab%02x%02x x%d", KIND_NAMES[kind], getOpcode(), getSubOpcode(), count);
+        }
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    /**
+     * Mutable statistics of one group (guarded by the profiler)
+     */
+    private static final class GroupStats {
+        final int kind;
+        final int commandKey;
+        long count;
+        long firstSeenMillis;
+        long lastSeenMillis;
+        int minLength = Integer.MAX_VALUE;
+        int maxLength;
+        final byte[][] samples;
+        final int[] sampleLengths;
+        final int[] minValues = new int[MAX_TRACKED_BYTES];
+        final int[] maxValues = new int[MAX_TRACKED_BYTES];
+        final long[] seenValues = new long[MAX_TRACKED_BYTES * BITSET_WORDS];
+        
+        GroupStats(int kind, int commandKey, int sampleCount) {
+            this.kind = kind;
+            this.commandKey = commandKey;
+            this.samples = new byte[sampleCount][MAX_TRACKED_BYTES];
+            this.sampleLengths = new int[sampleCount];
+            Arrays.fill(minValues, 0xFF);
+        }
+    }
+    
+    private final int maxGroups;
+    private final int samplesPerGroup;
+    private final GroupStats[] groups;
+    private int groupCount;
+    private long droppedFrames;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    public RadioFrameProfiler() {
+        this(DEFAULT_MAX_GROUPS, DEFAULT_SAMPLES_PER_GROUP);
+    }
+    
+    /**
+     * @param maxGroups Largest number of groups kept
+     * @param samplesPerGroup Sample frames kept per group
+     */
+    public RadioFrameProfiler(int maxGroups, int samplesPerGroup) {
+        this.maxGroups = Math.max(1, maxGroups);
+        this.samplesPerGroup = Math.max(1, samplesPerGroup);
+        this.groups = new GroupStats[this.maxGroups];
+    }
+    
+    
+    // ==================== RECORDING ====================
+    
+    /**
+     * Record a frame that no parser handles
+     */
+    public void onUnknownFrame(RadioFrame frame) {
+        record(KIND_UNKNOWN, frame);
+    }
+    
+    /**
+     * Record a frame that was too short or that its parser failed on
+     */
+    public void onMalformedFrame(RadioFrame frame) {
+        record(KIND_MALFORMED, frame);
+    }
+    
+    private synchronized void record(int kind, RadioFrame frame) {
+        int length = frame.length();
+        int commandKey = length > 2 ? frame.commandKey() : length > 1 ? frame.opcode() << 8 : 0;
+        GroupStats stats = find(kind, commandKey);
+        if (stats == null) {
+            droppedFrames++;
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        long count = ++stats.count;
+        if (count == 1) {
+            stats.firstSeenMillis = now;
+        }
+        stats.lastSeenMillis = now;
+        stats.minLength = Math.min(stats.minLength, length);
+        stats.maxLength = Math.max(stats.maxLength, length);
+        
+        int tracked = Math.min(length, MAX_TRACKED_BYTES);
+        for (int i = 0; i < tracked; i++) {
+            int value = frame.u8(i);
+            stats.minValues[i] = Math.min(stats.minValues[i], value);
+            stats.maxValues[i] = Math.max(stats.maxValues[i], value);
+            stats.seenValues[i * BITSET_WORDS + (value >>> 6)] |= 1L << (value & 63);
+        }
+        
+        // Reservoir sampling: the n-th frame replaces a random sample with probability k/n
+        int slot;
+        if (count <= samplesPerGroup) {
+            slot = (int) count - 1;
+        } else {
+            long pick = ThreadLocalRandom.current().nextLong(count);
+            if (pick >= samplesPerGroup) {
+                return;
+            }
+            slot = (int) pick;
+        }
+        byte[] sample = stats.samples[slot];
+        for (int i = 0; i < tracked; i++) {
+            sample[i] = (byte) frame.u8(i);
+        }
+        stats.sampleLengths[slot] = tracked;
+    }
+    
+    /**
+     * Group of a kind and command key, created if there is room
+     * (caller holds the lock)
+     */
+    private GroupStats find(int kind, int commandKey) {
+        for (int i = 0; i < groupCount; i++) {
+            GroupStats stats = groups[i];
+            if (stats.commandKey == commandKey && stats.kind == kind) {
+                return stats;
+            }
+        }
+        if (groupCount == maxGroups) {
+            return null;
+        }
+        GroupStats stats = new GroupStats(kind, commandKey, samplesPerGroup);
+        groups[groupCount++] = stats;
+        if (RadioLog.isDebugEnabled()) {
+            RadioLog.d(TAG, "New {} group ab{}", KIND_NAMES[kind], String.format("%04x", commandKey));
+        }
+        return stats;
+    }
+    
+    
+    // ==================== QUERYING ====================
+    
+    /**
+     * Copies of all groups, most frequent first
+     */
+    public synchronized List<Group> getGroups() {
+        List<Group> copies = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            copies.add(new Group(groups[i]));
+        }
+        copies.sort((a, b) -> Long.compare(b.count, a.count));
+        return copies;
+    }
+    
+    /**
+     * Copy of one group, or null if it has not been seen
+     */
+    public synchronized Group getGroup(int kind, int commandKey) {
+        for (int i = 0; i < groupCount; i++) {
+            if (groups[i].commandKey == commandKey && groups[i].kind == kind) {
+                return new Group(groups[i]);
+            }
+        }
+        return null;
+    }
+    
+    /** Frames not profiled because maxGroups groups already existed */
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+    
+    /**
+     * Forget all groups
+     */
+    public synchronized void reset() {
+        Arrays.fill(groups, 0, groupCount, null);
+        groupCount = 0;
+        droppedFrames = 0;
+    }
+    
+    /**
+     * Write a text report of every group, most frequent first
+     * 
+     * Per group: a header line, a line of byte positions where constant
+     * bytes show their value and varying ones show "min-max/distinct", and
+     * the sampled frames in hex.
+     * 
+     * @param out Destination, e.g. a StringBuilder or Writer
+     */
+    public void export(Appendable out) throws IOException {
+        List<Group> snapshot = getGroups();
+        out.append(String.format("# %d groups, %d frames dropped%n", snapshot.size(), getDroppedFrames()));
+        for (Group group : snapshot) {
+            out.append(String.format("%s ab%02x%02x count=%d length=%d-%d first=%d last=%d%n",
+                    KIND_NAMES[group.kind], group.getOpcode(), group.getSubOpcode(), group.count,
+                    group.minLength, group.maxLength, group.firstSeenMillis, group.lastSeenMillis));
+            out.append("  bytes:");
+            for (int i = 0; i < group.getTrackedPositions(); i++) {
+                if (group.getDistinctValues(i) == 1) {
+                    out.append(String.format(" %d=%02x", i, group.getMinValue(i)));
+                } else {
+                    out.append(String.format(" %d=%02x-%02x/%d", i, group.getMinValue(i), group.getMaxValue(i),
+                            group.getDistinctValues(i)));
+                }
+            }
+            out.append(System.lineSeparator());
+            for (byte[] sample : group.getSamples()) {
+                out.append("  sample: ").append(RadioHexCodec.toHex(sample, true)).append(System.lineSeparator());
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RadioFrameProfiler{");
+        List<Group> snapshot = getGroups();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(snapshot.get(i));
+        }
+        return sb.append('}').toString();
+    }
+    
+    
+    // ==================== GETTERS ====================
+    
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+    
+    public int getSamplesPerGroup() {
+        return samplesPerGroup;
+    }
+    
+    /** Name of a KIND_* identifier (for reports) */
+    public static String getKindName(int kind) {
+        return KIND_NAMES[kind];
+    }
+}
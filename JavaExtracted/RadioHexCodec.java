@@ -0,0 +1,274 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Radio Hex Codec
+ * 
+ * Shared hex and ASCII conversions for logging, packet dumps and capture
+ * import. Encoding looks each byte up in a 256-entry table of digit pairs
+ * and writes both characters at once; decoding maps each digit through a
+ * 128-entry nibble table. Every conversion has a form that writes into a
+ * caller-supplied char[], byte[], ByteBuffer or StringBuilder, so repeated
+ * conversions need not allocate.
+ * 
+ * Decoders reject odd lengths and non-hex characters with an
+ * IllegalArgumentException.
+ */
+public final class RadioHexCodec {
+    
+    /** Marks a character that is not a hex digit */
+    private static final byte INVALID = -1;
+    
+    // Digit pairs per byte value: entry b holds (high << 16) | low
+    private static final int[] PAIRS_LOWER = new int[256];
+    private static final int[] PAIRS_UPPER = new int[256];
+    
+    /** Digit value per ASCII character, INVALID for anything else */
+    private static final byte[] NIBBLES = new byte[128];
+    
+    /** Two-digit lowercase hex strings for every byte value */
+    private static final String[] BYTE_STRINGS = new String[256];
+    
+    static {
+        String lower = "0123456789abcdef";
+        String upper = "0123456789ABCDEF";
+        for (int b = 0; b < 256; b++) {
+            PAIRS_LOWER[b] = (lower.charAt(b >>> 4) << 16) | lower.charAt(b & 0x0F);
+            PAIRS_UPPER[b] = (upper.charAt(b >>> 4) << 16) | upper.charAt(b & 0x0F);
+            BYTE_STRINGS[b] = new String(new char[]{lower.charAt(b >>> 4), lower.charAt(b & 0x0F)});
+        }
+        
+        Arrays.fill(NIBBLES, INVALID);
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[lower.charAt(i)] = (byte) i;
+            NIBBLES[upper.charAt(i)] = (byte) i;
+        }
+    }
+    
+    private RadioHexCodec() {
+    }
+    
+    
+    // ==================== ENCODING ====================
+    
+    /**
+     * Encode bytes as hex into a char array
+     * 
+     * @param src Source bytes
+     * @param offset First source byte
+     * @param length Number of bytes
+     * @param dst Target array (needs length * 2 chars from dstOffset)
+     * @param dstOffset First target index
+     * @param upperCase true for A-F, false for a-f
+     * @return Number of chars written
+     */
+    public static int encode(byte[] src, int offset, int length, char[] dst, int dstOffset, boolean upperCase) {
+        int[] pairs = upperCase ? PAIRS_UPPER : PAIRS_LOWER;
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[src[i] & 0xFF];
+            dst[out] = (char) (pair >>> 16);
+            dst[out + 1] = (char) pair;
+            out += 2;
+        }
+        return length * 2;
+    }
+    
+    /**
+     * Encode bytes as ASCII hex digits into a byte array
+     * 
+     * @return Number of bytes written
+     */
+    public static int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset, boolean upperCase) {
+        int[] pairs = upperCase ? PAIRS_UPPER : PAIRS_LOWER;
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[src[i] & 0xFF];
+            dst[out] = (byte) (pair >>> 16);
+            dst[out + 1] = (byte) pair;
+            out += 2;
+        }
+        return length * 2;
+    }
+    
+    /**
+     * Encode bytes as ASCII hex digits at a buffer's position, advancing it
+     * 
+     * @return Number of bytes written
+     */
+    public static int encode(byte[] src, int offset, int length, ByteBuffer dst, boolean upperCase) {
+        if (dst.hasArray()) {
+            int position = dst.position();
+            int written = encode(src, offset, length, dst.array(), dst.arrayOffset() + position, upperCase);
+            dst.position(position + written);
+            return written;
+        }
+        
+        int[] pairs = upperCase ? PAIRS_UPPER : PAIRS_LOWER;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[src[i] & 0xFF];
+            dst.put((byte) (pair >>> 16));
+            dst.put((byte) pair);
+        }
+        return length * 2;
+    }
+    
+    /**
+     * Append bytes as hex
+     * 
+     * @return The builder
+     */
+    public static StringBuilder append(StringBuilder sb, byte[] src, int offset, int length, boolean upperCase) {
+        int[] pairs = upperCase ? PAIRS_UPPER : PAIRS_LOWER;
+        sb.ensureCapacity(sb.length() + length * 2);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[src[i] & 0xFF];
+            sb.append((char) (pair >>> 16)).append((char) pair);
+        }
+        return sb;
+    }
+    
+    /**
+     * Encode bytes as a hex string
+     */
+    public static String toHex(byte[] src, int offset, int length, boolean upperCase) {
+        char[] hex = new char[length * 2];
+        encode(src, offset, length, hex, 0, upperCase);
+        return new String(hex);
+    }
+    
+    /**
+     * Encode a whole array as a hex string
+     */
+    public static String toHex(byte[] src, boolean upperCase) {
+        return toHex(src, 0, src.length, upperCase);
+    }
+    
+    /**
+     * Get the shared two-digit lowercase hex string of a byte value
+     * 
+     * @param b Byte value (only the low 8 bits are used)
+     * @return Cached string such as "0a"
+     */
+    public static String byteToHex(int b) {
+        return BYTE_STRINGS[b & 0xFF];
+    }
+    
+    /**
+     * Encode text as the hex of its character codes (e.g. "AB" -> "4142")
+     * 
+     * @param text Text, normally ASCII
+     * @param sb Target
+     * @param upperCase true for A-F, false for a-f
+     * @return The builder
+     */
+    public static StringBuilder appendAsciiHex(StringBuilder sb, CharSequence text, boolean upperCase) {
+        int[] pairs = upperCase ? PAIRS_UPPER : PAIRS_LOWER;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c <= 0xFF) {
+                int pair = pairs[c];
+                sb.append((char) (pair >>> 16)).append((char) pair);
+            } else {
+                String hex = Integer.toHexString(c);
+                sb.append(upperCase ? hex.toUpperCase(Locale.ROOT) : hex);
+            }
+        }
+        return sb;
+    }
+    
+    
+    // ==================== DECODING ====================
+    
+    /**
+     * Decode hex digits into a byte array
+     * 
+     * @param hex Hex digits (either case)
+     * @param start First digit
+     * @param end Index after the last digit
+     * @param dst Target array (needs (end - start) / 2 bytes from dstOffset)
+     * @param dstOffset First target index
+     * @return Number of bytes written
+     * @throws IllegalArgumentException If the length is odd or a character is not a hex digit
+     */
+    public static int decode(CharSequence hex, int start, int end, byte[] dst, int dstOffset) {
+        checkEven(start, end);
+        int out = dstOffset;
+        for (int i = start; i < end; i += 2) {
+            dst[out++] = (byte) ((nibble(hex.charAt(i), i) << 4) | nibble(hex.charAt(i + 1), i + 1));
+        }
+        return out - dstOffset;
+    }
+    
+    /**
+     * Decode ASCII hex digits held in a byte array (e.g. capture files)
+     * 
+     * @return Number of bytes written
+     * @throws IllegalArgumentException If the length is odd or a byte is not a hex digit
+     */
+    public static int decode(byte[] hex, int start, int end, byte[] dst, int dstOffset) {
+        checkEven(start, end);
+        int out = dstOffset;
+        for (int i = start; i < end; i += 2) {
+            dst[out++] = (byte) ((nibble((char) (hex[i] & 0xFF), i) << 4) | nibble((char) (hex[i + 1] & 0xFF), i + 1));
+        }
+        return out - dstOffset;
+    }
+    
+    /**
+     * Decode a whole hex string into a new array
+     * 
+     * @throws IllegalArgumentException If the length is odd or a character is not a hex digit
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        byte[] data = new byte[hex.length() / 2];
+        decode(hex, 0, hex.length(), data, 0);
+        return data;
+    }
+    
+    /**
+     * Decode hex digits as single-byte character codes (e.g. "4142" -> "AB")
+     * 
+     * @param hex Hex digits
+     * @param start First digit
+     * @param end Index after the last digit
+     * @param sb Target
+     * @return The builder
+     * @throws IllegalArgumentException If the length is odd or a character is not a hex digit
+     */
+    public static StringBuilder appendAscii(StringBuilder sb, CharSequence hex, int start, int end) {
+        checkEven(start, end);
+        sb.ensureCapacity(sb.length() + (end - start) / 2);
+        for (int i = start; i < end; i += 2) {
+            sb.append((char) ((nibble(hex.charAt(i), i) << 4) | nibble(hex.charAt(i + 1), i + 1)));
+        }
+        return sb;
+    }
+    
+    /**
+     * Check whether a character is a hex digit
+     */
+    public static boolean isHexDigit(char c) {
+        return c < 128 && NIBBLES[c] != INVALID;
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    private static int nibble(char c, int index) {
+        int value = c < 128 ? NIBBLES[c] : INVALID;
+        if (value == INVALID) {
+            throw new IllegalArgumentException("Not a hex digit at " + index + ": '" + c + "'");
+        }
+        return value;
+    }
+    
+    private static void checkEven(int start, int end) {
+        if (((end - start) & 1) != 0) {
+            throw new IllegalArgumentException("Odd number of hex digits: " + (end - start));
+        }
+    }
+}
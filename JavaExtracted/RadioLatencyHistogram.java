@@ -0,0 +1,179 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Radio Latency Histogram
+ * 
+ * Log-linear histogram of durations in nanoseconds, safe to record from
+ * several threads without locks. Values below LINEAR_LIMIT get a bucket
+ * each; above that every power of two is split into SUB_BUCKETS equal
+ * buckets, so any recorded value is reported within 12.5%. Values of
+ * 2^MAX_EXPONENT ns (about 18 minutes) and more share the last bucket.
+ * 
+ * Counts are striped: each thread increments the copy of the buckets
+ * chosen by its thread id, so radios parsed on different threads do not
+ * contend on the same counters. Readers add the stripes up.
+ */
+public class RadioLatencyHistogram {
+    
+    /** Values below this get one bucket each */
+    public static final int LINEAR_LIMIT = 16;
+    
+    /** Buckets per power of two above LINEAR_LIMIT */
+    public static final int SUB_BUCKETS = 8;
+    
+    /** Largest power of two with its own buckets */
+    public static final int MAX_EXPONENT = 40;
+    
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int LINEAR_EXPONENT = 4; // log2(LINEAR_LIMIT)
+    
+    /** Number of buckets; the last also holds every larger value */
+    public static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - LINEAR_EXPONENT + 1) * SUB_BUCKETS;
+    
+    private final int stripeMask;
+    private final AtomicLongArray counts; // Stripe-major: stripe * BUCKETS + bucket
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a histogram with one stripe per available processor (up to 16)
+     */
+    public RadioLatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())));
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+    }
+    
+    
+    // ==================== RECORDING ====================
+    
+    /**
+     * Record one duration
+     * 
+     * @param nanos Duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.incrementAndGet(stripe * BUCKETS + bucketOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+    
+    /**
+     * Bucket index of a value
+     */
+    public static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + sub;
+    }
+    
+    /**
+     * Largest value that falls into a bucket
+     */
+    public static long bucketUpperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_EXPONENT;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+    
+    
+    // ==================== READING ====================
+    
+    /**
+     * Bucket counts summed over the stripes
+     * 
+     * @return BUCKETS counts, index as bucketOf()
+     */
+    public long[] snapshot() {
+        long[] merged = new long[BUCKETS];
+        snapshot(merged);
+        return merged;
+    }
+    
+    /**
+     * Bucket counts summed over the stripes, into a caller's array so
+     * periodic readers do not allocate
+     * 
+     * @param merged Array of at least BUCKETS entries; overwritten
+     */
+    public void snapshot(long[] merged) {
+        Arrays.fill(merged, 0, BUCKETS, 0);
+        for (int i = 0; i < counts.length(); i++) {
+            merged[i % BUCKETS] += counts.get(i);
+        }
+    }
+    
+    /** Number of recorded values */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+    
+    /** Sum of the recorded values */
+    public long getSum() {
+        return sum.sum();
+    }
+    
+    /** Mean of the recorded values, 0 if none */
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) sum.sum() / count : 0;
+    }
+    
+    /** Largest recorded value */
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * Value at a percentile, as the upper bound of its bucket
+     * 
+     * @param fraction Percentile between 0 and 1 (e.g. 0.99)
+     * @return Value in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+        long[] merged = snapshot();
+        long count = 0;
+        for (long c : merged) {
+            count += c;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += merged[bucket];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,450 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Link Watchdog
+ * 
+ * Notices a stalled link long before the Bluetooth stack reports
+ * STATE_DISCONNECTED, and walks through increasingly drastic recoveries.
+ * The radio sends frequency frames about once a second on its own, so a
+ * healthy link is never quiet for long.
+ * 
+ * Every notification is reported with onFrameReceived(), which keeps a
+ * histogram of the gaps between them. A timer checks the link every
+ * checkIntervalMillis:
+ * 1. Quiet for quietThresholdMillis: the link is stalled. A probe command
+ *    (CMD_HANDSHAKE by default) is sent, and re-sent every
+ *    probeTimeoutMillis while nothing arrives.
+ * 2. After maxMissedProbes unanswered probes the watchdog escalates, one
+ *    level each time: LEVEL_REENABLE_NOTIFICATIONS, then LEVEL_RECONNECT,
+ *    then LEVEL_RESTART (close and connect), which is repeated until the
+ *    radio answers. A reconnect or restart is given connectTimeoutMillis
+ *    to complete before the next one.
+ * 3. The first frame after a stall ends it.
+ * 
+ * Time to detect (last frame until the stall was declared) and time to
+ * recover (stall declared until the next frame) are kept as histograms.
+ * 
+ * The recovery actions are reached through the Link interface;
+ * RadioBluetoothManager implements it. Actions and probes run on the
+ * watchdog's timer thread, outside the watchdog's lock, so a slow action
+ * never holds up onFrameReceived() on the Bluetooth callback thread.
+ * 
+ * A deliberate disconnect pauses the watchdog (RadioBluetoothManager does
+ * this from disconnect() and close(), and resumes it from connect()), so
+ * a link that was closed on purpose is not "recovered".
+ * 
+ * Usage:
+ *   RadioLinkWatchdog watchdog = new RadioLinkWatchdog(manager);
+ *   manager.setWatchdog(watchdog);
+ *   watchdog.start();
+ */
+public class RadioLinkWatchdog {
+    
+    private static final String TAG = "RadioLinkWatchdog";
+    
+    /** Default time without frames before the link counts as stalled (ms) */
+    public static final long DEFAULT_QUIET_THRESHOLD_MILLIS = 3000;
+    
+    /** Default time to wait for an answer to a probe (ms) */
+    public static final long DEFAULT_PROBE_TIMEOUT_MILLIS = 1000;
+    
+    /** Default interval between link checks (ms) */
+    public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 250;
+    
+    /** Default number of unanswered probes before escalating */
+    public static final int DEFAULT_MAX_MISSED_PROBES = 2;
+    
+    /** Default time a reconnect or restart gets before escalating again (ms) */
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    
+    // ==================== ESCALATION LEVELS ====================
+    
+    /** Stalled, probing only */
+    public static final int LEVEL_PROBE = 0;
+    
+    /** Notifications re-enabled on the current connection */
+    public static final int LEVEL_REENABLE_NOTIFICATIONS = 1;
+    
+    /** GATT connection dropped and re-established */
+    public static final int LEVEL_RECONNECT = 2;
+    
+    /** GATT client closed and a new connection made */
+    public static final int LEVEL_RESTART = 3;
+    
+    private static final String[] LEVEL_NAMES = {
+        "probe", "re-enable notifications", "reconnect", "restart"
+    };
+    
+    
+    // ==================== LINK INTERFACE ====================
+    
+    /**
+     * Recovery actions of a connection
+     * 
+     * Each returns true if the action was started.
+     */
+    public interface Link {
+        boolean sendCommand(byte[] command);
+        boolean reenableNotifications();
+        boolean reconnect();
+        boolean restart();
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final Link link;
+    private volatile byte[] probe = RadioProtocolCommands.CMD_HANDSHAKE;
+    
+    private long quietThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUIET_THRESHOLD_MILLIS);
+    private long probeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_PROBE_TIMEOUT_MILLIS);
+    private long checkIntervalMillis = DEFAULT_CHECK_INTERVAL_MILLIS;
+    private int maxMissedProbes = DEFAULT_MAX_MISSED_PROBES;
+    private long connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CONNECT_TIMEOUT_MILLIS);
+    
+    private ScheduledExecutorService scheduler; // Between start() and stop()
+    private boolean paused;
+    private volatile boolean active; // Started and not paused; checked again before each action
+    
+    // Written on every frame; read by the timer
+    private volatile long lastFrameNanos;
+    private volatile boolean stalled;
+    
+    // Current stall (guarded by this)
+    private long stallDetectedNanos;
+    private long lastProbeNanos;
+    private int missedProbes;
+    private int level;
+    private long nextEscalationNanos; // Earliest time to escalate after a reconnect or restart
+    
+    // Statistics
+    private final RadioLatencyHistogram frameGaps = new RadioLatencyHistogram();
+    private final RadioLatencyHistogram timeToDetect = new RadioLatencyHistogram();
+    private final RadioLatencyHistogram timeToRecover = new RadioLatencyHistogram();
+    private final long[] escalations = new long[LEVEL_NAMES.length]; // Guarded by this
+    private long stallsDetected;
+    private long probesSent;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a watchdog
+     * 
+     * @param link Connection to probe and recover
+     */
+    public RadioLinkWatchdog(Link link) {
+        this.link = link;
+    }
+    
+    
+    // ==================== LIFECYCLE ====================
+    
+    /**
+     * Start checking the link; the quiet time counts from now
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        lastFrameNanos = System.nanoTime();
+        paused = false;
+        active = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> check(System.nanoTime()), checkIntervalMillis,
+                checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stop checking the link and end the timer thread
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        active = false;
+        stalled = false;
+    }
+    
+    /**
+     * Stop probing and recovering while the link is closed on purpose; an
+     * ongoing stall is abandoned
+     */
+    public synchronized void pause() {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        active = false;
+        stalled = false;
+        RadioLog.d(TAG, "Paused");
+    }
+    
+    /**
+     * Resume after pause(), e.g. when connecting again; the quiet time
+     * counts from now
+     */
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        active = scheduler != null;
+        lastFrameNanos = System.nanoTime();
+        RadioLog.d(TAG, "Resumed");
+    }
+    
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+    
+    
+    // ==================== FRAME TRACKING ====================
+    
+    /**
+     * Record that a notification arrived
+     */
+    public void onFrameReceived() {
+        onFrameReceived(System.nanoTime());
+    }
+    
+    void onFrameReceived(long nowNanos) {
+        long previous = lastFrameNanos;
+        lastFrameNanos = nowNanos;
+        if (previous != 0) {
+            frameGaps.record(nowNanos - previous);
+        }
+        if (stalled) {
+            recovered(nowNanos);
+        }
+    }
+    
+    private synchronized void recovered(long nowNanos) {
+        if (!stalled) {
+            return;
+        }
+        stalled = false;
+        long recoverNanos = nowNanos - stallDetectedNanos;
+        timeToRecover.record(recoverNanos);
+        RadioLog.i(TAG, "Link recovered after {} ms", TimeUnit.NANOSECONDS.toMillis(recoverNanos));
+    }
+    
+    
+    // ==================== CHECKING ====================
+    
+    /**
+     * Timer task: declare a stall, probe, or escalate
+     * 
+     * What to do is decided under the lock; the link is called after it is
+     * released.
+     */
+    void check(long nowNanos) {
+        int recovery = LEVEL_PROBE; // Recovery level to run, LEVEL_PROBE for none
+        int probeLevel;
+        synchronized (this) {
+            if (paused) {
+                return;
+            }
+            long quietNanos = nowNanos - lastFrameNanos;
+            if (!stalled) {
+                if (quietNanos < quietThresholdNanos) {
+                    return;
+                }
+                stalled = true;
+                stallsDetected++;
+                stallDetectedNanos = nowNanos;
+                timeToDetect.record(quietNanos);
+                missedProbes = 0;
+                level = LEVEL_PROBE;
+                nextEscalationNanos = nowNanos;
+                RadioLog.w(TAG, "Link quiet for {} ms, probing", TimeUnit.NANOSECONDS.toMillis(quietNanos));
+            } else {
+                if (nowNanos - lastProbeNanos < probeTimeoutNanos) {
+                    return;
+                }
+                missedProbes++;
+                if (missedProbes >= maxMissedProbes && nowNanos - nextEscalationNanos >= 0) {
+                    missedProbes = 0;
+                    recovery = escalate(nowNanos);
+                }
+            }
+            lastProbeNanos = nowNanos;
+            probesSent++;
+            probeLevel = level;
+        }
+        
+        if (recovery != LEVEL_PROBE && active) {
+            runRecovery(recovery);
+        }
+        if (active && !link.sendCommand(probe)) {
+            RadioLog.d(TAG, "Probe not sent (level {})", LEVEL_NAMES[probeLevel]);
+        }
+    }
+    
+    /**
+     * Move to the next recovery level (caller holds the lock)
+     * 
+     * @return The level whose action should run
+     */
+    private int escalate(long nowNanos) {
+        if (level < LEVEL_RESTART) {
+            level++;
+        }
+        escalations[level]++;
+        if (level >= LEVEL_RECONNECT) {
+            nextEscalationNanos = nowNanos + connectTimeoutNanos;
+        }
+        RadioLog.w(TAG, "Link still stalled, escalating: {}", LEVEL_NAMES[level]);
+        return level;
+    }
+    
+    /**
+     * Run the action of a recovery level (without holding the lock)
+     */
+    private void runRecovery(int level) {
+        boolean started;
+        try {
+            switch (level) {
+                case LEVEL_REENABLE_NOTIFICATIONS:
+                    started = link.reenableNotifications();
+                    break;
+                case LEVEL_RECONNECT:
+                    started = link.reconnect();
+                    break;
+                default:
+                    started = link.restart();
+                    break;
+            }
+        } catch (RuntimeException e) {
+            RadioLog.e(TAG, "Recovery action failed", e);
+            started = false;
+        }
+        if (!started) {
+            RadioLog.w(TAG, "Recovery action not started: {}", LEVEL_NAMES[level]);
+        }
+    }
+    
+    
+    // ==================== REPORTING ====================
+    
+    /** Name of a LEVEL_* identifier (for reports) */
+    public static String getLevelName(int level) {
+        return LEVEL_NAMES[level];
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "RadioLinkWatchdog{stalled=" + stalled
+                + ", stalls=" + stallsDetected
+                + ", probes=" + probesSent
+                + ", reenables=" + escalations[LEVEL_REENABLE_NOTIFICATIONS]
+                + ", reconnects=" + escalations[LEVEL_RECONNECT]
+                + ", restarts=" + escalations[LEVEL_RESTART]
+                + ", detectP50=" + TimeUnit.NANOSECONDS.toMillis(timeToDetect.getPercentile(0.50)) + "ms"
+                + ", recoverP50=" + TimeUnit.NANOSECONDS.toMillis(timeToRecover.getPercentile(0.50)) + "ms"
+                + ", recoverMax=" + TimeUnit.NANOSECONDS.toMillis(timeToRecover.getMax()) + "ms}";
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public boolean isStalled() {
+        return stalled;
+    }
+    
+    /** Recovery level reached in the current or last stall */
+    public synchronized int getLevel() {
+        return level;
+    }
+    
+    public synchronized long getStallsDetected() {
+        return stallsDetected;
+    }
+    
+    public synchronized long getProbesSent() {
+        return probesSent;
+    }
+    
+    /** Number of times a LEVEL_* recovery was run */
+    public synchronized long getEscalations(int level) {
+        return escalations[level];
+    }
+    
+    /** Gaps between notifications, in nanoseconds */
+    public RadioLatencyHistogram getFrameGaps() {
+        return frameGaps;
+    }
+    
+    /** Last frame until the stall was declared, in nanoseconds */
+    public RadioLatencyHistogram getTimeToDetect() {
+        return timeToDetect;
+    }
+    
+    /** Stall declared until the next frame, in nanoseconds */
+    public RadioLatencyHistogram getTimeToRecover() {
+        return timeToRecover;
+    }
+    
+    public byte[] getProbe() {
+        return probe;
+    }
+    
+    /**
+     * Set the command sent to a quiet link; it must make the radio answer
+     */
+    public void setProbe(byte[] probe) {
+        this.probe = probe;
+    }
+    
+    public synchronized long getQuietThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(quietThresholdNanos);
+    }
+    
+    public synchronized void setQuietThresholdMillis(long millis) {
+        this.quietThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    public synchronized long getProbeTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(probeTimeoutNanos);
+    }
+    
+    public synchronized void setProbeTimeoutMillis(long millis) {
+        this.probeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    public synchronized int getMaxMissedProbes() {
+        return maxMissedProbes;
+    }
+    
+    public synchronized void setMaxMissedProbes(int maxMissedProbes) {
+        this.maxMissedProbes = Math.max(1, maxMissedProbes);
+    }
+    
+    public synchronized long getConnectTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(connectTimeoutNanos);
+    }
+    
+    public synchronized void setConnectTimeoutMillis(long millis) {
+        this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+    
+    public synchronized long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+    
+    /**
+     * Set the interval between link checks; takes effect on the next start()
+     */
+    public synchronized void setCheckIntervalMillis(long millis) {
+        this.checkIntervalMillis = Math.max(1, millis);
+    }
+}
@@ -0,0 +1,535 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+/**
+ * Radio Listener Registry
+ * 
+ * Fans parsed updates out to any number of RadioStatusListeners. Each
+ * subscriber declares a bit mask of the fields it wants
+ * (1 << RadioChangeFilter.FIELD_*), and is only called for those fields.
+ * 
+ * Subscribers are kept in a copy-on-write array: adding or removing one
+ * builds a new array, while delivering an update only reads the current
+ * array, without locking or allocating. The union of all masks is kept up
+ * to date so the parser can skip decoding packets nobody has asked for.
+ * Passive subscribers (e.g. RadioStateStore) receive whatever is decoded
+ * for the others but do not count toward that union.
+ * 
+ * Because updates only carry changes, a subscriber added while the radio
+ * is running is owed the current values of its fields. The parsing thread
+ * replays them from the state store with replayPending() before the next
+ * frame, so they reach the subscriber in order with the live updates.
+ * 
+ * A subscriber that throws is logged and does not stop delivery to the
+ * others.
+ */
+public class RadioListenerRegistry implements RadioStatusListener {
+    
+    private static final String TAG = "RadioListenerRegistry";
+    
+    // ==================== FIELD MASKS ====================
+    
+    public static final int MASK_FREQUENCY = 1 << RadioChangeFilter.FIELD_FREQUENCY;
+    public static final int MASK_VOLUME = 1 << RadioChangeFilter.FIELD_VOLUME;
+    public static final int MASK_SIGNAL_STRENGTH = 1 << RadioChangeFilter.FIELD_SIGNAL_STRENGTH;
+    public static final int MASK_STATUS = 1 << RadioChangeFilter.FIELD_STATUS;
+    public static final int MASK_DEVICE_INFO = 1 << RadioChangeFilter.FIELD_DEVICE_INFO;
+    public static final int MASK_LOCK_STATUS = 1 << RadioChangeFilter.FIELD_LOCK_STATUS;
+    public static final int MASK_RECORDING_STATUS = 1 << RadioChangeFilter.FIELD_RECORDING_STATUS;
+    public static final int MASK_BATTERY = 1 << RadioChangeFilter.FIELD_BATTERY;
+    public static final int MASK_CHANNEL_DISPLAY = 1 << RadioChangeFilter.FIELD_CHANNEL_DISPLAY;
+    
+    /** Every field */
+    public static final int MASK_ALL = (1 << RadioChangeFilter.FIELD_COUNT) - 1;
+    
+    
+    // ==================== SUBSCRIPTION ====================
+    
+    /**
+     * A registered listener and the fields it wants
+     */
+    private static final class Subscription {
+        final Object key;                     // Object the caller registered (used for removal)
+        final RadioStatusListener listener;
+        final int fieldMask;                  // Fields delivered
+        final int demandMask;                 // Fields that count toward the combined mask
+        volatile int replayMask;              // Fields whose current value is still owed, cleared by the parsing thread
+        
+        Subscription(Object key, RadioStatusListener listener, int fieldMask, int demandMask, int replayMask) {
+            this.key = key;
+            this.listener = listener;
+            this.fieldMask = fieldMask;
+            this.demandMask = demandMask & fieldMask;
+            this.replayMask = replayMask & fieldMask;
+        }
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+    
+    private volatile Subscription[] subscriptions = NO_SUBSCRIPTIONS;
+    private volatile int combinedMask;
+    private volatile boolean replayRequested; // A subscription is owed current values
+    private volatile RadioMetrics metrics; // Dispatch latency and listener errors, when set
+    private volatile RadioTracer tracer; // Times each callback fan-out, when set
+    private volatile String deviceAddress;
+    private int traceOpcode = -1; // Frame being dispatched, set by the parsing thread
+    private int traceLength;
+    
+    
+    // ==================== REGISTRATION ====================
+    
+    /**
+     * Subscribe a listener to every field
+     * 
+     * @param listener Listener to add
+     */
+    public void add(RadioStatusListener listener) {
+        add(listener, listener, MASK_ALL);
+    }
+    
+    /**
+     * Subscribe a listener to some fields
+     * 
+     * @param listener Listener to add
+     * @param fieldMask MASK_* bits of the fields to deliver
+     */
+    public void add(RadioStatusListener listener, int fieldMask) {
+        add(listener, listener, fieldMask);
+    }
+    
+    /**
+     * Subscribe a listener under a separate removal key (e.g. an adapter
+     * registered on behalf of the object it wraps)
+     * 
+     * The current values of its fields are replayed to it before the next
+     * frame.
+     * 
+     * @param key Object passed to remove() later
+     * @param listener Listener to add
+     * @param fieldMask MASK_* bits of the fields to deliver
+     */
+    public void add(Object key, RadioStatusListener listener, int fieldMask) {
+        fieldMask &= MASK_ALL;
+        append(new Subscription(key, listener, fieldMask, fieldMask, fieldMask));
+    }
+    
+    /**
+     * Subscribe a listener that receives the given fields whenever another
+     * subscriber causes them to be decoded, without asking for them itself
+     * 
+     * Nothing is replayed to a passive subscriber; use setDemandMask() to
+     * make some of its fields count.
+     * 
+     * @param key Object passed to remove() later
+     * @param listener Listener to add
+     * @param fieldMask MASK_* bits of the fields to deliver
+     */
+    public void addPassive(Object key, RadioStatusListener listener, int fieldMask) {
+        append(new Subscription(key, listener, fieldMask & MASK_ALL, 0, 0));
+    }
+    
+    private synchronized void append(Subscription subscription) {
+        if (subscription.listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        Subscription[] current = subscriptions;
+        Subscription[] updated = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = subscription;
+        publish(updated);
+    }
+    
+    /**
+     * Remove every subscription registered under a key
+     * 
+     * @param key Listener or key passed to add()
+     * @return true if a subscription was removed
+     */
+    public synchronized boolean remove(Object key) {
+        Subscription[] current = subscriptions;
+        int kept = 0;
+        for (Subscription sub : current) {
+            if (sub.key != key) {
+                kept++;
+            }
+        }
+        if (kept == current.length) {
+            return false;
+        }
+        
+        Subscription[] updated = kept == 0 ? NO_SUBSCRIPTIONS : new Subscription[kept];
+        int i = 0;
+        for (Subscription sub : current) {
+            if (sub.key != key) {
+                updated[i++] = sub;
+            }
+        }
+        publish(updated);
+        return true;
+    }
+    
+    /**
+     * Change the fields delivered to a registered key
+     * 
+     * All of the fields count toward the combined mask afterwards, and the
+     * current values of newly added fields are replayed before the next
+     * frame.
+     * 
+     * @param key Listener or key passed to add()
+     * @param fieldMask New MASK_* bits
+     * @return true if the key was registered
+     */
+    public synchronized boolean setFieldMask(Object key, int fieldMask) {
+        Subscription[] current = subscriptions;
+        Subscription[] updated = current.clone();
+        boolean found = false;
+        fieldMask &= MASK_ALL;
+        for (int i = 0; i < updated.length; i++) {
+            Subscription sub = updated[i];
+            if (sub.key == key) {
+                int replay = sub.replayMask | (fieldMask & ~sub.fieldMask);
+                updated[i] = new Subscription(key, sub.listener, fieldMask, fieldMask, replay);
+                found = true;
+            }
+        }
+        if (found) {
+            publish(updated);
+        }
+        return found;
+    }
+    
+    /**
+     * Change which of a key's delivered fields count toward the combined
+     * mask (e.g. the fields a passive subscriber's readers need)
+     * 
+     * @param key Listener or key passed to add() or addPassive()
+     * @param demandMask MASK_* bits, limited to the delivered fields
+     * @return true if the key was registered
+     */
+    public synchronized boolean setDemandMask(Object key, int demandMask) {
+        Subscription[] current = subscriptions;
+        Subscription[] updated = current.clone();
+        boolean found = false;
+        for (int i = 0; i < updated.length; i++) {
+            Subscription sub = updated[i];
+            if (sub.key == key) {
+                updated[i] = new Subscription(key, sub.listener, sub.fieldMask, demandMask, sub.replayMask);
+                found = true;
+            }
+        }
+        if (found) {
+            publish(updated);
+        }
+        return found;
+    }
+    
+    /**
+     * Check whether a key is registered
+     */
+    public boolean contains(Object key) {
+        for (Subscription sub : subscriptions) {
+            if (sub.key == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get the listener registered under a key
+     * 
+     * @param key Listener or key passed to add()
+     * @return The first listener registered under the key, or null
+     */
+    public RadioStatusListener get(Object key) {
+        for (Subscription sub : subscriptions) {
+            if (sub.key == key) {
+                return sub.listener;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Union of every subscriber's field mask, passive fields excluded
+     * 
+     * @return MASK_* bits that at least one subscriber wants
+     */
+    public int getCombinedMask() {
+        return combinedMask;
+    }
+    
+    /**
+     * Record dispatch latency and listener errors in shared metrics; null
+     * to stop
+     */
+    public void setMetrics(RadioMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Report each callback fan-out to a tracer as a CALLBACK event; null to
+     * stop
+     * 
+     * @param tracer Tracer, or null
+     * @param deviceAddress Address reported with the events
+     */
+    public void setTracer(RadioTracer tracer, String deviceAddress) {
+        this.deviceAddress = deviceAddress;
+        this.tracer = tracer;
+    }
+    
+    /**
+     * Set the frame reported with the CALLBACK events that follow
+     */
+    void setTraceFrame(int opcode, int length) {
+        this.traceOpcode = opcode;
+        this.traceLength = length;
+    }
+    
+    /**
+     * Check whether any subscriber wants one of the given fields
+     * 
+     * @param fieldMask MASK_* bits
+     * @return true if at least one of the fields is wanted
+     */
+    public boolean isWanted(int fieldMask) {
+        return (combinedMask & fieldMask) != 0;
+    }
+    
+    /** Number of subscriptions */
+    public int size() {
+        return subscriptions.length;
+    }
+    
+    private void publish(Subscription[] updated) {
+        int mask = 0;
+        boolean replay = false;
+        for (Subscription sub : updated) {
+            mask |= sub.demandMask;
+            replay |= sub.replayMask != 0;
+        }
+        subscriptions = updated;
+        combinedMask = mask;
+        if (replay) {
+            replayRequested = true;
+        }
+    }
+    
+    
+    // ==================== REPLAY ====================
+    
+    /**
+     * Deliver the current values owed to newly added subscribers
+     * 
+     * Must be called on the parsing thread between frames; a single
+     * volatile read when nothing is owed.
+     * 
+     * @param source State holding the values of the frames parsed so far
+     */
+    public void replayPending(RadioStateStore source) {
+        if (!replayRequested) {
+            return;
+        }
+        replayRequested = false; // Cleared first: a subscriber added meanwhile sets it again
+        for (Subscription sub : subscriptions) {
+            int owed = sub.replayMask;
+            if (owed != 0) {
+                sub.replayMask = 0;
+                try {
+                    source.replayTo(sub.listener, owed);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+    }
+    
+    
+    // ==================== LISTENER METHODS ====================
+    
+    @Override
+    public void onFrequencyChanged(long frequencyHz, byte band) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_FREQUENCY) != 0) {
+                try {
+                    sub.listener.onFrequencyChanged(frequencyHz, band);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_FREQUENCY);
+    }
+    
+    @Override
+    public void onVolumeChanged(int volume) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_VOLUME) != 0) {
+                try {
+                    sub.listener.onVolumeChanged(volume);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_VOLUME);
+    }
+    
+    @Override
+    public void onSignalStrengthChanged(int strength) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_SIGNAL_STRENGTH) != 0) {
+                try {
+                    sub.listener.onSignalStrengthChanged(strength);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_SIGNAL_STRENGTH);
+    }
+    
+    @Override
+    public void onStatusUpdate(RadioStatus status) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_STATUS) != 0) {
+                try {
+                    sub.listener.onStatusUpdate(status);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_STATUS);
+    }
+    
+    @Override
+    public void onDeviceInfo(String deviceInfo) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_DEVICE_INFO) != 0) {
+                try {
+                    sub.listener.onDeviceInfo(deviceInfo);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_DEVICE_INFO);
+    }
+    
+    @Override
+    public void onLockStatusChanged(boolean isLocked) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_LOCK_STATUS) != 0) {
+                try {
+                    sub.listener.onLockStatusChanged(isLocked);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_LOCK_STATUS);
+    }
+    
+    @Override
+    public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_RECORDING_STATUS) != 0) {
+                try {
+                    sub.listener.onRecordingStatusChanged(isRecording, recordIndex);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_RECORDING_STATUS);
+    }
+    
+    @Override
+    public void onBatteryLevel(int batteryPercent) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_BATTERY) != 0) {
+                try {
+                    sub.listener.onBatteryLevel(batteryPercent);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_BATTERY);
+    }
+    
+    @Override
+    public void onChannelDisplay(CharSequence channelText) {
+        long start = dispatchStart();
+        Object trace = traceBegin();
+        for (Subscription sub : subscriptions) {
+            if ((sub.fieldMask & MASK_CHANNEL_DISPLAY) != 0) {
+                try {
+                    sub.listener.onChannelDisplay(channelText);
+                } catch (RuntimeException e) {
+                    logListenerError(sub, e);
+                }
+            }
+        }
+        dispatchEnd(start, trace, RadioChangeFilter.FIELD_CHANNEL_DISPLAY);
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    private void logListenerError(Subscription sub, RuntimeException e) {
+        RadioMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onListenerError();
+        }
+        RadioLog.e(TAG, "Listener " + sub.listener + " failed", e);
+    }
+    
+    /**
+     * Start timing a fan-out
+     * 
+     * @return Start time, or 0 when no metrics are set
+     */
+    private long dispatchStart() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+    
+    private Object traceBegin() {
+        RadioTracer tracer = this.tracer;
+        return tracer != null ? tracer.begin(RadioTracer.CALLBACK) : null;
+    }
+    
+    private void dispatchEnd(long start, Object trace, int field) {
+        RadioMetrics metrics = this.metrics;
+        if (metrics != null && start != 0) {
+            metrics.recordDispatch(System.nanoTime() - start);
+        }
+        RadioTracer tracer = this.tracer;
+        if (trace != null && tracer != null) {
+            tracer.end(trace, deviceAddress, traceOpcode, traceLength, field);
+        }
+    }
+}
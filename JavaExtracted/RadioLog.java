@@ -0,0 +1,318 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import android.util.Log;
+
+import java.util.function.Supplier;
+
+/**
+ * Radio Log
+ * 
+ * Logging facade for the protocol classes. Level checks read one static
+ * field, and messages are only built when their level is enabled:
+ * - Templates with "{}" placeholders take their arguments as parameters
+ * - Suppliers are only called when the message is logged
+ * - Hex dumps are rendered by dHex() only when debug logging is on
+ * 
+ * Per-frame debug output can be sampled: with a sample rate of N, only
+ * every Nth frame of each opcode is logged (see sampleFrame()).
+ * 
+ * Messages go to android.util.Log by default, or to System.err when the
+ * Android classes are not available (tools and benchmarks on a plain JVM);
+ * setSink() redirects them (e.g. to a no-op sink in benchmarks).
+ */
+public final class RadioLog {
+    
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+    
+    /** Tag checked with Log.isLoggable() for the initial level ("setprop log.tag.RadioProtocolHandler DEBUG") */
+    public static final String LEVEL_TAG = "RadioProtocolHandler";
+    
+    
+    // ==================== SINK INTERFACE ====================
+    
+    /**
+     * Destination for log messages
+     */
+    public interface Sink {
+        /**
+         * @param priority VERBOSE to ERROR
+         * @param tag Log tag
+         * @param message Formatted message
+         * @param error Throwable to log with the message, or null
+         */
+        void log(int priority, String tag, String message, Throwable error);
+    }
+    
+    /** Sink writing to android.util.Log */
+    public static final Sink ANDROID_SINK = (priority, tag, message, error) -> {
+        if (error == null) {
+            Log.println(priority, tag, message);
+            return;
+        }
+        switch (priority) {
+            case Log.VERBOSE:
+                Log.v(tag, message, error);
+                break;
+            case Log.DEBUG:
+                Log.d(tag, message, error);
+                break;
+            case Log.INFO:
+                Log.i(tag, message, error);
+                break;
+            case Log.WARN:
+                Log.w(tag, message, error);
+                break;
+            default:
+                Log.e(tag, message, error);
+                break;
+        }
+    };
+    
+    /** Sink writing "D/tag: message" lines to System.err, for use off-device */
+    public static final Sink STDERR_SINK = (priority, tag, message, error) -> {
+        char letter = priority >= VERBOSE && priority <= ERROR ? "VDIWE".charAt(priority - VERBOSE) : '?';
+        System.err.println(letter + "/" + tag + ": " + message);
+        if (error != null) {
+            error.printStackTrace();
+        }
+    };
+    
+    
+    // ==================== STATE ====================
+    
+    /** Whether android.util.Log works in this process */
+    private static final boolean ON_ANDROID = isAndroidLogAvailable();
+    
+    /** Sink used until setSink() and after setSink(null) */
+    private static final Sink DEFAULT_SINK = ON_ANDROID ? ANDROID_SINK : STDERR_SINK;
+    
+    private static volatile int level = initialLevel();
+    private static volatile Sink sink = DEFAULT_SINK;
+    private static volatile int sampleRate = 1;
+    private static final int[] sampleCounters = new int[256]; // Per opcode; races only skew sampling
+    
+    private RadioLog() {
+    }
+    
+    private static boolean isAndroidLogAvailable() {
+        try {
+            Log.isLoggable(LEVEL_TAG, Log.DEBUG);
+            return true;
+        } catch (RuntimeException | NoClassDefFoundError e) {
+            // Not running on Android (android.jar stubs or no Android classes on a plain JVM)
+            return false;
+        }
+    }
+    
+    private static int initialLevel() {
+        return ON_ANDROID && Log.isLoggable(LEVEL_TAG, Log.DEBUG) ? DEBUG : INFO;
+    }
+    
+    
+    // ==================== LEVEL CHECKS ====================
+    
+    /**
+     * Check whether messages of a priority are logged
+     */
+    public static boolean isLoggable(int priority) {
+        return priority >= level;
+    }
+    
+    /**
+     * Check whether debug messages are logged
+     */
+    public static boolean isDebugEnabled() {
+        return DEBUG >= level;
+    }
+    
+    /**
+     * Decide whether to log debug output for a frame, counting frames per
+     * opcode so only every Nth frame of each opcode is logged
+     * 
+     * @param opcode Frame opcode (byte 1)
+     * @return true if debug logging is on and this frame is sampled
+     */
+    public static boolean sampleFrame(int opcode) {
+        if (DEBUG < level) {
+            return false;
+        }
+        int rate = sampleRate;
+        if (rate <= 1) {
+            return true;
+        }
+        int count = sampleCounters[opcode & 0xFF]++;
+        return count % rate == 0;
+    }
+    
+    
+    // ==================== DEBUG ====================
+    
+    public static void d(String tag, String message) {
+        if (DEBUG >= level) {
+            sink.log(DEBUG, tag, message, null);
+        }
+    }
+    
+    public static void d(String tag, String template, Object arg) {
+        if (DEBUG >= level) {
+            sink.log(DEBUG, tag, format(template, arg, null, null, 1), null);
+        }
+    }
+    
+    public static void d(String tag, String template, Object arg1, Object arg2) {
+        if (DEBUG >= level) {
+            sink.log(DEBUG, tag, format(template, arg1, arg2, null, 2), null);
+        }
+    }
+    
+    public static void d(String tag, String template, Object arg1, Object arg2, Object arg3) {
+        if (DEBUG >= level) {
+            sink.log(DEBUG, tag, format(template, arg1, arg2, arg3, 3), null);
+        }
+    }
+    
+    public static void d(String tag, Supplier<String> message) {
+        if (DEBUG >= level) {
+            sink.log(DEBUG, tag, message.get(), null);
+        }
+    }
+    
+    /**
+     * Log bytes as hex at debug level; nothing is rendered when debug
+     * logging is off
+     * 
+     * @param tag Log tag
+     * @param prefix Text before the hex dump
+     * @param data Buffer holding the bytes
+     * @param offset First byte
+     * @param length Number of bytes
+     */
+    public static void dHex(String tag, String prefix, byte[] data, int offset, int length) {
+        if (DEBUG >= level) {
+            StringBuilder sb = new StringBuilder(prefix.length() + length * 2);
+            sb.append(prefix);
+            RadioHexCodec.append(sb, data, offset, length, true);
+            sink.log(DEBUG, tag, sb.toString(), null);
+        }
+    }
+    
+    /**
+     * Log bytes as hex at debug level
+     */
+    public static void dHex(String tag, String prefix, byte[] data) {
+        if (DEBUG >= level) {
+            dHex(tag, prefix, data, 0, data.length);
+        }
+    }
+    
+    
+    // ==================== INFO / WARN / ERROR ====================
+    
+    public static void i(String tag, String message) {
+        if (INFO >= level) {
+            sink.log(INFO, tag, message, null);
+        }
+    }
+    
+    public static void i(String tag, String template, Object arg) {
+        if (INFO >= level) {
+            sink.log(INFO, tag, format(template, arg, null, null, 1), null);
+        }
+    }
+    
+    public static void w(String tag, String message) {
+        if (WARN >= level) {
+            sink.log(WARN, tag, message, null);
+        }
+    }
+    
+    public static void w(String tag, String template, Object arg) {
+        if (WARN >= level) {
+            sink.log(WARN, tag, format(template, arg, null, null, 1), null);
+        }
+    }
+    
+    public static void e(String tag, String message) {
+        if (ERROR >= level) {
+            sink.log(ERROR, tag, message, null);
+        }
+    }
+    
+    public static void e(String tag, String template, Object arg) {
+        if (ERROR >= level) {
+            sink.log(ERROR, tag, format(template, arg, null, null, 1), null);
+        }
+    }
+    
+    public static void e(String tag, String message, Throwable error) {
+        if (ERROR >= level) {
+            sink.log(ERROR, tag, message, error);
+        }
+    }
+    
+    
+    // ==================== FORMATTING ====================
+    
+    /**
+     * Replace the first "{}" placeholders in order with the arguments
+     */
+    private static String format(String template, Object arg1, Object arg2, Object arg3, int argCount) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        int start = 0;
+        for (int i = 0; i < argCount; i++) {
+            int index = template.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            sb.append(template, start, index);
+            sb.append(i == 0 ? arg1 : i == 1 ? arg2 : arg3);
+            start = index + 2;
+        }
+        sb.append(template, start, template.length());
+        return sb.toString();
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public static int getLevel() {
+        return level;
+    }
+    
+    /**
+     * Set the lowest priority that is logged (VERBOSE to ERROR)
+     */
+    public static void setLevel(int level) {
+        RadioLog.level = level;
+    }
+    
+    public static Sink getSink() {
+        return sink;
+    }
+    
+    /**
+     * Redirect messages; null restores the default (ANDROID_SINK, or
+     * STDERR_SINK off-device)
+     */
+    public static void setSink(Sink sink) {
+        RadioLog.sink = sink != null ? sink : DEFAULT_SINK;
+    }
+    
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+    
+    /**
+     * Log debug output for 1 in N frames of each opcode (1 logs every frame)
+     */
+    public static void setSampleRate(int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be >= 1: " + sampleRate);
+        }
+        RadioLog.sampleRate = sampleRate;
+    }
+}
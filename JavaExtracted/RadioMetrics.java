@@ -0,0 +1,299 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Radio Metrics
+ * 
+ * Counters and latency histograms for the receive and send paths. One
+ * instance can be shared by the handlers and managers of several radios:
+ * counters are LongAdders and histograms are striped, so recording never
+ * takes a lock and threads do not contend.
+ * 
+ * Receive path (RadioProtocolHandler.setMetrics()):
+ * - frames per opcode, unknown command types, parse errors
+ * - checksum failures from the frame assembler
+ * - listener exceptions
+ * - parse latency (whole parseReceivedData call) and listener dispatch
+ *   latency (each fan-out through the listener registry)
+ * 
+ * Send path and connection (RadioBluetoothManager.setMetrics()):
+ * - commands sent per RadioProtocolCommands.CMD_* constant; constants
+ *   with identical bytes share one counter named "CMD_A/CMD_B"
+ * - commands rejected by sendCommand() and GATT write failures
+ * - transitions into each ConnectionState, reconnects and restarts
+ * 
+ * Nothing here depends on Android; the JMX binding is in tools/.
+ */
+public class RadioMetrics {
+    
+    /** Name of the counter for commands that match no CMD_* constant */
+    public static final String OTHER_COMMAND = "other";
+    
+    // Commands are identified by their bytes: up to 7 bytes packed with the length
+    private static final int MAX_KEYED_COMMAND = 7;
+    private static final long[] COMMAND_KEYS;
+    private static final String[] COMMAND_NAMES;
+    
+    static {
+        Map<Long, String> names = new LinkedHashMap<>();
+        for (Field field : RadioProtocolCommands.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != byte[].class
+                    || !field.getName().startsWith("CMD_")) {
+                continue;
+            }
+            try {
+                byte[] command = (byte[]) field.get(null);
+                if (command.length <= MAX_KEYED_COMMAND) {
+                    names.merge(commandKey(command), field.getName(), (a, b) -> a + "/" + b);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        long[] keys = new long[names.size()];
+        int i = 0;
+        for (long key : names.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        COMMAND_KEYS = keys;
+        COMMAND_NAMES = new String[keys.length];
+        for (i = 0; i < keys.length; i++) {
+            COMMAND_NAMES[i] = names.get(keys[i]);
+        }
+    }
+    
+    
+    // ==================== COUNTERS ====================
+    
+    private final LongAdder[] framesByOpcode = new LongAdder[256];
+    private final LongAdder unknownFrames = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder checksumFailures = new LongAdder();
+    private final LongAdder listenerErrors = new LongAdder();
+    
+    private final LongAdder[] commandsSent = new LongAdder[COMMAND_NAMES.length + 1]; // Last: OTHER_COMMAND
+    private final LongAdder commandsRejected = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    
+    private final LongAdder[] stateTransitions = new LongAdder[RadioBluetoothManager.ConnectionState.values().length];
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    
+    private final RadioLatencyHistogram parseLatency = new RadioLatencyHistogram();
+    private final RadioLatencyHistogram dispatchLatency = new RadioLatencyHistogram();
+    
+    public RadioMetrics() {
+        for (int i = 0; i < framesByOpcode.length; i++) {
+            framesByOpcode[i] = new LongAdder();
+        }
+        for (int i = 0; i < commandsSent.length; i++) {
+            commandsSent[i] = new LongAdder();
+        }
+        for (int i = 0; i < stateTransitions.length; i++) {
+            stateTransitions[i] = new LongAdder();
+        }
+    }
+    
+    
+    // ==================== RECEIVE PATH ====================
+    
+    /** A packet reached the parser; opcode is byte 1 */
+    public void onFrame(int opcode) {
+        framesByOpcode[opcode & 0xFF].increment();
+    }
+    
+    /** A packet had no parser for its command type */
+    public void onUnknownFrame() {
+        unknownFrames.increment();
+    }
+    
+    /** A packet was too short or its parser failed */
+    public void onParseError() {
+        parseErrors.increment();
+    }
+    
+    /** The frame assembler rejected a candidate frame */
+    public void onChecksumFailure() {
+        checksumFailures.increment();
+    }
+    
+    /** A listener threw from a callback */
+    public void onListenerError() {
+        listenerErrors.increment();
+    }
+    
+    public void recordParse(long nanos) {
+        parseLatency.record(nanos);
+    }
+    
+    public void recordDispatch(long nanos) {
+        dispatchLatency.record(nanos);
+    }
+    
+    
+    // ==================== SEND PATH ====================
+    
+    /**
+     * A command write was initiated
+     * 
+     * @param command Command bytes, matched against the CMD_* constants
+     */
+    public void onCommandSent(byte[] command) {
+        commandsSent[commandIndex(command)].increment();
+    }
+    
+    /** sendCommand() refused or failed to start a write */
+    public void onCommandRejected() {
+        commandsRejected.increment();
+    }
+    
+    /** onCharacteristicWrite reported a status other than GATT_SUCCESS */
+    public void onWriteFailure() {
+        writeFailures.increment();
+    }
+    
+    
+    // ==================== CONNECTION ====================
+    
+    /** The manager moved to a connection state */
+    public void onConnectionState(RadioBluetoothManager.ConnectionState state) {
+        stateTransitions[state.ordinal()].increment();
+    }
+    
+    /** The GATT connection was dropped and re-established with the same client */
+    public void onReconnect() {
+        reconnects.increment();
+    }
+    
+    /** The GATT client was closed and a new connection made */
+    public void onRestart() {
+        restarts.increment();
+    }
+    
+    private static int commandIndex(byte[] command) {
+        if (command.length > MAX_KEYED_COMMAND) {
+            return COMMAND_NAMES.length;
+        }
+        int index = Arrays.binarySearch(COMMAND_KEYS, commandKey(command));
+        return index >= 0 ? index : COMMAND_NAMES.length;
+    }
+    
+    private static long commandKey(byte[] command) {
+        long key = command.length;
+        for (byte b : command) {
+            key = (key << 8) | (b & 0xFF);
+        }
+        return key;
+    }
+    
+    
+    // ==================== READING ====================
+    
+    public long getFrames(int opcode) {
+        return framesByOpcode[opcode & 0xFF].sum();
+    }
+    
+    public long getFramesTotal() {
+        long total = 0;
+        for (LongAdder adder : framesByOpcode) {
+            total += adder.sum();
+        }
+        return total;
+    }
+    
+    /**
+     * Opcodes that have been seen at least once, in ascending order
+     */
+    public int[] getSeenOpcodes() {
+        List<Integer> seen = new ArrayList<>();
+        for (int opcode = 0; opcode < framesByOpcode.length; opcode++) {
+            if (framesByOpcode[opcode].sum() > 0) {
+                seen.add(opcode);
+            }
+        }
+        int[] opcodes = new int[seen.size()];
+        for (int i = 0; i < opcodes.length; i++) {
+            opcodes[i] = seen.get(i);
+        }
+        return opcodes;
+    }
+    
+    public long getUnknownFrames() {
+        return unknownFrames.sum();
+    }
+    
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+    
+    public long getChecksumFailures() {
+        return checksumFailures.sum();
+    }
+    
+    public long getListenerErrors() {
+        return listenerErrors.sum();
+    }
+    
+    /**
+     * Names of the command counters: the CMD_* constants, then OTHER_COMMAND
+     */
+    public static String[] getCommandNames() {
+        String[] names = Arrays.copyOf(COMMAND_NAMES, COMMAND_NAMES.length + 1);
+        names[COMMAND_NAMES.length] = OTHER_COMMAND;
+        return names;
+    }
+    
+    /**
+     * Commands sent for a counter of getCommandNames()
+     */
+    public long getCommandsSent(int index) {
+        return commandsSent[index].sum();
+    }
+    
+    public long getCommandsSentTotal() {
+        long total = 0;
+        for (LongAdder adder : commandsSent) {
+            total += adder.sum();
+        }
+        return total;
+    }
+    
+    public long getCommandsRejected() {
+        return commandsRejected.sum();
+    }
+    
+    public long getWriteFailures() {
+        return writeFailures.sum();
+    }
+    
+    /** Transitions into a connection state */
+    public long getStateTransitions(RadioBluetoothManager.ConnectionState state) {
+        return stateTransitions[state.ordinal()].sum();
+    }
+    
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+    
+    public long getRestarts() {
+        return restarts.sum();
+    }
+    
+    public RadioLatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+    
+    public RadioLatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+}
@@ -0,0 +1,328 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Radio Notification Ring
+ * 
+ * Single-producer/single-consumer ring of preallocated, fixed-size slots
+ * between the GATT callback thread and a dedicated parsing thread. The
+ * callback only copies the notification bytes and a System.nanoTime()
+ * timestamp into the next free slot and returns to the Bluetooth stack;
+ * framing and parsing run on the consumer thread.
+ * 
+ * Usage:
+ *   RadioNotificationRing ring = new RadioNotificationRing(1024, 64,
+ *           RadioNotificationRing.WaitStrategy.PARK,
+ *           (data, offset, length, timestampNanos) ->
+ *                   handler.onNotificationReceived(data, offset, length));
+ *   ring.start();
+ *   bluetoothManager.setNotificationRing(ring);
+ * 
+ * A notification longer than one slot is split over consecutive slots, so
+ * the consumer must accept partial frames (RadioProtocolHandler does). When
+ * the ring has no room for a whole notification it is dropped and counted.
+ * 
+ * Only one thread may call publish(). Slot memory is reused: the consumer
+ * must not keep the array it is handed after returning.
+ */
+public class RadioNotificationRing {
+    
+    private static final String TAG = "RadioNotificationRing";
+    
+    /** Default number of slots */
+    public static final int DEFAULT_SLOT_COUNT = 1024;
+    
+    /** Default slot size (bytes); covers the default ATT MTU payload */
+    public static final int DEFAULT_SLOT_SIZE = 64;
+    
+    // Idle rounds before YIELD/PARK back off further
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_TIMEOUT_NANOS = 1_000_000;
+    
+    
+    // ==================== WAIT STRATEGY ====================
+    
+    /**
+     * How the consumer thread waits for notifications
+     */
+    public enum WaitStrategy {
+        /** Spin without pausing: lowest latency, keeps one core busy */
+        BUSY_SPIN,
+        /** Spin briefly, then yield the CPU between checks */
+        YIELD,
+        /** Spin and yield briefly, then park until the producer wakes it */
+        PARK
+    }
+    
+    
+    // ==================== CONSUMER INTERFACE ====================
+    
+    /**
+     * Receives the notifications in publication order on the consumer thread
+     */
+    public interface Consumer {
+        /**
+         * @param data Slot memory (only valid during the call)
+         * @param offset Offset of the notification bytes
+         * @param length Number of bytes
+         * @param timestampNanos System.nanoTime() when the callback published them
+         */
+        void onNotification(byte[] data, int offset, int length, long timestampNanos);
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final int slotSize;
+    private final int mask;
+    private final byte[] buffer;          // slotCount * slotSize bytes
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final WaitStrategy waitStrategy;
+    private final Consumer consumer;
+    
+    private final AtomicLong tail = new AtomicLong(); // Next sequence the producer writes
+    private final AtomicLong head = new AtomicLong(); // Next sequence the consumer reads
+    
+    // Producer-side state
+    private long cachedHead;              // Last head seen by the producer
+    private volatile long published;
+    private volatile long dropped;
+    private volatile int peakBacklog;
+    
+    private volatile boolean running;
+    private volatile boolean consumerParked;
+    private volatile Thread consumerThread;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a ring
+     * 
+     * @param slotCount Number of slots (power of two)
+     * @param slotSize Bytes per slot
+     * @param waitStrategy How the consumer waits when the ring is empty
+     * @param consumer Receives the notifications
+     */
+    public RadioNotificationRing(int slotCount, int slotSize, WaitStrategy waitStrategy, Consumer consumer) {
+        if (slotCount < 1 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("slotCount must be a power of two: " + slotCount);
+        }
+        if (slotSize < 1) {
+            throw new IllegalArgumentException("slotSize must be >= 1: " + slotSize);
+        }
+        if (waitStrategy == null || consumer == null) {
+            throw new IllegalArgumentException("Wait strategy and consumer must not be null");
+        }
+        this.slotSize = slotSize;
+        this.mask = slotCount - 1;
+        this.buffer = new byte[slotCount * slotSize];
+        this.lengths = new int[slotCount];
+        this.timestamps = new long[slotCount];
+        this.waitStrategy = waitStrategy;
+        this.consumer = consumer;
+    }
+    
+    
+    // ==================== PRODUCER ====================
+    
+    /**
+     * Copy a notification into the ring (producer thread only)
+     * 
+     * @param data Notification bytes
+     * @return false if the ring had no room and the notification was dropped
+     */
+    public boolean publish(byte[] data) {
+        return publish(data, 0, data.length);
+    }
+    
+    /**
+     * Copy part of a notification into the ring (producer thread only)
+     * 
+     * @param data Source array
+     * @param offset First byte
+     * @param length Number of bytes
+     * @return false if the ring had no room and the notification was dropped
+     */
+    public boolean publish(byte[] data, int offset, int length) {
+        long timestamp = System.nanoTime();
+        int slotsNeeded = length == 0 ? 1 : (length + slotSize - 1) / slotSize;
+        long sequence = tail.get();
+        long wrapPoint = sequence + slotsNeeded - lengths.length;
+        
+        if (wrapPoint > cachedHead) {
+            cachedHead = head.get();
+            if (wrapPoint > cachedHead) {
+                dropped++;
+                return false;
+            }
+        }
+        
+        int remaining = length;
+        int position = offset;
+        for (int i = 0; i < slotsNeeded; i++) {
+            int slot = (int) (sequence + i) & mask;
+            int chunk = Math.min(remaining, slotSize);
+            System.arraycopy(data, position, buffer, slot * slotSize, chunk);
+            lengths[slot] = chunk;
+            timestamps[slot] = timestamp;
+            position += chunk;
+            remaining -= chunk;
+        }
+        
+        // Full volatile store, so the consumerParked check below cannot miss a parked consumer
+        tail.set(sequence + slotsNeeded);
+        published++;
+        int backlog = (int) (sequence + slotsNeeded - cachedHead);
+        if (backlog > peakBacklog) {
+            peakBacklog = backlog;
+        }
+        if (consumerParked) {
+            LockSupport.unpark(consumerThread);
+        }
+        return true;
+    }
+    
+    
+    // ==================== CONSUMER ====================
+    
+    /**
+     * Start the consumer thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        consumerThread = new Thread(this::consume, TAG);
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+    
+    /**
+     * Stop the consumer thread after it has handled what is already in the
+     * ring
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = consumerThread;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        consumerThread = null;
+    }
+    
+    private void consume() {
+        long next = head.get();
+        int idleRounds = 0;
+        
+        while (true) {
+            long available = tail.get();
+            if (next == available) {
+                if (!running) {
+                    return;
+                }
+                idleRounds = idle(idleRounds);
+                continue;
+            }
+            idleRounds = 0;
+            
+            while (next < available) {
+                int slot = (int) next & mask;
+                try {
+                    consumer.onNotification(buffer, slot * slotSize, lengths[slot], timestamps[slot]);
+                } catch (RuntimeException e) {
+                    RadioLog.e(TAG, "Consumer failed", e);
+                }
+                next++;
+                head.lazySet(next);
+            }
+        }
+    }
+    
+    /**
+     * Wait once according to the strategy
+     * 
+     * @param idleRounds Consecutive empty checks so far
+     * @return Updated count
+     */
+    private int idle(int idleRounds) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                return idleRounds;
+            case YIELD:
+                if (idleRounds >= SPIN_TRIES) {
+                    Thread.yield();
+                    return idleRounds;
+                }
+                return idleRounds + 1;
+            case PARK:
+            default:
+                if (idleRounds < SPIN_TRIES) {
+                    return idleRounds + 1;
+                }
+                if (idleRounds < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                    return idleRounds + 1;
+                }
+                consumerParked = true;
+                if (tail.get() == head.get() && running) {
+                    LockSupport.parkNanos(this, PARK_TIMEOUT_NANOS);
+                }
+                consumerParked = false;
+                return idleRounds;
+        }
+    }
+    
+    
+    // ==================== STATISTICS ====================
+    
+    /** Notifications accepted so far */
+    public long getPublished() {
+        return published;
+    }
+    
+    /** Notifications dropped because the ring was full */
+    public long getDropped() {
+        return dropped;
+    }
+    
+    /** Slots written but not yet handled by the consumer */
+    public int getBacklog() {
+        return (int) (tail.get() - head.get());
+    }
+    
+    /** Highest backlog the producer has seen (an upper bound, as it reads the consumer position lazily) */
+    public int getPeakBacklog() {
+        return peakBacklog;
+    }
+    
+    
+    // ==================== GETTERS ====================
+    
+    public int getSlotCount() {
+        return lengths.length;
+    }
+    
+    public int getSlotSize() {
+        return slotSize;
+    }
+    
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,130 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+/**
+ * Radio Opcode Dispatcher
+ * 
+ * Routes inbound packets to their parsers using lookup tables indexed by
+ * the packet bytes, so routing costs two array reads and no string work.
+ * 
+ * Packet identification:
+ * - Byte 1 (opcode): length indicator, which also identifies the packet family
+ *   (e.g. 0x11 device info, 0x08 lock status)
+ * - Byte 2 (sub-opcode): command type within the family
+ *   (e.g. 0x03/0x03 volume, 0x03/0x1F signal strength)
+ * 
+ * A handler registered for an opcode/sub-opcode pair takes precedence over a
+ * handler registered for the whole opcode.
+ */
+public class RadioOpcodeDispatcher {
+    
+    /** Number of entries in each table level (one per byte value) */
+    private static final int TABLE_SIZE = 256;
+    
+    /** Minimum packet length needed to read the opcode and sub-opcode */
+    public static final int MIN_DISPATCH_LENGTH = 3;
+    
+    
+    // ==================== HANDLER INTERFACE ====================
+    
+    /**
+     * Handler for a single inbound packet
+     * 
+     * The frame view is reused for the next packet and is only valid
+     * during the call.
+     */
+    public interface FrameHandler {
+        void onFrame(RadioFrame frame);
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    /** Handlers for a whole opcode, indexed by byte 1 */
+    private final FrameHandler[] opcodeHandlers = new FrameHandler[TABLE_SIZE];
+    
+    /** Handlers for opcode/sub-opcode pairs, indexed by byte 1 then byte 2 (rows allocated on demand) */
+    private final FrameHandler[][] subOpcodeHandlers = new FrameHandler[TABLE_SIZE][];
+    
+    
+    // ==================== REGISTRATION ====================
+    
+    /**
+     * Register a handler for every packet with the given opcode
+     * 
+     * @param opcode Byte 1 value (0-255)
+     * @param handler Handler to invoke, or null to remove the registration
+     */
+    public void register(int opcode, FrameHandler handler) {
+        opcodeHandlers[checkIndex(opcode)] = handler;
+    }
+    
+    /**
+     * Register a handler for packets with the given opcode and sub-opcode
+     * 
+     * @param opcode Byte 1 value (0-255)
+     * @param subOpcode Byte 2 value (0-255)
+     * @param handler Handler to invoke, or null to remove the registration
+     */
+    public void register(int opcode, int subOpcode, FrameHandler handler) {
+        FrameHandler[] row = subOpcodeHandlers[checkIndex(opcode)];
+        if (row == null) {
+            if (handler == null) {
+                return;
+            }
+            row = new FrameHandler[TABLE_SIZE];
+            subOpcodeHandlers[opcode] = row;
+        }
+        row[checkIndex(subOpcode)] = handler;
+    }
+    
+    /**
+     * Find the handler that would receive a packet
+     * 
+     * @param opcode Byte 1 value (0-255)
+     * @param subOpcode Byte 2 value (0-255)
+     * @return Registered handler, or null if the packet would not be dispatched
+     */
+    public FrameHandler getHandler(int opcode, int subOpcode) {
+        FrameHandler[] row = subOpcodeHandlers[opcode & 0xFF];
+        if (row != null) {
+            FrameHandler handler = row[subOpcode & 0xFF];
+            if (handler != null) {
+                return handler;
+            }
+        }
+        return opcodeHandlers[opcode & 0xFF];
+    }
+    
+    
+    // ==================== DISPATCH ====================
+    
+    /**
+     * Route a packet to its handler
+     * 
+     * @param frame View of the packet
+     * @return true if a handler was found and invoked
+     */
+    public boolean dispatch(RadioFrame frame) {
+        if (frame.length() < MIN_DISPATCH_LENGTH) {
+            return false;
+        }
+        
+        FrameHandler handler = getHandler(frame.opcode(), frame.subOpcode());
+        if (handler == null) {
+            return false;
+        }
+        
+        handler.onFrame(frame);
+        return true;
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    private static int checkIndex(int value) {
+        if (value < 0 || value >= TABLE_SIZE) {
+            throw new IllegalArgumentException("Opcode out of range: " + value);
+        }
+        return value;
+    }
+}
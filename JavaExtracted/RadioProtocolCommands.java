@@ -518,9 +518,22 @@ public class RadioProtocolCommands {
      * @return Checksum byte
      */
     public static byte calculateChecksum(byte[] data) {
+        return calculateChecksum(data, 0, data.length);
+    }
+    
+    /**
+     * Calculate checksum over a range of bytes
+     * Simple additive checksum of all bytes in the range
+     * 
+     * @param data Buffer holding the bytes
+     * @param offset First byte to include
+     * @param length Number of bytes to include
+     * @return Checksum byte
+     */
+    public static byte calculateChecksum(byte[] data, int offset, int length) {
         int sum = 0;
-        for (byte b : data) {
-            sum += (b & 0xFF);
+        for (int i = offset; i < offset + length; i++) {
+            sum += (data[i] & 0xFF);
         }
         return (byte) (sum & 0xFF);
     }
@@ -553,11 +566,7 @@ public class RadioProtocolCommands {
      * @return Hex string representation
      */
     public static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b & 0xFF));
-        }
-        return sb.toString();
+        return RadioHexCodec.toHex(bytes, true);
     }
     
     /**
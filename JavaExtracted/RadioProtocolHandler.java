@@ -1,6 +1,7 @@
 package com.myhomesmartlife.bluetooth.CleanedUp;
 
-import android.util.Log;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Radio Protocol Data Handler
@@ -8,11 +9,35 @@ import android.util.Log;
  * Handles parsing of incoming data packets from the radio device.
  * The radio sends various status updates and responses via Bluetooth.
  * 
+ * Packets are decoded directly from the received bytes through a reusable
+ * RadioFrame view, so steady-state parsing allocates nothing unless a
+ * listener needs text. Each packet is routed through a RadioOpcodeDispatcher
+ * keyed on byte 1 (opcode) and byte 2 (sub-opcode).
+ * 
+ * Raw BLE notifications should be passed to onNotificationReceived(), which
+ * reassembles split and coalesced frames before parsing them.
+ * 
+ * Listener callbacks are only made when a value changes; the radio repeats
+ * the same frames constantly. See getChangeFilter() to forward every update.
+ * A SnapshotListener receives each burst of changes as one RadioSnapshot.
+ * 
+ * Any number of listeners can subscribe to chosen fields through
+ * addStatusListener()/addDataListener(). Packets that only feed fields no
+ * subscriber wants are not decoded. A listener added while the radio is
+ * running first receives the current values of its fields, on the parsing
+ * thread before the next frame.
+ * 
+ * Parsing and listener callbacks run on the thread that delivers the data,
+ * except for listeners added with addAsyncStatusListener(), which are
+ * called on their own thread through a bounded queue.
+ * Other threads should read the state through getStateStore(), which never
+ * blocks the parsing thread.
+ * 
  * Packet Format:
- * - Bytes 0-1: Start header (0xAB)
- * - Bytes 2-3: Length indicator
- * - Bytes 4-5: Command type identifier
- * - Remaining bytes: Data payload
+ * - Byte 0: Start header (0xAB)
+ * - Byte 1: Length indicator
+ * - Byte 2: Command type identifier
+ * - Remaining bytes: Data payload, last byte is the checksum
  * 
  * Common Command Types (in hex string format):
  * - "ab0417": Frequency and status update (main data packet)
@@ -21,6 +46,15 @@ import android.util.Log;
  * - "ab0303": Volume level
  * - "ab031f": Signal strength
  * - "ab090f": Frequency input mode
+ * - "ab1119"/"ab1019": Device info text stream
+ * - "ab0e21", "ab0821", "ab0b1c": Sub-band, lock and recording text
+ * - "ab0207": Battery level
+ * - "ab02", "ab05", "ab06", "ab0d" (any sub-opcode): Status, frequency
+ *   data and channel text, bandwidth text
+ * 
+ * Other "ab xx 1c" packets (e.g. ab071c "NFM", ab081c "RSSI", ab101c
+ * "Demodulation") are display labels that share a family with real state
+ * packets; they have no parser and go to the unknown-command path.
  */
 public class RadioProtocolHandler {
     
@@ -31,20 +65,23 @@ public class RadioProtocolHandler {
     /** Protocol start byte in hex string format */
     public static final String PROTOCOL_START_HEX = "ab";
     
-    /** Minimum packet length for valid commands */
-    public static final int MIN_PACKET_LENGTH = 6;
+    /** Minimum packet length for valid commands (start, length, one payload byte, checksum) */
+    public static final int MIN_PACKET_LENGTH = 4;
+    
+    /** Command identifier length (start, length and type bytes) */
+    public static final int COMMAND_ID_LENGTH = 3;
     
-    /** Command identifier length (first 6 hex characters) */
-    public static final int COMMAND_ID_LENGTH = 6;
+    /** Minimum length for frequency status packets (bytes) */
+    public static final int MIN_FREQ_STATUS_LENGTH = 6;
     
-    /** Minimum length for frequency status packets */
-    public static final int MIN_FREQ_STATUS_LENGTH = 12;
+    /** Minimum length for band info packets (bytes) */
+    public static final int MIN_BAND_INFO_LENGTH = 16;
     
-    /** Minimum length for band info packets */
-    public static final int MIN_BAND_INFO_LENGTH = 32;
+    /** Minimum length for standard status packets (bytes) */
+    public static final int MIN_STATUS_LENGTH = 8;
     
-    /** Minimum length for standard status packets */
-    public static final int MIN_STATUS_LENGTH = 16;
+    /** Position of the text length byte in labelled ASCII packets ([TYPE] [INDEX] [MARKER] [TEXT_LENGTH]) */
+    public static final int TEXT_LENGTH_INDEX = 5;
     
     
     // ==================== COMMAND TYPE IDENTIFIERS ====================
@@ -101,38 +138,221 @@ public class RadioProtocolHandler {
     public static final String CMD_TYPE_BANDWIDTH = "ab0d";
     
     
+    // ==================== COMMAND TYPE KEYS ====================
+    
+    /*
+     * Byte-level equivalents of the 6 character identifiers above,
+     * packed as (byte 1 << 8) | byte 2.
+     */
+    
+    /** Key for CMD_TYPE_FREQUENCY_STATUS */
+    public static final int CMD_KEY_FREQUENCY_STATUS = 0x0417;
+    
+    /** Key for CMD_TYPE_TIME */
+    public static final int CMD_KEY_TIME = 0x031E;
+    
+    /** Key for CMD_TYPE_BAND_INFO */
+    public static final int CMD_KEY_BAND_INFO = 0x0901;
+    
+    /** Key for CMD_TYPE_VOLUME */
+    public static final int CMD_KEY_VOLUME = 0x0303;
+    
+    /** Key for CMD_TYPE_SIGNAL */
+    public static final int CMD_KEY_SIGNAL = 0x031F;
+    
+    /** Key for CMD_TYPE_FREQ_INPUT */
+    public static final int CMD_KEY_FREQ_INPUT = 0x090F;
+    
+    /** Key for the device info text stream (CMD_TYPE_DEVICE_INFO) */
+    public static final int CMD_KEY_DEVICE_INFO = 0x1119;
+    
+    /** Key for the last part of the device info text stream (CMD_TYPE_DEVICE_INFO_CONT) */
+    public static final int CMD_KEY_DEVICE_INFO_CONT = 0x1019;
+    
+    /** Key for the sub-band name (CMD_TYPE_SUBBAND_INFO) */
+    public static final int CMD_KEY_SUBBAND_INFO = 0x0E21;
+    
+    /** Key for the lock status text (CMD_TYPE_LOCK_STATUS) */
+    public static final int CMD_KEY_LOCK_STATUS = 0x0821;
+    
+    /** Key for the recording status text (CMD_TYPE_RECORDING_STATUS) */
+    public static final int CMD_KEY_RECORDING_STATUS = 0x0B1C;
+    
+    /** Key for the battery level (status short with status 0x07) */
+    public static final int CMD_KEY_BATTERY = 0x0207;
+    
+    
+    // ==================== COMMAND OPCODES ====================
+    
+    /*
+     * Byte 1 values for the 4 character identifiers above. Only the
+     * families whose byte 2 is data rather than a command type (status
+     * short, paired frequency data, bandwidth text) are parsed for every
+     * sub-opcode; the others are parsed by exact key (CMD_KEY_*).
+     */
+    
+    /** Opcode for CMD_TYPE_DEVICE_INFO */
+    public static final int CMD_OPCODE_DEVICE_INFO = 0x11;
+    
+    /** Opcode for CMD_TYPE_DEVICE_INFO_CONT */
+    public static final int CMD_OPCODE_DEVICE_INFO_CONT = 0x10;
+    
+    /** Opcode for CMD_TYPE_SUBBAND_INFO */
+    public static final int CMD_OPCODE_SUBBAND_INFO = 0x0E;
+    
+    /** Opcode for CMD_TYPE_LOCK_STATUS */
+    public static final int CMD_OPCODE_LOCK_STATUS = 0x08;
+    
+    /** Opcode for CMD_TYPE_RECORDING_STATUS */
+    public static final int CMD_OPCODE_RECORDING_STATUS = 0x0B;
+    
+    /** Opcode for CMD_TYPE_STATUS_SHORT */
+    public static final int CMD_OPCODE_STATUS_SHORT = 0x02;
+    
+    /** Opcode for CMD_TYPE_FREQ_DATA_1 */
+    public static final int CMD_OPCODE_FREQ_DATA_1 = 0x05;
+    
+    /** Opcode for CMD_TYPE_FREQ_DATA_2 */
+    public static final int CMD_OPCODE_FREQ_DATA_2 = 0x06;
+    
+    /** Opcode for CMD_TYPE_BATTERY */
+    public static final int CMD_OPCODE_BATTERY = 0x07;
+    
+    /** Opcode for CMD_TYPE_DETAILED_FREQ */
+    public static final int CMD_OPCODE_DETAILED_FREQ = 0x09;
+    
+    /** Opcode for CMD_TYPE_BANDWIDTH */
+    public static final int CMD_OPCODE_BANDWIDTH = 0x0D;
+    
+    
     // ==================== DATA STRUCTURES ====================
     
     /**
      * Parsed radio status data
+     * 
+     * Holds primitive values only; text forms are built on demand by the
+     * format methods. The handler updates a single instance in place as
+     * packets arrive, so listeners that keep it beyond a callback should
+     * take a copy().
      */
     public static class RadioStatus {
-        public String frequency;        // Current frequency in Hz (as string)
-        public String band;             // Band identifier (e.g., "06" for VHF)
-        public String subBand;          // Sub-band information
-        public String demodulation;     // Demodulation mode
-        public String bandwidth;        // Bandwidth setting
-        public int squelchLevel;        // Squelch level (0-15)
-        public int volumeLevel;         // Volume level (0-15)
-        public boolean isStereo;        // Stereo mode enabled
-        public boolean isPowerOn;       // Power state
-        public String rawData;          // Raw hex data for debugging
+        /** Value of demodulation and bandwidth until the radio reports them */
+        public static final int UNKNOWN = -1;
+        
+        /** Flag bits for the flags field */
+        public static final int FLAG_STEREO = 1;
+        public static final int FLAG_POWER_ON = 1 << 1;
+        public static final int FLAG_LOCKED = 1 << 2;
+        public static final int FLAG_RECORDING = 1 << 3;
+        
+        public long frequencyHz;              // Current frequency in Hz
+        public byte band;                     // Band code (e.g., 0x06 for VHF)
+        public int subBand;                   // Sub-band index
+        public int demodulation = UNKNOWN;    // Demodulation mode code
+        public int bandwidth = UNKNOWN;       // Bandwidth setting code
+        public int squelchLevel;              // Squelch level (0-15)
+        public int volumeLevel;               // Volume level (0-15)
+        public int signalStrength;            // Last reported signal strength
+        public int batteryPercent;            // Battery estimate (0-100)
+        public int flags;                     // FLAG_* bits
+        public int statusBytes;               // Bytes 3-5 of the last ab0417 packet, packed big endian
+        
+        public boolean isStereo() {
+            return (flags & FLAG_STEREO) != 0;
+        }
+        
+        public boolean isPowerOn() {
+            return (flags & FLAG_POWER_ON) != 0;
+        }
+        
+        public boolean isLocked() {
+            return (flags & FLAG_LOCKED) != 0;
+        }
+        
+        public boolean isRecording() {
+            return (flags & FLAG_RECORDING) != 0;
+        }
+        
+        /**
+         * Set or clear one of the FLAG_* bits
+         */
+        public void setFlag(int flag, boolean value) {
+            flags = value ? (flags | flag) : (flags & ~flag);
+        }
+        
+        /** Frequency in Hz as a decimal string */
+        public String formatFrequency() {
+            return Long.toString(frequencyHz);
+        }
+        
+        /** Band code as a two-digit lowercase hex string (e.g., "06") */
+        public String formatBand() {
+            return RadioHexCodec.byteToHex(band);
+        }
+        
+        /**
+         * Copy every value from another status
+         */
+        public void copyFrom(RadioStatus other) {
+            frequencyHz = other.frequencyHz;
+            band = other.band;
+            subBand = other.subBand;
+            demodulation = other.demodulation;
+            bandwidth = other.bandwidth;
+            squelchLevel = other.squelchLevel;
+            volumeLevel = other.volumeLevel;
+            signalStrength = other.signalStrength;
+            batteryPercent = other.batteryPercent;
+            flags = other.flags;
+            statusBytes = other.statusBytes;
+        }
+        
+        /**
+         * Create an independent copy of this status
+         */
+        public RadioStatus copy() {
+            RadioStatus copy = new RadioStatus();
+            copy.copyFrom(this);
+            return copy;
+        }
         
         @Override
         public String toString() {
             return "RadioStatus{" +
-                    "frequency='" + frequency + '\'' +
-                    ", band='" + band + '\'' +
+                    "frequency='" + formatFrequency() + '\'' +
+                    ", band='" + formatBand() + '\'' +
                     ", squelchLevel=" + squelchLevel +
                     ", volumeLevel=" + volumeLevel +
-                    ", isStereo=" + isStereo +
-                    ", isPowerOn=" + isPowerOn +
+                    ", isStereo=" + isStereo() +
+                    ", isPowerOn=" + isPowerOn() +
                     '}';
         }
     }
     
+    /**
+     * Listener interface for parsed radio data using primitive values
+     * 
+     * Nothing is formatted on the parsing path. The RadioStatus and the
+     * channel text are reused between packets and are only valid during
+     * the callback.
+     */
+    public interface RadioStatusListener {
+        void onFrequencyChanged(long frequencyHz, byte band);
+        void onVolumeChanged(int volume);
+        void onSignalStrengthChanged(int strength);
+        void onStatusUpdate(RadioStatus status);
+        void onDeviceInfo(String deviceInfo);
+        void onLockStatusChanged(boolean isLocked);
+        void onRecordingStatusChanged(boolean isRecording, int recordIndex);
+        void onBatteryLevel(int batteryPercent);
+        void onChannelDisplay(CharSequence channelText);
+    }
+    
     /**
      * Listener interface for parsed radio data
+     * 
+     * String-based form of RadioStatusListener; values are formatted only
+     * when a callback is delivered. See RadioDataListenerAdapter.
      */
     public interface RadioDataListener {
         void onFrequencyChanged(String frequency, String band);
@@ -146,104 +366,364 @@ public class RadioProtocolHandler {
         void onChannelDisplay(String channelText);
     }
     
+    /**
+     * Adapts a RadioDataListener to RadioStatusListener
+     * 
+     * Formats frequency, band and channel text only when the wrapped
+     * listener is called. The display cycles through a handful of texts, so
+     * the Strings of the last few are kept and handed out again instead of
+     * copying the text on every change.
+     */
+    public static class RadioDataListenerAdapter implements RadioStatusListener {
+        private final RadioDataListener target;
+        private final RadioTextCache channelTexts = new RadioTextCache(RadioTextCache.DEFAULT_SIZE);
+        
+        public RadioDataListenerAdapter(RadioDataListener target) {
+            this.target = target;
+        }
+        
+        public RadioDataListener getTarget() {
+            return target;
+        }
+        
+        @Override
+        public void onFrequencyChanged(long frequencyHz, byte band) {
+            target.onFrequencyChanged(Long.toString(frequencyHz), RadioHexCodec.byteToHex(band));
+        }
+        
+        @Override
+        public void onVolumeChanged(int volume) {
+            target.onVolumeChanged(volume);
+        }
+        
+        @Override
+        public void onSignalStrengthChanged(int strength) {
+            target.onSignalStrengthChanged(strength);
+        }
+        
+        @Override
+        public void onStatusUpdate(RadioStatus status) {
+            target.onStatusUpdate(status);
+        }
+        
+        @Override
+        public void onDeviceInfo(String deviceInfo) {
+            target.onDeviceInfo(deviceInfo);
+        }
+        
+        @Override
+        public void onLockStatusChanged(boolean isLocked) {
+            target.onLockStatusChanged(isLocked);
+        }
+        
+        @Override
+        public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+            target.onRecordingStatusChanged(isRecording, recordIndex);
+        }
+        
+        @Override
+        public void onBatteryLevel(int batteryPercent) {
+            target.onBatteryLevel(batteryPercent);
+        }
+        
+        @Override
+        public void onChannelDisplay(CharSequence channelText) {
+            target.onChannelDisplay(channelTexts.toString(channelText));
+        }
+    }
+    
     
     // ==================== MEMBER VARIABLES ====================
     
-    private RadioDataListener dataListener;
+    private final RadioOpcodeDispatcher dispatcher = new RadioOpcodeDispatcher();
+    private final RadioFrame frame = new RadioFrame(); // View re-pointed at each parsed packet
+    private final RadioFrameAssembler frameAssembler = new RadioFrameAssembler(this::parseReceivedData);
+    private final RadioListenerRegistry listenerRegistry = new RadioListenerRegistry(); // Fans updates out to subscribers
+    private final RadioChangeFilter changeFilter = new RadioChangeFilter(listenerRegistry); // Drops repeated values
+    private final RadioStateStore stateStore = new RadioStateStore(null); // Versioned state for other threads
+    private final RadioBurstCoalescer burstCoalescer = new RadioBurstCoalescer(null, stateStore); // Builds snapshots
+    private RadioStatusListener statusListener; // Listener set by setStatusListener/setDataListener
+    private RadioDataListener dataListener; // Set when statusListener adapts a RadioDataListener
+    private long framesSkipped; // Packets not decoded because no subscriber wanted their fields
+    private RadioMetrics metrics; // Shared counters and latencies, null when not measured
+    private RadioTracer tracer; // PARSE and CALLBACK events, null when not traced
+    private String deviceAddress; // Reported with trace events
+    private RadioRoundTripTracker roundTripTracker; // Stopped by response frames, null when not tracked
+    private RadioFrameProfiler frameProfiler; // Unknown and malformed frames, null when not profiled
+    private boolean frameLogged; // Debug output is built for the packet being parsed (see RadioLog.sampleFrame)
+    private final RadioStatus status = new RadioStatus(); // Updated in place by the parsers
     private StringBuilder deviceInfoBuffer = new StringBuilder();
-    private String lastFreqData1 = null; // Buffer for AB05 packets
+    private String lastDeviceInfo; // Last complete device info text
+    private final StringBuilder channelText = new StringBuilder(); // Reused for onChannelDisplay
+    private int lastFreqData1 = -1; // Index/mode of the last AB05 packet, -1 when unpaired
+    private byte[] directBufferScratch = new byte[0]; // Copy target for direct ByteBuffers
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a new RadioProtocolHandler with every known parser registered
+     */
+    public RadioProtocolHandler() {
+        // Update pipeline: parsers -> change filter -> listener registry -> subscribers
+        // The state store records what the listeners ask for without keeping packets decoded itself
+        listenerRegistry.addPassive(stateStore, stateStore, RadioListenerRegistry.MASK_ALL);
+        
+        // Exact identifiers (opcode + sub-opcode), with the fields each parser feeds
+        registerParser(CMD_KEY_FREQUENCY_STATUS, RadioListenerRegistry.MASK_STATUS, this::parseFrequencyStatus);
+        registerParser(CMD_KEY_TIME, 0, this::parseTimeUpdate);
+        registerParser(CMD_KEY_BAND_INFO, RadioListenerRegistry.MASK_FREQUENCY | RadioListenerRegistry.MASK_STATUS,
+                       this::parseBandInfo);
+        registerParser(CMD_KEY_VOLUME, RadioListenerRegistry.MASK_VOLUME, this::parseVolumeLevel);
+        registerParser(CMD_KEY_SIGNAL, RadioListenerRegistry.MASK_SIGNAL_STRENGTH, this::parseSignalStrength);
+        registerParser(CMD_KEY_FREQ_INPUT, 0, this::parseFrequencyInput);
+        
+        registerParser(CMD_KEY_DEVICE_INFO, RadioListenerRegistry.MASK_DEVICE_INFO, this::parseDeviceInfo);
+        registerParser(CMD_KEY_DEVICE_INFO_CONT, RadioListenerRegistry.MASK_DEVICE_INFO, this::parseDeviceInfo);
+        registerParser(CMD_KEY_SUBBAND_INFO, 0, this::parseSubBandInfo);
+        registerParser(CMD_KEY_LOCK_STATUS, RadioListenerRegistry.MASK_LOCK_STATUS, this::parseLockStatus);
+        registerParser(CMD_KEY_RECORDING_STATUS, RadioListenerRegistry.MASK_RECORDING_STATUS, this::parseRecordingStatus);
+        registerParser(CMD_KEY_BATTERY, RadioListenerRegistry.MASK_BATTERY, this::parseBattery);
+        
+        // Packet families whose byte 2 is data (any sub-opcode); the ab xx 1c
+        // display labels of the other families (ab071c, ab081c, ab091c,
+        // ab0e1c, ab101c, ab111c) are deliberately left unregistered
+        registerFamily(CMD_OPCODE_STATUS_SHORT, 0, this::parseStatusShort);
+        registerFamily(CMD_OPCODE_FREQ_DATA_1, RadioListenerRegistry.MASK_CHANNEL_DISPLAY, this::parseFreqData1);
+        registerFamily(CMD_OPCODE_FREQ_DATA_2, RadioListenerRegistry.MASK_CHANNEL_DISPLAY, this::parseFreqData2);
+        registerFamily(CMD_OPCODE_BANDWIDTH, 0, this::parseBandwidth);
+    }
+    
+    /**
+     * Register a parser for a packed (opcode << 8) | sub-opcode key
+     * 
+     * @param commandKey Packed opcode and sub-opcode
+     * @param fieldMask RadioListenerRegistry.MASK_* bits the parser reports (0 for log-only parsers)
+     * @param parser Parser to invoke
+     */
+    private void registerParser(int commandKey, int fieldMask, RadioOpcodeDispatcher.FrameHandler parser) {
+        dispatcher.register(commandKey >>> 8, commandKey & 0xFF, whenWanted(fieldMask, parser));
+    }
+    
+    /**
+     * Register a parser for every packet with the given opcode
+     * 
+     * @param opcode Byte 1 value
+     * @param fieldMask RadioListenerRegistry.MASK_* bits the parser reports (0 for log-only parsers)
+     * @param parser Parser to invoke
+     */
+    private void registerFamily(int opcode, int fieldMask, RadioOpcodeDispatcher.FrameHandler parser) {
+        dispatcher.register(opcode, whenWanted(fieldMask, parser));
+    }
+    
+    /**
+     * Wrap a parser so it only runs when a subscriber wants one of its
+     * fields, or when the packet is logged
+     */
+    private RadioOpcodeDispatcher.FrameHandler whenWanted(int fieldMask, RadioOpcodeDispatcher.FrameHandler parser) {
+        return packet -> {
+            if (listenerRegistry.isWanted(fieldMask) || frameLogged) {
+                parser.onFrame(packet);
+            } else {
+                framesSkipped++;
+            }
+        };
+    }
     
     
     // ==================== PARSING METHODS ====================
     
+    /**
+     * Handle a raw notification from the radio
+     * 
+     * The notification may hold a partial frame or several frames; each
+     * complete, checksum-verified frame is parsed as soon as it is available.
+     * 
+     * @param data Notification bytes as received from the notify characteristic
+     */
+    public void onNotificationReceived(byte[] data) {
+        frameAssembler.append(data);
+    }
+    
+    /**
+     * Handle part of a buffer holding raw notification bytes
+     * 
+     * @param data Buffer holding the received bytes
+     * @param offset First received byte
+     * @param length Number of received bytes
+     */
+    public void onNotificationReceived(byte[] data, int offset, int length) {
+        frameAssembler.append(data, offset, length);
+    }
+    
     /**
      * Parse incoming data from radio
      * 
+     * The data must hold exactly one frame; use onNotificationReceived() for
+     * raw notifications.
+     * 
      * @param data Raw byte data received
      */
     public void parseReceivedData(byte[] data) {
-        if (data == null || data.length < MIN_PACKET_LENGTH) {
-            Log.w(TAG, "Invalid data packet received");
+        if (data == null) {
+            RadioLog.w(TAG, "Invalid data packet received");
+            return;
+        }
+        parseReceivedData(data, 0, data.length);
+    }
+    
+    /**
+     * Parse incoming data from radio held in a ByteBuffer
+     * 
+     * Reads the buffer's remaining bytes without changing its position.
+     * Heap buffers are parsed in place; direct buffers are copied into a
+     * scratch array that is reused between calls.
+     * 
+     * @param buffer Buffer positioned at the start of the packet
+     */
+    public void parseReceivedData(ByteBuffer buffer) {
+        if (buffer == null) {
+            RadioLog.w(TAG, "Invalid data packet received");
             return;
         }
         
-        // Convert to hex string for easier parsing
-        String hexString = bytesToHexString(data);
-        Log.d(TAG, "Parsing data: " + hexString);
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            parseReceivedData(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            return;
+        }
         
-        // Extract command identifier (first 6 characters)
-        String commandId = hexString.substring(0, Math.min(COMMAND_ID_LENGTH, hexString.length()));
+        if (directBufferScratch.length < length) {
+            directBufferScratch = new byte[length];
+        }
+        buffer.duplicate().get(directBufferScratch, 0, length);
+        parseReceivedData(directBufferScratch, 0, length);
+    }
+    
+    /**
+     * Parse incoming data from radio
+     * 
+     * @param data Buffer holding the packet
+     * @param offset Offset of the start byte within the buffer
+     * @param length Packet length in bytes
+     */
+    public void parseReceivedData(byte[] data, int offset, int length) {
+        RadioMetrics metrics = this.metrics;
+        RadioTracer tracer = this.tracer;
+        if (metrics == null && tracer == null) {
+            parseFrame(data, offset, length);
+            return;
+        }
         
-        // Route to appropriate parser based on command type
-        switch (commandId) {
-            case CMD_TYPE_FREQUENCY_STATUS:
-                parseFrequencyStatus(hexString);
-                break;
-                
-            case CMD_TYPE_TIME:
-                parseTimeUpdate(hexString);
-                break;
-                
-            case CMD_TYPE_BAND_INFO:
-                parseBandInfo(hexString);
-                break;
-                
-            case CMD_TYPE_VOLUME:
-                parseVolumeLevel(hexString);
-                break;
-                
-            case CMD_TYPE_SIGNAL:
-                parseSignalStrength(hexString);
-                break;
-                
-            case CMD_TYPE_FREQ_INPUT:
-                parseFrequencyInput(hexString);
-                break;
-                
-            case CMD_TYPE_DEVICE_INFO:
-            case CMD_TYPE_DEVICE_INFO_CONT:
-                parseDeviceInfo(hexString);
-                break;
-                
-            case CMD_TYPE_SUBBAND_INFO:
-                parseSubBandInfo(hexString);
-                break;
-                
-            case CMD_TYPE_LOCK_STATUS:
-                parseLockStatus(hexString);
-                break;
-                
-            case CMD_TYPE_RECORDING_STATUS:
-                parseRecordingStatus(hexString);
-                break;
-                
-            case CMD_TYPE_STATUS_SHORT:
-                parseStatusShort(hexString);
-                break;
-                
-            case CMD_TYPE_FREQ_DATA_1:
-                parseFreqData1(hexString);
-                break;
-                
-            case CMD_TYPE_FREQ_DATA_2:
-                parseFreqData2(hexString);
-                break;
-                
-            case CMD_TYPE_BATTERY:
-                parseBattery(hexString);
-                break;
-                
-            case CMD_TYPE_DETAILED_FREQ:
-                parseDetailedFreq(hexString);
-                break;
-                
-            case CMD_TYPE_BANDWIDTH:
-                parseBandwidth(hexString);
-                break;
-                
-            default:
-                Log.d(TAG, "Unknown command type: " + commandId);
-                break;
+        Object trace = tracer != null ? tracer.begin(RadioTracer.PARSE) : null;
+        long start = metrics != null ? System.nanoTime() : 0;
+        parseFrame(data, offset, length);
+        if (metrics != null) {
+            metrics.recordParse(System.nanoTime() - start);
+        }
+        if (trace != null) {
+            int opcode = data != null && length > 1 ? data[offset + 1] & 0xFF : -1;
+            tracer.end(trace, deviceAddress, opcode, length, 0);
+        }
+    }
+    
+    private void parseFrame(byte[] data, int offset, int length) {
+        // Listeners added since the last frame get the current values first
+        listenerRegistry.replayPending(stateStore);
+        
+        if (data == null || length < MIN_PACKET_LENGTH) {
+            frame.clear(); // Not profiled: nothing to group it by
+            malformedPacket("Invalid data packet received");
+            return;
+        }
+        
+        frame.wrap(data, offset, length);
+        if (metrics != null) {
+            metrics.onFrame(frame.opcode());
+        }
+        if (tracer != null) {
+            listenerRegistry.setTraceFrame(frame.opcode(), length);
+        }
+        if (roundTripTracker != null) {
+            roundTripTracker.onFrame(frame.commandKey());
+        }
+        frameLogged = RadioLog.sampleFrame(frame.opcode());
+        
+        if (frameLogged) {
+            RadioLog.dHex(TAG, "Parsing data: ", data, offset, length);
+        }
+        
+        // Packets that don't start with 0xAB never match a command type
+        if (frame.u8(0) != (RadioProtocolCommands.PROTOCOL_START_BYTE & 0xFF)) {
+            logUnknownCommand(frame);
+            return;
+        }
+        
+        // Route to appropriate parser based on opcode and sub-opcode
+        if (!dispatcher.dispatch(frame)) {
+            logUnknownCommand(frame);
+        }
+        
+        stateStore.onFrameParsed();
+        burstCoalescer.onFrameParsed();
+    }
+    
+    /**
+     * Log a packet whose command type has no parser
+     * 
+     * @param frame Packet view
+     */
+    private void logUnknownCommand(RadioFrame frame) {
+        if (metrics != null) {
+            metrics.onUnknownFrame();
+        }
+        if (frameProfiler != null) {
+            frameProfiler.onUnknownFrame(frame);
+        }
+        if (frameLogged) {
+            RadioLog.d(TAG, "Unknown command type: " + frame.hexSlice(0, COMMAND_ID_LENGTH));
+        }
+    }
+    
+    /**
+     * Report a packet too short or malformed to parse
+     */
+    private void malformedPacket(String message) {
+        if (metrics != null) {
+            metrics.onParseError();
+        }
+        profileMalformed();
+        RadioLog.w(TAG, message);
+    }
+    
+    /**
+     * Report a parser that failed
+     */
+    private void parseFailed(String message, Exception e) {
+        if (metrics != null) {
+            metrics.onParseError();
+        }
+        profileMalformed();
+        RadioLog.e(TAG, message, e);
+    }
+    
+    /**
+     * Report a packet too short for its parser; only logged at debug
+     * level, as the parsers have always skipped these quietly
+     */
+    private void truncatedPacket() {
+        if (metrics != null) {
+            metrics.onParseError();
+        }
+        profileMalformed();
+        if (frameLogged) {
+            RadioLog.d(TAG, "Packet too short for its parser: {}", frame.hexSlice(0, frame.length()));
+        }
+    }
+    
+    private void profileMalformed() {
+        if (frameProfiler != null && frame.length() > 0) {
+            frameProfiler.onMalformedFrame(frame);
         }
     }
     
@@ -251,39 +731,38 @@ public class RadioProtocolHandler {
      * Parse frequency and status packet (ab0417)
      * 
      * Format:
-     * Bytes 0-5: Header "ab0417"
-     * Bytes 6-7: Byte 1 (flags/status)
-     * Bytes 8-9: Byte 2 (flags/status)
-     * Bytes 10-11: Byte 3 (flags/status)
-     * Bytes 12-19: Frequency data (4 bytes)
+     * Bytes 0-2: Header AB 04 17
+     * Byte 3: Byte 1 (flags/status)
+     * Byte 4: Byte 2 (flags/status)
+     * Byte 5: Byte 3 (flags/status)
+     * Bytes 6-9: Frequency data (4 bytes)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseFrequencyStatus(String hexData) {
-        if (hexData.length() < MIN_FREQ_STATUS_LENGTH) {
-            Log.w(TAG, "Frequency status packet too short");
+    private void parseFrequencyStatus(RadioFrame frame) {
+        if (frame.length() < MIN_FREQ_STATUS_LENGTH) {
+            malformedPacket("Frequency status packet too short");
             return;
         }
         
         try {
             // Extract status bytes
-            String byte1 = hexData.substring(6, 8);
-            String byte2 = hexData.substring(8, 10);
-            String byte3 = hexData.substring(10, 12);
+            int byte1 = frame.u8(3);
+            int byte2 = frame.u8(4);
+            int byte3 = frame.u8(5);
             
-            Log.d(TAG, String.format("Status bytes: %s %s %s", byte1, byte2, byte3));
+            if (frameLogged) {
+                RadioLog.d(TAG, String.format("Status bytes: %02x %02x %02x", byte1, byte2, byte3));
+            }
             
-            // Create status object
-            RadioStatus status = new RadioStatus();
-            status.rawData = hexData;
+            // Update status in place
+            status.statusBytes = (byte1 << 16) | (byte2 << 8) | byte3;
             
             // Notify listener
-            if (dataListener != null) {
-                dataListener.onStatusUpdate(status);
-            }
+            changeFilter.onStatusUpdate(status);
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing frequency status", e);
+            parseFailed("Error parsing frequency status", e);
         }
     }
     
@@ -291,296 +770,305 @@ public class RadioProtocolHandler {
      * Parse band information packet (ab0901)
      * 
      * Format:
-     * Bytes 0-5: Header "ab0901"
-     * Bytes 6-7: Band code
-     * Bytes 8-9: Sub-band 1
-     * Bytes 10-11: Sub-band 2
-     * Bytes 12-13: Sub-band 3
-     * Bytes 14-15: Sub-band 4
-     * Bytes 16-31: Frequency components (8 bytes total)
-     * 
-     * @param hexData Hex string data
-     */
-    private void parseBandInfo(String hexData) {
-        if (hexData.length() < MIN_BAND_INFO_LENGTH) {
-            Log.w(TAG, "Band info packet too short");
+     * Bytes 0-2: Header AB 09 01
+     * Byte 3: Band code
+     * Byte 4: Sub-band 1
+     * Byte 5: Sub-band 2
+     * Byte 6: Sub-band 3
+     * Byte 7: Sub-band 4
+     * Bytes 8-15: Frequency components (8 bytes total)
+     * 
+     * @param frame Packet view, valid only during the call
+     */
+    private void parseBandInfo(RadioFrame frame) {
+        if (frame.length() < MIN_BAND_INFO_LENGTH) {
+            // Short ab0901 packets carry the detailed frequency layout
+            // (e.g. AB090106927A0200001300DC)
+            parseDetailedFreq(frame);
             return;
         }
         
         try {
             // Extract band identifier
-            String bandCode = hexData.substring(6, 8);
+            int bandCode = frame.u8(3);
             
-            // Extract sub-bands
-            String subBand1 = hexData.substring(8, 10);
-            String subBand2 = hexData.substring(10, 12);
-            String subBand3 = hexData.substring(12, 14);
-            String subBand4 = hexData.substring(14, 16);
+            // Frequency is the first 4 frequency bytes (little endian)
+            long frequency = frame.u32le(8);
             
-            // Extract frequency bytes (positions 16-31, 4 groups of 2 bytes each)
-            String freqByte1 = hexData.substring(16, 18);
-            String freqByte2 = hexData.substring(18, 20);
-            String freqByte3 = hexData.substring(20, 22);
-            String freqByte4 = hexData.substring(22, 24);
-            
-            // Combine frequency bytes (little endian)
-            String frequencyHex = freqByte4 + freqByte3 + freqByte2 + freqByte1;
-            String frequency = hexToDec(frequencyHex);
+            if (frameLogged) {
+                RadioLog.d(TAG, String.format("Band: %02x, Frequency: %d Hz", bandCode, frequency));
+            }
             
-            Log.d(TAG, String.format("Band: %s, Frequency: %s Hz", bandCode, frequency));
+            status.frequencyHz = frequency;
+            status.band = (byte) bandCode;
             
-            if (dataListener != null) {
-                dataListener.onFrequencyChanged(frequency, bandCode);
-            }
+            changeFilter.onFrequencyChanged(frequency, (byte) bandCode);
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing band info", e);
+            parseFailed("Error parsing band info", e);
         }
     }
     
     /**
      * Parse volume level packet (ab0303)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseVolumeLevel(String hexData) {
-        if (hexData.length() < 10) {
+    private void parseVolumeLevel(RadioFrame frame) {
+        if (frame.length() < 5) {
+            truncatedPacket();
             return;
         }
         
         try {
-            String volumeHex = hexData.substring(6, 8);
-            int volume = Integer.parseInt(volumeHex, 16);
+            int volume = frame.u8(3);
             
-            Log.d(TAG, "Volume: " + volume);
-            
-            if (dataListener != null) {
-                dataListener.onVolumeChanged(volume);
+            if (frameLogged) {
+                RadioLog.d(TAG, "Volume: " + volume);
             }
             
+            status.volumeLevel = volume;
+            
+            changeFilter.onVolumeChanged(volume);
+            
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing volume", e);
+            parseFailed("Error parsing volume", e);
         }
     }
     
     /**
      * Parse signal strength packet (ab031f)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseSignalStrength(String hexData) {
-        if (hexData.length() < 10) {
+    private void parseSignalStrength(RadioFrame frame) {
+        if (frame.length() < 5) {
+            truncatedPacket();
             return;
         }
         
         try {
-            String signalHex = hexData.substring(6, 8);
-            int strength = Integer.parseInt(signalHex, 16);
+            int strength = frame.u8(3);
             
-            Log.d(TAG, "Signal strength: " + strength);
-            
-            if (dataListener != null) {
-                dataListener.onSignalStrengthChanged(strength);
+            if (frameLogged) {
+                RadioLog.d(TAG, "Signal strength: " + strength);
             }
             
+            status.signalStrength = strength;
+            
+            changeFilter.onSignalStrengthChanged(strength);
+            
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing signal strength", e);
+            parseFailed("Error parsing signal strength", e);
         }
     }
     
     /**
      * Parse time update packet (ab031e)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseTimeUpdate(String hexData) {
-        Log.d(TAG, "Time update received: " + hexData);
+    private void parseTimeUpdate(RadioFrame frame) {
+        if (frameLogged) {
+            RadioLog.d(TAG, "Time update received: " + frame.hexSlice(0, frame.length()));
+        }
         // Time parsing can be implemented based on specific requirements
     }
     
     /**
      * Parse frequency input mode packet (ab090f)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseFrequencyInput(String hexData) {
-        Log.d(TAG, "Frequency input mode: " + hexData);
+    private void parseFrequencyInput(RadioFrame frame) {
+        if (frameLogged) {
+            RadioLog.d(TAG, "Frequency input mode: " + frame.hexSlice(0, frame.length()));
+        }
         // Parse frequency input state
     }
     
     /**
-     * Parse device info packet (ab11/ab10)
+     * Parse device info packet (ab1119/ab1019)
      * Multi-part ASCII message containing device version, model, contact info
      * 
-     * Format: AB11/AB10 [LENGTH] [SEQUENCE] [DATA_LENGTH] [ASCII_TEXT...] [CHECKSUM]
+     * Format: AB 11/10 [0x19] [SEQUENCE] [DATA_LENGTH] [ASCII_TEXT...] [CHECKSUM]
+     * Example: AB1119010E526164696F2076657273696F6E2019 → "Radio version "
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseDeviceInfo(String hexData) {
-        if (hexData.length() < 14) {
-            Log.w(TAG, "Device info packet too short");
+    private void parseDeviceInfo(RadioFrame frame) {
+        if (frame.length() < 7) {
+            malformedPacket("Device info packet too short");
             return;
         }
         
         try {
-            int length = Integer.parseInt(hexData.substring(2, 4), 16);
-            int sequence = Integer.parseInt(hexData.substring(4, 6), 16);
-            int dataLength = Integer.parseInt(hexData.substring(6, 8), 16);
-            
-            // Extract ASCII text (dataLength characters = dataLength*2 hex digits)
-            int textStartPos = 8;
-            int textEndPos = textStartPos + (dataLength * 2);
+            int sequence = frame.u8(3);
+            int dataLength = frame.u8(4);
             
-            if (hexData.length() < textEndPos) {
-                Log.w(TAG, "Device info data truncated");
+            // Extract ASCII text (dataLength characters)
+            int textStart = 5;
+            if (frame.length() < textStart + dataLength) {
+                malformedPacket("Device info data truncated");
                 return;
             }
             
-            String textHex = hexData.substring(textStartPos, textEndPos);
-            String text = hexToAscii(textHex);
-            
             // Accumulate multi-part message
-            deviceInfoBuffer.append(text);
+            frame.appendAscii(deviceInfoBuffer, textStart, dataLength);
             
-            Log.d(TAG, "Device info part " + sequence + ": \"" + text + "\"");
+            if (frameLogged) {
+                RadioLog.d(TAG, "Device info part " + sequence + ": \""
+                        + frame.asciiSlice(textStart, dataLength) + "\"");
+            }
             
             // Check if this appears to be the last part
             // (contains email address end or specific patterns)
-            if (text.contains(".com") || text.contains(".net") || 
-                hexData.startsWith("ab10")) { // ab10 often marks end
-                
-                String completeInfo = deviceInfoBuffer.toString();
-                Log.i(TAG, "Complete device info:\n" + completeInfo);
+            if (frame.asciiContains(textStart, dataLength, ".com")
+                || frame.asciiContains(textStart, dataLength, ".net") || 
+                frame.opcode() == 0x10) { // ab10 often marks end
                 
-                if (dataListener != null) {
-                    dataListener.onDeviceInfo(completeInfo);
+                // The radio resends the same text on every handshake; reuse
+                // the last String rather than building an equal one
+                String completeInfo = lastDeviceInfo;
+                if (completeInfo == null || !completeInfo.contentEquals(deviceInfoBuffer)) {
+                    completeInfo = deviceInfoBuffer.toString();
+                    lastDeviceInfo = completeInfo;
+                    RadioLog.i(TAG, "Complete device info:\n" + completeInfo);
                 }
                 
+                changeFilter.onDeviceInfo(completeInfo);
+                
                 // Clear buffer for next message
                 deviceInfoBuffer.setLength(0);
             }
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing device info", e);
+            parseFailed("Error parsing device info", e);
         }
     }
     
     /**
-     * Parse sub-band info packet (ab0e)
+     * Parse sub-band info packet (ab0e21)
      * Contains sub-band name in ASCII
      * 
-     * Format: AB0E [LENGTH] [INDEX] [MARKER] [NAME_LENGTH] [ASCII_NAME...] [CHECKSUM]
+     * Format: AB 0E [TYPE] [INDEX] [MARKER] [NAME_LENGTH] [ASCII_NAME...] [CHECKSUM]
+     * Example: AB0E2101030A205355422042414E442047 → " SUB BAND "
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseSubBandInfo(String hexData) {
-        if (hexData.length() < 16) {
-            Log.w(TAG, "Sub-band info packet too short");
+    private void parseSubBandInfo(RadioFrame frame) {
+        if (frame.length() < 8) {
+            malformedPacket("Sub-band info packet too short");
             return;
         }
         
         try {
-            int subBandIndex = Integer.parseInt(hexData.substring(4, 6), 16);
-            int textLength = Integer.parseInt(hexData.substring(6, 8), 16);
-            
-            int textStartPos = 8;
-            int textEndPos = textStartPos + (textLength * 2);
+            int subBandIndex = frame.u8(3);
+            int textLength = frame.u8(TEXT_LENGTH_INDEX);
             
-            if (hexData.length() < textEndPos) {
+            int textStart = TEXT_LENGTH_INDEX + 1;
+            if (frame.length() < textStart + textLength) {
+                truncatedPacket();
                 return;
             }
             
-            String textHex = hexData.substring(textStartPos, textEndPos);
-            String subBandName = hexToAscii(textHex);
-            
-            Log.d(TAG, "Sub-band " + subBandIndex + ": \"" + subBandName.trim() + "\"");
+            if (frameLogged) {
+                RadioLog.d(TAG, "Sub-band " + subBandIndex + ": \""
+                        + frame.asciiSlice(textStart, textLength).trim() + "\"");
+            }
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing sub-band info", e);
+            parseFailed("Error parsing sub-band info", e);
         }
     }
     
     /**
-     * Parse lock status packet (ab08)
+     * Parse lock status packet (ab0821)
      * Indicates whether keypad/controls are locked
      * 
-     * Format: AB08 [LENGTH] [LOCK_TYPE] [MARKER] [TEXT_LENGTH] [ASCII_STATUS] [CHECKSUM]
+     * Format: AB 08 [LOCK_TYPE] [INDEX] [MARKER] [TEXT_LENGTH] [ASCII_STATUS] [CHECKSUM]
+     * Example: AB08210503044C4F434B09 → "LOCK"
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseLockStatus(String hexData) {
-        if (hexData.length() < 16) {
-            Log.w(TAG, "Lock status packet too short");
+    private void parseLockStatus(RadioFrame frame) {
+        if (frame.length() < 8) {
+            malformedPacket("Lock status packet too short");
             return;
         }
         
         try {
-            int lockType = Integer.parseInt(hexData.substring(4, 6), 16);
-            int textLength = Integer.parseInt(hexData.substring(6, 8), 16);
-            
-            int textStartPos = 8;
-            int textEndPos = textStartPos + (textLength * 2);
+            int textLength = frame.u8(TEXT_LENGTH_INDEX);
             
-            if (hexData.length() < textEndPos) {
+            int textStart = TEXT_LENGTH_INDEX + 1;
+            if (frame.length() < textStart + textLength) {
+                truncatedPacket();
                 return;
             }
             
-            String textHex = hexData.substring(textStartPos, textEndPos);
-            String status = hexToAscii(textHex);
+            boolean isLocked = frame.asciiContains(textStart, textLength, "LOCK")
+                    && !frame.asciiContains(textStart, textLength, "UNLOCK");
             
-            boolean isLocked = status.toUpperCase().contains("LOCK");
+            if (frameLogged) {
+                RadioLog.d(TAG, "Lock status: \"" + frame.asciiSlice(textStart, textLength)
+                        + "\" (locked=" + isLocked + ")");
+            }
             
-            Log.d(TAG, "Lock status: \"" + status + "\" (locked=" + isLocked + ")");
+            status.setFlag(RadioStatus.FLAG_LOCKED, isLocked);
             
-            if (dataListener != null) {
-                dataListener.onLockStatusChanged(isLocked);
-            }
+            changeFilter.onLockStatusChanged(isLocked);
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing lock status", e);
+            parseFailed("Error parsing lock status", e);
         }
     }
     
     /**
-     * Parse recording status packet (ab0b)
+     * Parse recording status packet (ab0b1c)
      * Shows current recording state
      * 
-     * Format: AB0B [LENGTH] [REC_INDEX] [MARKER] [TEXT_LENGTH] [ASCII_STATUS] [CHECKSUM]
+     * Format: AB 0B [TYPE] [REC_INDEX] [MARKER] [TEXT_LENGTH] [ASCII_STATUS] [CHECKSUM]
+     * Example: AB0B1C100307524543204F4646C1 → "REC OFF"
+     * 
+     * ab0b1c is also one of the display label packets; text that is not a
+     * "REC" status is treated as an unknown command.
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseRecordingStatus(String hexData) {
-        if (hexData.length() < 16) {
-            Log.w(TAG, "Recording status packet too short");
+    private void parseRecordingStatus(RadioFrame frame) {
+        if (frame.length() < 8) {
+            malformedPacket("Recording status packet too short");
             return;
         }
         
         try {
-            int recordIndex = Integer.parseInt(hexData.substring(4, 6), 16);
-            int textLength = Integer.parseInt(hexData.substring(6, 8), 16);
+            int recordIndex = frame.u8(3);
+            int textLength = frame.u8(TEXT_LENGTH_INDEX);
             
-            int textStartPos = 8;
-            int textEndPos = textStartPos + (textLength * 2);
-            
-            if (hexData.length() < textEndPos) {
+            int textStart = TEXT_LENGTH_INDEX + 1;
+            if (frame.length() < textStart + textLength) {
+                truncatedPacket();
+                return;
+            }
+            if (!frame.asciiContains(textStart, textLength, "REC")) {
+                logUnknownCommand(frame);
                 return;
             }
-            
-            String textHex = hexData.substring(textStartPos, textEndPos);
-            String status = hexToAscii(textHex);
             
             // Recording is active if status doesn't contain "OFF"
-            boolean isRecording = !status.toUpperCase().contains("OFF");
-            
-            Log.d(TAG, "Recording slot " + recordIndex + ": \"" + status + 
-                       "\" (active=" + isRecording + ")");
+            boolean isRecording = !frame.asciiContains(textStart, textLength, "OFF");
             
-            if (dataListener != null) {
-                dataListener.onRecordingStatusChanged(isRecording, recordIndex);
+            if (frameLogged) {
+                RadioLog.d(TAG, "Recording slot " + recordIndex + ": \"" + frame.asciiSlice(textStart, textLength) + 
+                           "\" (active=" + isRecording + ")");
             }
             
+            status.setFlag(RadioStatus.FLAG_RECORDING, isRecording);
+            
+            changeFilter.onRecordingStatusChanged(isRecording, recordIndex);
+            
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing recording status", e);
+            parseFailed("Error parsing recording status", e);
         }
     }
     
@@ -598,11 +1086,23 @@ public class RadioProtocolHandler {
             return "";
         }
         
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b & 0xFF));
+        return RadioHexCodec.toHex(bytes, false);
+    }
+    
+    /**
+     * Convert a range of a byte array to hex string
+     * 
+     * @param bytes Byte array
+     * @param offset First byte to convert
+     * @param length Number of bytes to convert
+     * @return Hex string (lowercase)
+     */
+    public static String bytesToHexString(byte[] bytes, int offset, int length) {
+        if (bytes == null) {
+            return "";
         }
-        return result.toString();
+        
+        return RadioHexCodec.toHex(bytes, offset, length, false);
     }
     
     /**
@@ -616,31 +1116,42 @@ public class RadioProtocolHandler {
             long value = Long.parseLong(hexString, 16);
             return String.valueOf(value);
         } catch (NumberFormatException e) {
-            Log.e(TAG, "Error converting hex to decimal: " + hexString, e);
+            RadioLog.e(TAG, "Error converting hex to decimal: " + hexString, e);
             return "0";
         }
     }
     
+    /**
+     * Read an unsigned 32-bit little endian value
+     * 
+     * @param data Byte array
+     * @param index Index of the least significant byte
+     * @return Unsigned value
+     */
+    public static long readUInt32LE(byte[] data, int index) {
+        return (data[index] & 0xFFL)
+                | ((data[index + 1] & 0xFFL) << 8)
+                | ((data[index + 2] & 0xFFL) << 16)
+                | ((data[index + 3] & 0xFFL) << 24);
+    }
+    
     /**
      * Convert hex string to byte array
      * 
      * @param hexString Hex string (even length)
-     * @return Byte array
+     * @return Byte array, empty if the string is null, odd length or not hex
      */
     public static byte[] hexStringToBytes(String hexString) {
         if (hexString == null || hexString.length() % 2 != 0) {
             return new byte[0];
         }
         
-        int len = hexString.length();
-        byte[] data = new byte[len / 2];
-        
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
-                    + Character.digit(hexString.charAt(i + 1), 16));
+        try {
+            return RadioHexCodec.fromHex(hexString);
+        } catch (IllegalArgumentException e) {
+            RadioLog.w(TAG, "Invalid hex string: {}", hexString);
+            return new byte[0];
         }
-        
-        return data;
     }
     
     /**
@@ -666,13 +1177,22 @@ public class RadioProtocolHandler {
             return "";
         }
         
-        StringBuilder output = new StringBuilder();
-        for (int i = 0; i < hexString.length(); i += 2) {
-            String str = hexString.substring(i, i + 2);
-            int charCode = Integer.parseInt(str, 16);
-            output.append((char) charCode);
-        }
-        return output.toString();
+        StringBuilder output = new StringBuilder(hexString.length() / 2);
+        return RadioHexCodec.appendAscii(output, hexString, 0, hexString.length()).toString();
+    }
+    
+    /**
+     * Decode a range of bytes as single-byte characters
+     * 
+     * Produces the same text as hexToAscii on the hex form of the bytes.
+     * 
+     * @param data Byte array
+     * @param offset First byte of the text
+     * @param length Number of characters
+     * @return ASCII text
+     */
+    public static String asciiString(byte[] data, int offset, int length) {
+        return new String(data, offset, length, StandardCharsets.ISO_8859_1);
     }
     
     /**
@@ -686,11 +1206,8 @@ public class RadioProtocolHandler {
             return "";
         }
         
-        StringBuilder hex = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            hex.append(String.format("%02X", (int) c));
-        }
-        return hex.toString();
+        StringBuilder hex = new StringBuilder(text.length() * 2);
+        return RadioHexCodec.appendAsciiHex(hex, text, true).toString();
     }
     
     /**
@@ -700,19 +1217,22 @@ public class RadioProtocolHandler {
      * Format: AB02 [LENGTH] [STATUS] [CHECKSUM]
      * Example: AB022001CE (status=0x20)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseStatusShort(String hexData) {
-        if (hexData.length() < 10) {
+    private void parseStatusShort(RadioFrame frame) {
+        if (frame.length() < 5) {
+            truncatedPacket();
             return;
         }
         
         try {
-            int status = Integer.parseInt(hexData.substring(6, 8), 16);
-            Log.d(TAG, "Status short: 0x" + Integer.toHexString(status));
+            int status = frame.u8(3);
+            if (frameLogged) {
+                RadioLog.d(TAG, "Status short: 0x" + Integer.toHexString(status));
+            }
             // Status values observed: 0x20 (normal), 0x05 (mode change), 0x07 (battery update)
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing status short", e);
+            parseFailed("Error parsing status short", e);
         }
     }
     
@@ -724,26 +1244,29 @@ public class RadioProtocolHandler {
      * Format: AB05 [LENGTH] [INDEX1] [INDEX2] [MODE] [CHECKSUM]
      * Example: AB051C0603013107 (index=0x1C06, mode=0x31)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseFreqData1(String hexData) {
-        if (hexData.length() < 14) {
+    private void parseFreqData1(RadioFrame frame) {
+        if (frame.length() < 7) {
+            truncatedPacket();
             return;
         }
         
         try {
-            int index1 = Integer.parseInt(hexData.substring(4, 6), 16);
-            int index2 = Integer.parseInt(hexData.substring(6, 8), 16);
-            int mode = Integer.parseInt(hexData.substring(10, 12), 16);
+            int index1 = frame.u8(2);
+            int index2 = frame.u8(3);
+            int mode = frame.u8(5);
             
             // Store for pairing with AB06
-            lastFreqData1 = hexData;
+            lastFreqData1 = (index1 << 16) | (index2 << 8) | mode;
             
-            Log.d(TAG, String.format("Freq data 1: index=0x%02X%02X mode=0x%02X", 
-                                     index1, index2, mode));
+            if (frameLogged) {
+                RadioLog.d(TAG, String.format("Freq data 1: index=0x%02X%02X mode=0x%02X",
+                                         index1, index2, mode));
+            }
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing freq data 1", e);
+            parseFailed("Error parsing freq data 1", e);
         }
     }
     
@@ -752,82 +1275,93 @@ public class RadioProtocolHandler {
      * Second part of paired AB05/AB06 message sequence
      * Contains ASCII channel/frequency text
      * 
-     * Format: AB06 [LENGTH] [INDEX1] [INDEX2] [TEXT_LENGTH] [ASCII_TEXT...] [CHECKSUM]
+     * Format: AB 06 [INDEX1] [INDEX2] [MARKER] [TEXT_LENGTH] [ASCII_TEXT...] [CHECKSUM]
      * Example: AB061C08030233313E → "31" (channel 31)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseFreqData2(String hexData) {
-        if (hexData.length() < 16) {
+    private void parseFreqData2(RadioFrame frame) {
+        if (frame.length() < 8) {
+            truncatedPacket();
             return;
         }
         
         try {
-            int index1 = Integer.parseInt(hexData.substring(4, 6), 16);
-            int index2 = Integer.parseInt(hexData.substring(6, 8), 16);
-            int textLength = Integer.parseInt(hexData.substring(8, 10), 16);
-            
-            int textStartPos = 10;
-            int textEndPos = textStartPos + (textLength * 2);
+            int index1 = frame.u8(2);
+            int index2 = frame.u8(3);
+            int textLength = frame.u8(TEXT_LENGTH_INDEX);
             
-            if (hexData.length() < textEndPos) {
+            int textStart = TEXT_LENGTH_INDEX + 1;
+            if (frame.length() < textStart + textLength) {
+                truncatedPacket();
                 return;
             }
             
-            String textHex = hexData.substring(textStartPos, textEndPos);
-            String channelText = hexToAscii(textHex);
-            
-            Log.d(TAG, String.format("Freq data 2: index=0x%02X%02X text=\"%s\"", 
-                                     index1, index2, channelText));
+            // Trim surrounding spaces and control characters (as String.trim())
+            int textEnd = textStart + textLength;
+            while (textStart < textEnd && frame.u8(textStart) <= ' ') {
+                textStart++;
+            }
+            while (textEnd > textStart && frame.u8(textEnd - 1) <= ' ') {
+                textEnd--;
+            }
+            channelText.setLength(0);
+            frame.appendAscii(channelText, textStart, textEnd - textStart);
             
-            if (dataListener != null) {
-                dataListener.onChannelDisplay(channelText.trim());
+            if (frameLogged) {
+                RadioLog.d(TAG, String.format("Freq data 2: index=0x%02X%02X text=\"%s\"",
+                                         index1, index2, channelText));
             }
             
+            changeFilter.onChannelDisplay(channelText);
+            
             // Clear paired data
-            lastFreqData1 = null;
+            lastFreqData1 = -1;
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing freq data 2", e);
+            parseFailed("Error parsing freq data 2", e);
         }
     }
     
     /**
-     * Parse battery packet (ab07)
-     * Contains battery level or extended status
+     * Parse battery packet (ab0207)
+     * Status short packet carrying the battery level
      * 
-     * Format: AB07 [LENGTH] [STATUS] [BATTERY] [CHECKSUM]
-     * Example: AB020702B6 (battery at position 6-7)
+     * Format: AB 02 07 [BATTERY] [CHECKSUM]
+     * Example: AB020702B6 (battery at byte 3)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseBattery(String hexData) {
-        if (hexData.length() < 10) {
+    private void parseBattery(RadioFrame frame) {
+        if (frame.length() < 5) {
+            truncatedPacket();
             return;
         }
         
         try {
-            int batteryValue = Integer.parseInt(hexData.substring(6, 8), 16);
+            int batteryValue = frame.u8(3);
             
             // Battery level interpretation (observed values: 0x02 = low, 0x07 = full?)
             // May need calibration based on actual device behavior
             int batteryPercent = (batteryValue * 100) / 7; // Rough estimate
             batteryPercent = Math.min(100, Math.max(0, batteryPercent));
             
-            Log.d(TAG, "Battery: " + batteryPercent + "% (raw=0x" + 
-                       Integer.toHexString(batteryValue) + ")");
-            
-            if (dataListener != null) {
-                dataListener.onBatteryLevel(batteryPercent);
+            if (frameLogged) {
+                RadioLog.d(TAG, "Battery: " + batteryPercent + "% (raw=0x" +
+                           Integer.toHexString(batteryValue) + ")");
             }
             
+            status.batteryPercent = batteryPercent;
+            
+            changeFilter.onBatteryLevel(batteryPercent);
+            
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing battery", e);
+            parseFailed("Error parsing battery", e);
         }
     }
     
     /**
-     * Parse detailed frequency info (ab09)
+     * Parse detailed frequency info (short ab0901)
      * Extended frequency/demodulation information
      * 
      * Format: AB09 [LENGTH] [INDEX] [MODE] [FREQ_BYTES...] [CHECKSUM]
@@ -837,34 +1371,42 @@ public class RadioProtocolHandler {
      *   - Frequency data: 927A020000
      *   - Additional: 0x13 (squelch?)
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseDetailedFreq(String hexData) {
-        if (hexData.length() < 20) {
+    private void parseDetailedFreq(RadioFrame frame) {
+        if (frame.length() < 10) {
+            truncatedPacket();
             return;
         }
         
         try {
-            int index = Integer.parseInt(hexData.substring(4, 6), 16);
-            int mode = Integer.parseInt(hexData.substring(6, 8), 16);
+            int index = frame.u8(2);
+            int mode = frame.u8(3);
             
-            // Extract frequency bytes (6 bytes = 12 hex chars)
-            String freqHex = hexData.substring(8, 20);
+            // Frequency bytes are bytes 4-9
             
-            // Additional parameter at position 20-21 (often squelch or filter setting)
+            // Additional parameter at byte 10 (often squelch or filter setting)
             int param = 0;
-            if (hexData.length() >= 22) {
-                param = Integer.parseInt(hexData.substring(20, 22), 16);
+            if (frame.length() >= 11) {
+                param = frame.u8(10);
             }
             
-            Log.d(TAG, String.format("Detailed freq: idx=0x%02X mode=0x%02X freq=%s param=0x%02X",
-                                     index, mode, freqHex, param));
+            if (frameLogged) {
+                RadioLog.d(TAG, String.format("Detailed freq: idx=0x%02X mode=0x%02X freq=%s param=0x%02X",
+                                         index, mode, frame.hexSlice(4, 6), param));
+            }
             
             // Note: Frequency decoding may require specific interpretation
             // based on the radio's encoding scheme
             
+            status.demodulation = mode;
+            
+            // Published with the rest of the status (dropped by the change
+            // filter when the mode is unchanged)
+            changeFilter.onStatusUpdate(status);
+            
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing detailed freq", e);
+            parseFailed("Error parsing detailed freq", e);
         }
     }
     
@@ -872,47 +1414,257 @@ public class RadioProtocolHandler {
      * Parse bandwidth info packet (ab0d)
      * Contains bandwidth setting in ASCII
      * 
-     * Format: AB0D [LENGTH] [INDEX1] [INDEX2] [TEXT_LENGTH] [ASCII_TEXT...] [CHECKSUM]
+     * Format: AB 0D [INDEX1] [INDEX2] [MARKER] [TEXT_LENGTH] [ASCII_TEXT...] [CHECKSUM]
      * Example: AB0D1C03030942616E64576964746858 → "BandWidth"
      * 
-     * @param hexData Hex string data
+     * @param frame Packet view, valid only during the call
      */
-    private void parseBandwidth(String hexData) {
-        if (hexData.length() < 16) {
+    private void parseBandwidth(RadioFrame frame) {
+        if (frame.length() < 8) {
+            truncatedPacket();
             return;
         }
         
         try {
-            int index1 = Integer.parseInt(hexData.substring(4, 6), 16);
-            int index2 = Integer.parseInt(hexData.substring(6, 8), 16);
-            int textLength = Integer.parseInt(hexData.substring(8, 10), 16);
+            int index1 = frame.u8(2);
+            int index2 = frame.u8(3);
+            int textLength = frame.u8(TEXT_LENGTH_INDEX);
             
-            int textStartPos = 10;
-            int textEndPos = textStartPos + (textLength * 2);
-            
-            if (hexData.length() < textEndPos) {
+            int textStart = TEXT_LENGTH_INDEX + 1;
+            if (frame.length() < textStart + textLength) {
+                truncatedPacket();
                 return;
             }
             
-            String textHex = hexData.substring(textStartPos, textEndPos);
-            String bandwidthText = hexToAscii(textHex);
-            
-            Log.d(TAG, String.format("Bandwidth: index=0x%02X%02X text=\"%s\"", 
-                                     index1, index2, bandwidthText));
+            if (frameLogged) {
+                RadioLog.d(TAG, String.format("Bandwidth: index=0x%02X%02X text=\"%s\"",
+                                         index1, index2, frame.asciiSlice(textStart, textLength)));
+            }
             
         } catch (Exception e) {
-            Log.e(TAG, "Error parsing bandwidth", e);
+            parseFailed("Error parsing bandwidth", e);
         }
     }
     
     
     // ==================== GETTERS & SETTERS ====================
     
+    /**
+     * Set a String-based listener, replacing the listener set by
+     * setDataListener() or setStatusListener(); added listeners are kept
+     */
     public void setDataListener(RadioDataListener listener) {
+        replacePrimaryListener(listener != null ? new RadioDataListenerAdapter(listener) : null, listener);
         this.dataListener = listener;
     }
     
     public RadioDataListener getDataListener() {
         return dataListener;
     }
+    
+    /**
+     * Set a primitive listener, replacing the listener set by
+     * setDataListener() or setStatusListener(); added listeners are kept
+     */
+    public void setStatusListener(RadioStatusListener listener) {
+        replacePrimaryListener(listener, listener);
+        this.dataListener = null;
+    }
+    
+    public RadioStatusListener getStatusListener() {
+        return statusListener;
+    }
+    
+    private void replacePrimaryListener(RadioStatusListener listener, Object key) {
+        if (statusListener != null) {
+            listenerRegistry.remove(dataListener != null ? dataListener : statusListener);
+        }
+        this.statusListener = listener;
+        if (listener != null) {
+            listenerRegistry.add(key, listener, RadioListenerRegistry.MASK_ALL);
+        }
+    }
+    
+    /**
+     * Subscribe a primitive listener to some fields
+     * 
+     * @param listener Listener to add
+     * @param fieldMask RadioListenerRegistry.MASK_* bits of the fields to deliver
+     */
+    public void addStatusListener(RadioStatusListener listener, int fieldMask) {
+        listenerRegistry.add(listener, fieldMask);
+    }
+    
+    /**
+     * Subscribe a String-based listener to some fields
+     * 
+     * @param listener Listener to add
+     * @param fieldMask RadioListenerRegistry.MASK_* bits of the fields to deliver
+     */
+    public void addDataListener(RadioDataListener listener, int fieldMask) {
+        listenerRegistry.add(listener, new RadioDataListenerAdapter(listener), fieldMask);
+    }
+    
+    /**
+     * Subscribe a primitive listener that is called on its own thread, so a
+     * slow listener cannot delay parsing or the other listeners
+     * 
+     * @param listener Listener to add
+     * @param fieldMask RadioListenerRegistry.MASK_* bits of the fields to deliver
+     * @param policy What to do when the listener's queue is full
+     * @param capacity Queue capacity
+     * @return The queue wrapper (for queue depth and drop statistics)
+     */
+    public RadioAsyncListener addAsyncStatusListener(RadioStatusListener listener, int fieldMask,
+                                                     RadioAsyncListener.OverflowPolicy policy, int capacity) {
+        RadioAsyncListener async = new RadioAsyncListener(listener, policy, capacity);
+        listenerRegistry.add(listener, async, fieldMask);
+        return async;
+    }
+    
+    /**
+     * Remove a listener added with addStatusListener(), addDataListener() or
+     * addAsyncStatusListener()
+     * 
+     * @return true if the listener was registered
+     */
+    public boolean removeListener(Object listener) {
+        RadioStatusListener registered = listenerRegistry.get(listener);
+        if (registered instanceof RadioAsyncListener) {
+            ((RadioAsyncListener) registered).shutdown();
+        }
+        return listenerRegistry.remove(listener);
+    }
+    
+    /**
+     * Get the registry of subscribed listeners (for field masks)
+     */
+    public RadioListenerRegistry getListenerRegistry() {
+        return listenerRegistry;
+    }
+    
+    /**
+     * Get the number of packets not decoded because no subscriber wanted
+     * their fields
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+    
+    public RadioMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Record frame counts, parse errors, checksum failures and latencies in
+     * shared metrics; null to stop measuring
+     */
+    public void setMetrics(RadioMetrics metrics) {
+        this.metrics = metrics;
+        frameAssembler.setMetrics(metrics);
+        listenerRegistry.setMetrics(metrics);
+    }
+    
+    public RadioTracer getTracer() {
+        return tracer;
+    }
+    
+    /**
+     * Report each parsed frame (PARSE) and listener fan-out (CALLBACK) to a
+     * tracer, e.g. Flight Recorder events; null to stop
+     * 
+     * @param tracer Tracer, or null
+     * @param deviceAddress Address reported with the events, e.g.
+     *                      RadioBluetoothManager.getDeviceAddress()
+     */
+    public void setTracer(RadioTracer tracer, String deviceAddress) {
+        this.tracer = tracer;
+        this.deviceAddress = deviceAddress;
+        listenerRegistry.setTracer(tracer, deviceAddress);
+    }
+    
+    public RadioRoundTripTracker getRoundTripTracker() {
+        return roundTripTracker;
+    }
+    
+    /**
+     * Stop round-trip clocks on the frames that answer commands; pass the
+     * same tracker to RadioBluetoothManager.setRoundTripTracker(). Null to
+     * stop
+     */
+    public void setRoundTripTracker(RadioRoundTripTracker tracker) {
+        this.roundTripTracker = tracker;
+    }
+    
+    public RadioFrameProfiler getFrameProfiler() {
+        return frameProfiler;
+    }
+    
+    /**
+     * Profile the frames that are not decoded (unknown command types and
+     * display labels, too short or failing to parse); null to stop
+     */
+    public void setFrameProfiler(RadioFrameProfiler profiler) {
+        this.frameProfiler = profiler;
+    }
+    
+    /**
+     * Get the filter that suppresses unchanged values (for suppression
+     * statistics and forward-all mode)
+     */
+    public RadioChangeFilter getChangeFilter() {
+        return changeFilter;
+    }
+    
+    /**
+     * Set a listener for coalesced snapshots; null turns coalescing off
+     */
+    public void setSnapshotListener(RadioBurstCoalescer.SnapshotListener listener) {
+        burstCoalescer.setSnapshotListener(listener);
+        listenerRegistry.remove(burstCoalescer);
+        if (listener != null) {
+            listenerRegistry.add(burstCoalescer);
+        }
+    }
+    
+    /**
+     * Get the coalescer that groups bursts into snapshots (for quiet gap,
+     * frame count and latency settings)
+     */
+    public RadioBurstCoalescer getBurstCoalescer() {
+        return burstCoalescer;
+    }
+    
+    /**
+     * Get the versioned state store (safe to read from any thread)
+     */
+    public RadioStateStore getStateStore() {
+        return stateStore;
+    }
+    
+    /**
+     * Keep some fields decoded for readers of getStateStore() even when no
+     * listener subscribes to them
+     * 
+     * @param fieldMask RadioListenerRegistry.MASK_* bits, 0 (the default) to
+     *                  record only what the listeners ask for
+     */
+    public void setStateStoreFields(int fieldMask) {
+        listenerRegistry.setDemandMask(stateStore, fieldMask);
+    }
+    
+    /**
+     * Get the current status (updated in place on the parsing thread;
+     * other threads should use getStateStore())
+     */
+    public RadioStatus getStatus() {
+        return status;
+    }
+    
+    /**
+     * Get the frame assembler used for raw notifications (for framing statistics)
+     */
+    public RadioFrameAssembler getFrameAssembler() {
+        return frameAssembler;
+    }
 }
@@ -0,0 +1,298 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Radio Round Trip Tracker
+ * 
+ * Measures how long the radio takes to answer a command: each command
+ * written is stamped, and the first inbound frame that reflects it stops
+ * the clock (docs/COMMAND_RESPONSE_SEQUENCES.md shows about 100 ms).
+ * Commands are grouped into types by the frame that answers them:
+ * - TYPE_HANDSHAKE: CMD_HANDSHAKE, answered by the first frame of the
+ *   state dump
+ * - TYPE_VOLUME: CMD_VOLUME_UP/DOWN, answered by ab0303
+ * - TYPE_TUNING: number keys, FREQ, UP/DOWN, BAND, SUB_BAND and PRESET,
+ *   answered by ab0901 or ab0417
+ * - TYPE_BUTTON: any other button, answered by the first frame of the
+ *   response burst, which varies with the radio's state
+ * Other writes (e.g. ACKs) are not tracked. "First frame" skips the
+ * frequency frames (ab05xx, ab06xx) the radio sends about once a second
+ * on its own; in BIDIRECTIONAL_CAPTURE.txt this puts the median poll
+ * answer at about 130 ms.
+ * 
+ * One command per type is outstanding at a time: commands of a type sent
+ * while one is waiting are counted as coalesced and answered with it, so
+ * a burst of key presses measures from the first press. A command still
+ * unanswered after the timeout counts as timed out instead of skewing
+ * the histogram.
+ * 
+ * Sends and frames may arrive on different threads; the pending stamps
+ * are atomics and nothing allocates after construction.
+ * 
+ * Usage:
+ *   RadioRoundTripTracker tracker = new RadioRoundTripTracker();
+ *   manager.setRoundTripTracker(tracker);
+ *   handler.setRoundTripTracker(tracker);
+ *   long p99 = tracker.getLatency(RadioRoundTripTracker.TYPE_TUNING).getPercentile(0.99);
+ */
+public class RadioRoundTripTracker {
+    
+    private static final String TAG = "RadioRoundTripTracker";
+    
+    // ==================== COMMAND TYPES ====================
+    
+    public static final int TYPE_HANDSHAKE = 0;
+    public static final int TYPE_VOLUME = 1;
+    public static final int TYPE_TUNING = 2;
+    public static final int TYPE_BUTTON = 3;
+    
+    /** Number of TYPE_* identifiers */
+    public static final int TYPE_COUNT = 4;
+    
+    /** Returned by typeOf() for commands that are not tracked */
+    public static final int TYPE_NONE = -1;
+    
+    /** Default time after which an unanswered command counts as timed out */
+    public static final long DEFAULT_TIMEOUT_NANOS = 2_000_000_000L;
+    
+    private static final String[] TYPE_NAMES = {
+        "handshake", "volume", "tuning", "button"
+    };
+    
+    // Frame keys ((byte 1 << 8) | byte 2) that answer each type; null: any
+    // frame but the autonomous ones
+    private static final int[][] RESPONSE_KEYS = {
+        null,
+        { RadioProtocolHandler.CMD_KEY_VOLUME },
+        { RadioProtocolHandler.CMD_KEY_BAND_INFO, RadioProtocolHandler.CMD_KEY_FREQUENCY_STATUS },
+        null
+    };
+    
+    // Type of each button command by its data byte (byte 3)
+    private static final byte[] BUTTON_TYPES = new byte[256];
+    
+    static {
+        Arrays.fill(BUTTON_TYPES, (byte) TYPE_BUTTON);
+        setButtonType(TYPE_VOLUME,
+                RadioProtocolCommands.CMD_VOLUME_UP, RadioProtocolCommands.CMD_VOLUME_DOWN);
+        setButtonType(TYPE_TUNING,
+                RadioProtocolCommands.CMD_NUMBER_0, RadioProtocolCommands.CMD_NUMBER_1,
+                RadioProtocolCommands.CMD_NUMBER_2, RadioProtocolCommands.CMD_NUMBER_3,
+                RadioProtocolCommands.CMD_NUMBER_4, RadioProtocolCommands.CMD_NUMBER_5,
+                RadioProtocolCommands.CMD_NUMBER_6, RadioProtocolCommands.CMD_NUMBER_7,
+                RadioProtocolCommands.CMD_NUMBER_8, RadioProtocolCommands.CMD_NUMBER_9,
+                RadioProtocolCommands.CMD_NUMBER_0_LONG, RadioProtocolCommands.CMD_NUMBER_1_LONG,
+                RadioProtocolCommands.CMD_NUMBER_2_LONG, RadioProtocolCommands.CMD_NUMBER_3_LONG,
+                RadioProtocolCommands.CMD_NUMBER_4_LONG, RadioProtocolCommands.CMD_NUMBER_5_LONG,
+                RadioProtocolCommands.CMD_NUMBER_6_LONG, RadioProtocolCommands.CMD_NUMBER_7_LONG,
+                RadioProtocolCommands.CMD_NUMBER_8_LONG, RadioProtocolCommands.CMD_NUMBER_9_LONG,
+                RadioProtocolCommands.CMD_FREQ,
+                RadioProtocolCommands.CMD_UP_SHORT, RadioProtocolCommands.CMD_UP_LONG,
+                RadioProtocolCommands.CMD_DOWN_SHORT, RadioProtocolCommands.CMD_DOWN_LONG,
+                RadioProtocolCommands.CMD_BAND, RadioProtocolCommands.CMD_SUB_BAND,
+                RadioProtocolCommands.CMD_PRESET);
+    }
+    
+    private static void setButtonType(int type, byte[]... commands) {
+        for (byte[] command : commands) {
+            BUTTON_TYPES[command[3] & 0xFF] = (byte) type;
+        }
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final long timeoutNanos;
+    private final AtomicLongArray pending = new AtomicLongArray(TYPE_COUNT); // Send time, 0 when none
+    private final RadioLatencyHistogram[] latency = new RadioLatencyHistogram[TYPE_COUNT];
+    private final LongAdder[] sent = new LongAdder[TYPE_COUNT];
+    private final LongAdder[] coalesced = new LongAdder[TYPE_COUNT];
+    private final LongAdder[] timeouts = new LongAdder[TYPE_COUNT];
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    public RadioRoundTripTracker() {
+        this(DEFAULT_TIMEOUT_NANOS);
+    }
+    
+    /**
+     * @param timeoutNanos Time after which an unanswered command counts as
+     *                     timed out
+     */
+    public RadioRoundTripTracker(long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            latency[type] = new RadioLatencyHistogram();
+            sent[type] = new LongAdder();
+            coalesced[type] = new LongAdder();
+            timeouts[type] = new LongAdder();
+        }
+    }
+    
+    
+    // ==================== TRACKING ====================
+    
+    /**
+     * Type of a command
+     * 
+     * @param command Command bytes as written
+     * @return TYPE_*, or TYPE_NONE if the command is not tracked
+     */
+    public static int typeOf(byte[] command) {
+        if (command.length == RadioProtocolCommands.CMD_HANDSHAKE.length
+                && command[1] == RadioProtocolCommands.MESSAGE_LENGTH_HANDSHAKE
+                && command[2] == RadioProtocolCommands.DATA_HANDSHAKE) {
+            return TYPE_HANDSHAKE;
+        }
+        if (command.length > 3
+                && command[1] == RadioProtocolCommands.MESSAGE_LENGTH_STANDARD
+                && command[2] == RadioProtocolCommands.COMMAND_TYPE_BUTTON) {
+            return BUTTON_TYPES[command[3] & 0xFF];
+        }
+        return TYPE_NONE;
+    }
+    
+    /**
+     * Stamp a command that was written to the radio
+     */
+    public void onCommandSent(byte[] command) {
+        onCommandSent(command, System.nanoTime());
+    }
+    
+    /**
+     * Stamp a command at a given time (e.g. from a capture)
+     * 
+     * @param command Command bytes as written
+     * @param nowNanos System.nanoTime() or capture time of the write
+     */
+    public void onCommandSent(byte[] command, long nowNanos) {
+        int type = typeOf(command);
+        if (type == TYPE_NONE) {
+            return;
+        }
+        sent[type].increment();
+        long stamp = nowNanos != 0 ? nowNanos : 1; // 0 marks "none pending"
+        while (true) {
+            long previous = pending.get(type);
+            if (previous != 0 && nowNanos - previous <= timeoutNanos) {
+                coalesced[type].increment();
+                return;
+            }
+            if (pending.compareAndSet(type, previous, stamp)) {
+                if (previous != 0) {
+                    timeouts[type].increment();
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Stop the clock of any command type a received frame answers
+     * 
+     * @param commandKey (byte 1 << 8) | byte 2 of the frame
+     */
+    public void onFrame(int commandKey) {
+        onFrame(commandKey, System.nanoTime());
+    }
+    
+    /**
+     * Stop the clock at a given time (e.g. from a capture)
+     * 
+     * @param commandKey (byte 1 << 8) | byte 2 of the frame
+     * @param nowNanos System.nanoTime() or capture time of the frame
+     */
+    public void onFrame(int commandKey, long nowNanos) {
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            long stamp = pending.get(type);
+            if (stamp == 0 || !answers(type, commandKey) || !pending.compareAndSet(type, stamp, 0)) {
+                continue;
+            }
+            long rtt = nowNanos - stamp;
+            if (rtt > timeoutNanos) {
+                timeouts[type].increment();
+            } else {
+                latency[type].record(rtt);
+            }
+        }
+    }
+    
+    private static boolean answers(int type, int commandKey) {
+        int[] keys = RESPONSE_KEYS[type];
+        if (keys == null) {
+            int opcode = commandKey >>> 8;
+            return opcode != RadioProtocolHandler.CMD_OPCODE_FREQ_DATA_1
+                    && opcode != RadioProtocolHandler.CMD_OPCODE_FREQ_DATA_2;
+        }
+        for (int key : keys) {
+            if (key == commandKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    
+    // ==================== REPORTING ====================
+    
+    /** Name of a TYPE_* identifier (for reports) */
+    public static String getTypeName(int type) {
+        return TYPE_NAMES[type];
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RadioRoundTripTracker{");
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            if (type > 0) {
+                sb.append(", ");
+            }
+            RadioLatencyHistogram histogram = latency[type];
+            sb.append(TYPE_NAMES[type])
+              .append(": sent=").append(getSent(type))
+              .append(" answered=").append(histogram.getCount())
+              .append(" timeouts=").append(getTimeouts(type));
+            if (histogram.getCount() > 0) {
+                sb.append(" p50=").append(histogram.getPercentile(0.50) / 1_000_000).append("ms")
+                  .append(" p99=").append(histogram.getPercentile(0.99) / 1_000_000).append("ms");
+            }
+        }
+        return sb.append('}').toString();
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+    
+    /** Round-trip times of answered commands of a type, in nanoseconds */
+    public RadioLatencyHistogram getLatency(int type) {
+        return latency[type];
+    }
+    
+    /** Commands of a type written, including coalesced ones */
+    public long getSent(int type) {
+        return sent[type].sum();
+    }
+    
+    /** Commands of a type written while an earlier one was unanswered */
+    public long getCoalesced(int type) {
+        return coalesced[type].sum();
+    }
+    
+    /** Commands of a type not answered within the timeout */
+    public long getTimeouts(int type) {
+        return timeouts[type].sum();
+    }
+    
+    /** Whether a command of a type is waiting for its answer */
+    public boolean isPending(int type) {
+        return pending.get(type) != 0;
+    }
+}
@@ -0,0 +1,627 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Session Journal
+ * 
+ * Always-on binary recorder for every raw frame received from or written
+ * to the radio. Records are appended to memory-mapped segment files of a
+ * fixed size; a full segment is closed and the next one started, and the
+ * oldest segments are deleted once the journal exceeds its size limit.
+ * 
+ * Appending is a few puts into the mapped buffer under a short lock, so it
+ * is safe from the GATT callback and from sendCommand() at the same time.
+ * Dirty pages are forced to storage together (group commit) every commit
+ * interval by a background thread, or on commit() and close().
+ * 
+ * The background thread also keeps the next segment created and mapped
+ * ahead of time, so a full segment is only swapped for it under the lock;
+ * forcing the full segment and deleting old ones happen on that thread as
+ * well, never on the appending thread.
+ * 
+ * Segment layout (big endian):
+ *   header   64 bytes: magic "RSJ1", version, created (epoch ms),
+ *            first record time, index entry count, index slot count
+ *   index    INDEX_SLOTS x 16 bytes: [time ns][record offset][unused]
+ *   records  [u16 length][u8 direction][u8 unused][i64 time ns][payload]
+ * 
+ * An index entry is added at least every INDEX_INTERVAL_NANOS of traffic
+ * and every INDEX_INTERVAL_BYTES of data, so a reader can seek to any
+ * moment by binary search instead of scanning. The length of a record is
+ * written last and unused space is zero, so readers stop cleanly at the
+ * end of the data, including after a crash.
+ * 
+ * Times are nanoseconds since the epoch taken from the monotonic clock,
+ * anchored to the wall clock once when the journal is opened: ordered
+ * within a session and comparable across sessions.
+ * 
+ * Usage:
+ *   RadioSessionJournal journal = new RadioSessionJournal(dir);
+ *   bluetoothManager.setJournal(journal);
+ *   ...
+ *   RadioSessionJournal.read(dir, fromNanos, (time, fromRadio, data, offset, length) -> true);
+ */
+public class RadioSessionJournal {
+    
+    private static final String TAG = "RadioSessionJournal";
+    
+    /** Default segment file size */
+    public static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+    
+    /** Default size limit of all segments together */
+    public static final long DEFAULT_RETAIN_BYTES = 256L * 1024 * 1024;
+    
+    /** Default time between group commits */
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 200;
+    
+    /** Direction byte of a frame received from the radio */
+    public static final int DIRECTION_RECEIVED = 1;
+    
+    /** Direction byte of a frame written to the radio */
+    public static final int DIRECTION_SENT = 2;
+    
+    /** Largest payload of one record */
+    public static final int MAX_PAYLOAD = 0xFFFF;
+    
+    // Segment layout
+    static final String SEGMENT_PREFIX = "session-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final int MAGIC = 0x52534A31; // "RSJ1"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int INDEX_SLOTS = 4096;
+    static final int INDEX_ENTRY_BYTES = 16;
+    static final int DATA_OFFSET = HEADER_BYTES + INDEX_SLOTS * INDEX_ENTRY_BYTES;
+    static final int RECORD_HEADER_BYTES = 12;
+    static final long INDEX_INTERVAL_NANOS = 1_000_000_000L;
+    static final int INDEX_INTERVAL_BYTES = 64 * 1024;
+    
+    // Header fields
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CREATED_MILLIS = 8;
+    private static final int HEADER_FIRST_TIME = 16;
+    private static final int HEADER_INDEX_COUNT = 24;
+    private static final int HEADER_INDEX_SLOTS = 28;
+    
+    
+    // ==================== RECORD VISITOR ====================
+    
+    /**
+     * Receives journal records in time order
+     */
+    public interface RecordVisitor {
+        /**
+         * @param timeNanos Record time (epoch nanoseconds)
+         * @param fromRadio true for received frames, false for written ones
+         * @param data Buffer holding the frame; only valid during the call
+         * @param offset First frame byte
+         * @param length Frame length
+         * @return false to stop reading
+         */
+        boolean onRecord(long timeNanos, boolean fromRadio, byte[] data, int offset, int length);
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final File directory;
+    private final int segmentBytes;
+    private final long retainBytes;
+    private final long clockOffsetNanos; // Epoch nanos minus System.nanoTime()
+    private final ScheduledExecutorService worker; // Group commits, segment preparation and retention
+    
+    // Guarded by this
+    private long nextSequence;
+    private long segmentSequence;
+    private File segmentFile;
+    private MappedByteBuffer segment;
+    private File spareFile;              // Next segment, mapped ahead of time by the worker
+    private MappedByteBuffer spare;
+    private int position;
+    private int indexCount;
+    private long lastIndexTime;
+    private int lastIndexPosition;
+    private boolean dirty;
+    private boolean closed;
+    
+    // Statistics, guarded by this
+    private long records;
+    private long bytesAppended;
+    private long commits;
+    private long segmentsDeleted;
+    private long dropped;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Open a journal with the default sizes and commit interval
+     * 
+     * @param directory Directory for the segment files, created if needed
+     * @throws IOException If the first segment cannot be created
+     */
+    public RadioSessionJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_RETAIN_BYTES, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * Open a journal; a new segment is started after any existing ones
+     * 
+     * @param directory Directory for the segment files, created if needed
+     * @param segmentBytes Size of each segment file
+     * @param retainBytes Oldest segments are deleted above this total size
+     * @param commitIntervalMillis Time between group commits, 0 to only commit on commit() and close()
+     * @throws IOException If the first segment cannot be created
+     */
+    public RadioSessionJournal(File directory, int segmentBytes, long retainBytes, long commitIntervalMillis)
+            throws IOException {
+        if (segmentBytes < DATA_OFFSET + RECORD_HEADER_BYTES + MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Segment too small: " + segmentBytes);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retainBytes = retainBytes;
+        this.clockOffsetNanos = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+        
+        File[] existing = listSegments(directory);
+        this.nextSequence = existing.length > 0 ? sequenceOf(existing[existing.length - 1]) + 1 : 0;
+        synchronized (this) {
+            long sequence = nextSequence++;
+            File file = new File(directory, segmentName(sequence));
+            startSegment(sequence, file, createSegment(file));
+        }
+        
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (commitIntervalMillis > 0) {
+            worker.scheduleWithFixedDelay(this::commit, commitIntervalMillis, commitIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        worker.execute(this::maintain);
+    }
+    
+    
+    // ==================== WRITING ====================
+    
+    /**
+     * Append a frame received from the radio
+     * 
+     * @return true if recorded
+     */
+    public boolean appendReceived(byte[] data) {
+        return append(DIRECTION_RECEIVED, data, 0, data.length);
+    }
+    
+    /**
+     * Append a frame written to the radio
+     * 
+     * @return true if recorded
+     */
+    public boolean appendSent(byte[] data) {
+        return append(DIRECTION_SENT, data, 0, data.length);
+    }
+    
+    /**
+     * Append one frame, time-stamped now
+     * 
+     * Never throws: on an I/O error the frame is counted as dropped and
+     * logged, since callers run on the Bluetooth callback thread.
+     * 
+     * @param direction DIRECTION_RECEIVED or DIRECTION_SENT
+     * @return true if recorded; false if closed, empty or over MAX_PAYLOAD
+     */
+    public synchronized boolean append(int direction, byte[] data, int offset, int length) {
+        if (closed || length <= 0 || length > MAX_PAYLOAD) {
+            dropped++;
+            return false;
+        }
+        long timeNanos = System.nanoTime() + clockOffsetNanos;
+        
+        if (position + RECORD_HEADER_BYTES + length > segmentBytes) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                dropped++;
+                RadioLog.e(TAG, "Cannot start a new segment", e);
+                return false;
+            }
+        }
+        
+        if (indexCount == 0) {
+            segment.putLong(HEADER_FIRST_TIME, timeNanos);
+        }
+        if (indexCount < INDEX_SLOTS && (indexCount == 0
+                || timeNanos - lastIndexTime >= INDEX_INTERVAL_NANOS
+                || position - lastIndexPosition >= INDEX_INTERVAL_BYTES)) {
+            int entry = HEADER_BYTES + indexCount * INDEX_ENTRY_BYTES;
+            segment.putLong(entry, timeNanos);
+            segment.putInt(entry + 8, position);
+            indexCount++;
+            segment.putInt(HEADER_INDEX_COUNT, indexCount);
+            lastIndexTime = timeNanos;
+            lastIndexPosition = position;
+        }
+        
+        // Everything but the length first, so a reader never sees a partial record
+        segment.put(position + 2, (byte) direction);
+        segment.putLong(position + 4, timeNanos);
+        segment.position(position + RECORD_HEADER_BYTES);
+        segment.put(data, offset, length);
+        segment.putShort(position, (short) length);
+        
+        position += RECORD_HEADER_BYTES + length;
+        records++;
+        bytesAppended += length;
+        dirty = true;
+        return true;
+    }
+    
+    /**
+     * Force appended records to storage now
+     */
+    public void commit() {
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            if (!dirty || segment == null) {
+                return;
+            }
+            toForce = segment;
+            dirty = false;
+            commits++;
+        }
+        toForce.force();
+    }
+    
+    /**
+     * Commit, stop the background thread and close the journal; later
+     * appends are dropped
+     */
+    public void close() {
+        MappedByteBuffer toForce;
+        File unused;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toForce = dirty ? segment : null;
+            if (dirty) {
+                dirty = false;
+                commits++;
+            }
+            segment = null;
+            unused = spareFile;
+            spareFile = null;
+            spare = null;
+        }
+        worker.shutdown(); // Work already queued (forcing a full segment) still runs
+        if (toForce != null) {
+            toForce.force();
+        }
+        if (unused != null && !unused.delete()) {
+            RadioLog.w(TAG, "Cannot delete unused segment {}", unused.getName());
+        }
+    }
+    
+    
+    // ==================== SEGMENTS ====================
+    
+    /**
+     * Switch to the prepared segment and hand the full one to the worker
+     * (caller holds the lock)
+     */
+    private void rotate() throws IOException {
+        MappedByteBuffer full = dirty ? segment : null;
+        if (full != null) {
+            dirty = false;
+            commits++;
+        }
+        
+        if (spare != null) {
+            startSegment(sequenceOf(spareFile), spareFile, spare);
+            spare = null;
+            spareFile = null;
+        } else {
+            // The worker has not mapped the next segment yet (or failed to)
+            RadioLog.w(TAG, "No segment prepared, creating one on the appending thread");
+            long sequence = nextSequence++;
+            File file = new File(directory, segmentName(sequence));
+            startSegment(sequence, file, createSegment(file));
+        }
+        
+        worker.execute(() -> {
+            if (full != null) {
+                full.force();
+            }
+            maintain();
+        });
+    }
+    
+    /**
+     * Create and map a segment file with an empty header
+     */
+    private MappedByteBuffer createSegment(File file) throws IOException {
+        MappedByteBuffer mapped;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(segmentBytes);
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        mapped.putInt(HEADER_MAGIC, MAGIC);
+        mapped.putShort(HEADER_VERSION, VERSION);
+        mapped.putInt(HEADER_INDEX_SLOTS, INDEX_SLOTS);
+        return mapped;
+    }
+    
+    /**
+     * Make a mapped segment the one appended to (caller holds the lock)
+     */
+    private void startSegment(long sequence, File file, MappedByteBuffer mapped) {
+        mapped.putLong(HEADER_CREATED_MILLIS, System.currentTimeMillis());
+        
+        segmentSequence = sequence;
+        segmentFile = file;
+        segment = mapped;
+        position = DATA_OFFSET;
+        indexCount = 0;
+        lastIndexTime = 0;
+        lastIndexPosition = DATA_OFFSET;
+        RadioLog.d(TAG, "Started segment {}", file.getName());
+    }
+    
+    /**
+     * Worker task: apply the size limit and prepare the next segment
+     */
+    private void maintain() {
+        applyRetention();
+        prepareSpare();
+    }
+    
+    /**
+     * Create and map the segment that follows the current one, unless one
+     * is ready already
+     */
+    private void prepareSpare() {
+        File file;
+        synchronized (this) {
+            if (closed || spare != null) {
+                return;
+            }
+            file = new File(directory, segmentName(nextSequence++));
+        }
+        
+        MappedByteBuffer mapped;
+        try {
+            mapped = createSegment(file);
+        } catch (IOException e) {
+            RadioLog.e(TAG, "Cannot prepare segment " + file.getName(), e);
+            file.delete();
+            return;
+        }
+        
+        boolean stale;
+        synchronized (this) {
+            // Stale if the appending thread had to create a later segment meanwhile
+            stale = sequenceOf(file) < segmentSequence;
+            if (!closed && spare == null && !stale) {
+                spareFile = file;
+                spare = mapped;
+                return;
+            }
+        }
+        file.delete();
+        if (stale) {
+            prepareSpare();
+        }
+    }
+    
+    /**
+     * Delete the oldest segments while the journal is over its size limit
+     */
+    private void applyRetention() {
+        File current;
+        synchronized (this) {
+            current = segmentFile;
+        }
+        File[] segments = listSegments(directory);
+        long total = 0;
+        for (File file : segments) {
+            total += file.length();
+        }
+        for (int i = 0; i < segments.length && total > retainBytes; i++) {
+            File file = segments[i];
+            if (file.equals(current)) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                synchronized (this) {
+                    segmentsDeleted++;
+                }
+                RadioLog.d(TAG, "Deleted segment {}", file.getName());
+            } else {
+                RadioLog.w(TAG, "Cannot delete segment {}", file.getName());
+            }
+        }
+    }
+    
+    static String segmentName(long sequence) {
+        return String.format(Locale.ROOT, "%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+    
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    /**
+     * Segment files of a directory, oldest first
+     */
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX)
+                && name.length() == SEGMENT_PREFIX.length() + 16 + SEGMENT_SUFFIX.length());
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+    
+    
+    // ==================== READING ====================
+    
+    /**
+     * Read the records of a journal directory from a moment on
+     * 
+     * Seeks with the time index of the segment that covers fromNanos, then
+     * visits every later record in order, across segments.
+     * 
+     * @param directory Journal directory
+     * @param fromNanos First time of interest (epoch nanoseconds), or 0 for everything
+     * @param visitor Receives the records
+     * @return Number of records visited
+     * @throws IOException If a segment cannot be read
+     */
+    public static long read(File directory, long fromNanos, RecordVisitor visitor) throws IOException {
+        File[] segments = listSegments(directory);
+        
+        // Start in the last segment whose first record is not after fromNanos
+        int first = 0;
+        for (int i = 0; i < segments.length; i++) {
+            long firstTime = readFirstTime(segments[i]);
+            if (firstTime != 0 && firstTime <= fromNanos) {
+                first = i;
+            }
+        }
+        
+        long visited = 0;
+        byte[] buffer = new byte[MAX_PAYLOAD];
+        for (int i = first; i < segments.length; i++) {
+            MappedByteBuffer mapped = mapReadOnly(segments[i]);
+            if (mapped == null) {
+                continue;
+            }
+            int position = seek(mapped, fromNanos);
+            while (position + RECORD_HEADER_BYTES <= mapped.limit()) {
+                int length = mapped.getShort(position) & 0xFFFF;
+                if (length == 0 || position + RECORD_HEADER_BYTES + length > mapped.limit()) {
+                    break;
+                }
+                long timeNanos = mapped.getLong(position + 4);
+                if (timeNanos >= fromNanos) {
+                    boolean fromRadio = mapped.get(position + 2) == DIRECTION_RECEIVED;
+                    mapped.position(position + RECORD_HEADER_BYTES);
+                    mapped.get(buffer, 0, length);
+                    visited++;
+                    if (!visitor.onRecord(timeNanos, fromRadio, buffer, 0, length)) {
+                        return visited;
+                    }
+                }
+                position += RECORD_HEADER_BYTES + length;
+            }
+        }
+        return visited;
+    }
+    
+    /**
+     * Find the record offset to start scanning from for a time
+     */
+    private static int seek(MappedByteBuffer mapped, long fromNanos) {
+        int count = Math.min(mapped.getInt(HEADER_INDEX_COUNT), mapped.getInt(HEADER_INDEX_SLOTS));
+        int low = 0;
+        int high = count - 1;
+        int best = DATA_OFFSET;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_BYTES + mid * INDEX_ENTRY_BYTES;
+            if (mapped.getLong(entry) <= fromNanos) {
+                best = mapped.getInt(entry + 8);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return best;
+    }
+    
+    private static long readFirstTime(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_BYTES || raf.readInt() != MAGIC) {
+                return 0;
+            }
+            raf.seek(HEADER_FIRST_TIME);
+            return raf.readLong();
+        }
+    }
+    
+    /**
+     * Map a segment for reading
+     * 
+     * @return The mapping, or null if the file is not a journal segment
+     */
+    private static MappedByteBuffer mapReadOnly(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < DATA_OFFSET) {
+                return null;
+            }
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (mapped.getInt(HEADER_MAGIC) != MAGIC) {
+                RadioLog.w(TAG, "Not a journal segment: {}", file.getName());
+                return null;
+            }
+            return mapped;
+        }
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public File getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Current journal time (epoch nanoseconds), as stamped on appended records
+     */
+    public long now() {
+        return System.nanoTime() + clockOffsetNanos;
+    }
+    
+    public synchronized long getRecordCount() {
+        return records;
+    }
+    
+    public synchronized long getBytesAppended() {
+        return bytesAppended;
+    }
+    
+    public synchronized long getCommitCount() {
+        return commits;
+    }
+    
+    public synchronized long getSegmentsDeleted() {
+        return segmentsDeleted;
+    }
+    
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+}
@@ -0,0 +1,165 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+
+/**
+ * Radio Snapshot
+ * 
+ * Immutable, consistent view of the radio state, built by RadioStateStore
+ * when a reader asks for a version it has not seen yet, and by
+ * RadioBurstCoalescer at the end of a burst. Unlike RadioStatus, a snapshot
+ * never changes after it is published and may be kept or shared between
+ * threads freely.
+ */
+public final class RadioSnapshot {
+    
+    public final long frequencyHz;        // Current frequency in Hz
+    public final byte band;               // Band code (e.g., 0x06 for VHF)
+    public final int subBand;             // Sub-band index
+    public final int demodulation;        // Demodulation mode code (RadioStatus.UNKNOWN if not reported)
+    public final int bandwidth;           // Bandwidth setting code (RadioStatus.UNKNOWN if not reported)
+    public final int squelchLevel;        // Squelch level (0-15)
+    public final int volumeLevel;         // Volume level (0-15)
+    public final int signalStrength;      // Last reported signal strength
+    public final int batteryPercent;      // Battery estimate (0-100)
+    public final int flags;               // RadioStatus.FLAG_* bits
+    public final int statusBytes;         // Bytes 3-5 of the last ab0417 packet, packed big endian
+    public final int recordIndex;         // Recording slot of the last recording status
+    public final String deviceInfo;       // Last complete device info text, or null
+    public final String channelText;      // Last channel display text, or null
+    public final long version;            // RadioStateStore version this snapshot was taken from
+    public final int changedFields;       // Bit (1 << RadioChangeFilter.FIELD_*) per field updated since the previous snapshot
+    public final int frameCount;          // Frames covered (changed frames for store snapshots, burst length for coalesced ones)
+    public final long timestampMillis;    // Wall clock time of the last frame covered (store) or of publication (coalesced)
+    
+    /**
+     * Create a snapshot
+     * 
+     * @param status Status values to copy
+     * @param recordIndex Recording slot of the last recording status
+     * @param deviceInfo Last complete device info text, or null
+     * @param channelText Last channel display text, or null
+     * @param version Store version
+     * @param changedFields Bit mask of fields updated since the previous snapshot
+     * @param frameCount Frames covered by the snapshot
+     * @param timestampMillis Publication time
+     */
+    public RadioSnapshot(RadioStatus status, int recordIndex, String deviceInfo, String channelText,
+                         long version, int changedFields, int frameCount, long timestampMillis) {
+        this.frequencyHz = status.frequencyHz;
+        this.band = status.band;
+        this.subBand = status.subBand;
+        this.demodulation = status.demodulation;
+        this.bandwidth = status.bandwidth;
+        this.squelchLevel = status.squelchLevel;
+        this.volumeLevel = status.volumeLevel;
+        this.signalStrength = status.signalStrength;
+        this.batteryPercent = status.batteryPercent;
+        this.flags = status.flags;
+        this.statusBytes = status.statusBytes;
+        this.recordIndex = recordIndex;
+        this.deviceInfo = deviceInfo;
+        this.channelText = channelText;
+        this.version = version;
+        this.changedFields = changedFields;
+        this.frameCount = frameCount;
+        this.timestampMillis = timestampMillis;
+    }
+    
+    private RadioSnapshot(RadioSnapshot base, int changedFields, int frameCount, long timestampMillis) {
+        this.frequencyHz = base.frequencyHz;
+        this.band = base.band;
+        this.subBand = base.subBand;
+        this.demodulation = base.demodulation;
+        this.bandwidth = base.bandwidth;
+        this.squelchLevel = base.squelchLevel;
+        this.volumeLevel = base.volumeLevel;
+        this.signalStrength = base.signalStrength;
+        this.batteryPercent = base.batteryPercent;
+        this.flags = base.flags;
+        this.statusBytes = base.statusBytes;
+        this.recordIndex = base.recordIndex;
+        this.deviceInfo = base.deviceInfo;
+        this.channelText = base.channelText;
+        this.version = base.version;
+        this.changedFields = changedFields;
+        this.frameCount = frameCount;
+        this.timestampMillis = timestampMillis;
+    }
+    
+    /**
+     * Copy this snapshot with the change mask and frame count of a burst
+     * 
+     * @param changedFields Bit mask of fields updated during the burst
+     * @param frameCount Frames received during the burst
+     * @param timestampMillis Publication time
+     * @return New snapshot with the same values and version
+     */
+    public RadioSnapshot withBurst(int changedFields, int frameCount, long timestampMillis) {
+        return new RadioSnapshot(this, changedFields, frameCount, timestampMillis);
+    }
+    
+    public boolean isStereo() {
+        return (flags & RadioStatus.FLAG_STEREO) != 0;
+    }
+    
+    public boolean isPowerOn() {
+        return (flags & RadioStatus.FLAG_POWER_ON) != 0;
+    }
+    
+    public boolean isLocked() {
+        return (flags & RadioStatus.FLAG_LOCKED) != 0;
+    }
+    
+    public boolean isRecording() {
+        return (flags & RadioStatus.FLAG_RECORDING) != 0;
+    }
+    
+    /**
+     * Check whether a field was updated in the burst
+     * 
+     * @param field RadioChangeFilter.FIELD_* identifier
+     * @return true if the field changed
+     */
+    public boolean isChanged(int field) {
+        return (changedFields & (1 << field)) != 0;
+    }
+    
+    /**
+     * Copy the values back into a mutable status
+     * 
+     * @param target Status to fill
+     * @return The target
+     */
+    public RadioStatus toStatus(RadioStatus target) {
+        target.frequencyHz = frequencyHz;
+        target.band = band;
+        target.subBand = subBand;
+        target.demodulation = demodulation;
+        target.bandwidth = bandwidth;
+        target.squelchLevel = squelchLevel;
+        target.volumeLevel = volumeLevel;
+        target.signalStrength = signalStrength;
+        target.batteryPercent = batteryPercent;
+        target.flags = flags;
+        target.statusBytes = statusBytes;
+        return target;
+    }
+    
+    @Override
+    public String toString() {
+        return "RadioSnapshot{" +
+                "version=" + version +
+                ", frequencyHz=" + frequencyHz +
+                ", band=" + (band & 0xFF) +
+                ", volumeLevel=" + volumeLevel +
+                ", signalStrength=" + signalStrength +
+                ", batteryPercent=" + batteryPercent +
+                ", locked=" + isLocked() +
+                ", recording=" + isRecording() +
+                ", channelText='" + channelText + '\'' +
+                ", changedFields=0x" + Integer.toHexString(changedFields) +
+                ", frameCount=" + frameCount +
+                '}';
+    }
+}
@@ -0,0 +1,380 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Radio State Store
+ * 
+ * Central, versioned copy of the radio state that the parsing thread
+ * writes and any number of threads read, without either side locking.
+ * 
+ * Field updates from one frame are gathered on the parsing thread and
+ * committed together as a single new version when onFrameParsed() is
+ * called, so a version never reflects part of a frame. The committed
+ * values are written under a sequence counter (a seqlock): the counter is
+ * odd while a commit is in progress, and a reader that saw it change
+ * retries. Committing writes into fixed fields and allocates nothing (the
+ * channel text is taken from a small cache of recent texts).
+ * 
+ * The immutable RadioSnapshot is only built when a reader asks for a
+ * version it has not seen yet, on the reader's thread; further reads of
+ * the same version return the same object. Pollers can compare version()
+ * with the last version they handled and skip work when nothing has
+ * changed.
+ * 
+ * The store subscribes passively: it records whatever the other
+ * subscribers cause to be decoded. Readers that need fields no listener
+ * asks for should say so with RadioProtocolHandler.setStateStoreFields().
+ * 
+ * Writes (listener callbacks, onFrameParsed, replayTo, clear) must come
+ * from a single thread; reads are safe from any thread.
+ */
+public class RadioStateStore implements RadioStatusListener {
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private RadioStatusListener target;
+    
+    // Writer-side state, only touched by the parsing thread
+    private final RadioStatus pending = new RadioStatus();
+    private int pendingRecordIndex;
+    private String pendingDeviceInfo;
+    private final StringBuilder pendingChannelText = new StringBuilder();
+    private int pendingFields;        // 0 when nothing changed since the last commit
+    private int knownFields;          // Fields reported at least once since the last clear
+    private final RadioTextCache channelTexts = new RadioTextCache(RadioTextCache.DEFAULT_SIZE);
+    
+    // State as of the last frame boundary, written by the parsing thread
+    // between the two increments of sequence (odd while writing)
+    private volatile long sequence;   // Twice the version, plus one during a commit
+    private volatile long committedFrequencyHz;
+    private volatile byte committedBand;
+    private volatile int committedSubBand;
+    private volatile int committedDemodulation = RadioStatus.UNKNOWN;
+    private volatile int committedBandwidth = RadioStatus.UNKNOWN;
+    private volatile int committedSquelchLevel;
+    private volatile int committedVolumeLevel;
+    private volatile int committedSignalStrength;
+    private volatile int committedBatteryPercent;
+    private volatile int committedFlags;
+    private volatile int committedStatusBytes;
+    private volatile int committedRecordIndex;
+    private volatile String committedDeviceInfo;
+    private volatile String committedChannelText;
+    private volatile long committedMillis;
+    private final AtomicLongArray fieldVersions = new AtomicLongArray(RadioChangeFilter.FIELD_COUNT); // Version each field last changed in
+    
+    /** Last snapshot built, returned while the version is unchanged */
+    private final AtomicReference<RadioSnapshot> latest;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Create a store holding an empty state at version 0
+     * 
+     * @param target Listener that receives every update as it arrives, may be null
+     */
+    public RadioStateStore(RadioStatusListener target) {
+        this.target = target;
+        this.committedMillis = System.currentTimeMillis();
+        this.latest = new AtomicReference<>(new RadioSnapshot(pending, 0, null, null, 0, 0, 0, committedMillis));
+    }
+    
+    
+    // ==================== READERS ====================
+    
+    /**
+     * Get the state as of the last frame boundary (lock-free)
+     * 
+     * Returns the cached snapshot while the version is unchanged;
+     * otherwise builds a new one on the calling thread, retrying if a
+     * commit overlapped the read.
+     * 
+     * @return Immutable snapshot; its changed fields and frame count cover
+     *         the versions since the previous snapshot was built
+     */
+    public RadioSnapshot snapshot() {
+        RadioSnapshot previous = latest.get();
+        if (previous.version == version()) {
+            return previous;
+        }
+        
+        RadioStatus status = new RadioStatus();
+        RadioSnapshot snapshot;
+        while (true) {
+            long before = sequence;
+            if ((before & 1) != 0) {
+                Thread.yield(); // Commit in progress
+                continue;
+            }
+            status.frequencyHz = committedFrequencyHz;
+            status.band = committedBand;
+            status.subBand = committedSubBand;
+            status.demodulation = committedDemodulation;
+            status.bandwidth = committedBandwidth;
+            status.squelchLevel = committedSquelchLevel;
+            status.volumeLevel = committedVolumeLevel;
+            status.signalStrength = committedSignalStrength;
+            status.batteryPercent = committedBatteryPercent;
+            status.flags = committedFlags;
+            status.statusBytes = committedStatusBytes;
+            int recordIndex = committedRecordIndex;
+            String deviceInfo = committedDeviceInfo;
+            String channelText = committedChannelText;
+            long millis = committedMillis;
+            int changedFields = 0;
+            for (int field = 0; field < RadioChangeFilter.FIELD_COUNT; field++) {
+                if (fieldVersions.get(field) > previous.version) {
+                    changedFields |= 1 << field;
+                }
+            }
+            if (sequence == before) {
+                long version = before >>> 1;
+                snapshot = new RadioSnapshot(status, recordIndex, deviceInfo, channelText, version,
+                        changedFields, (int) (version - previous.version), millis);
+                break;
+            }
+        }
+        
+        // Another reader may have published the same or a later version meanwhile
+        if (!latest.compareAndSet(previous, snapshot)) {
+            RadioSnapshot current = latest.get();
+            if (current.version >= snapshot.version) {
+                return current;
+            }
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Get the version of the committed state (wait-free)
+     * 
+     * Increases by one each time a frame changes the state.
+     * 
+     * @return Version number, 0 before the first change
+     */
+    public long version() {
+        return sequence >>> 1;
+    }
+    
+    /**
+     * Check whether the state changed after the given version
+     * 
+     * @param version Version the caller last handled
+     * @return true if a newer version is available
+     */
+    public boolean hasChangedSince(long version) {
+        return version() != version;
+    }
+    
+    
+    // ==================== WRITER ====================
+    
+    /**
+     * Commit the updates gathered from the frame just parsed, if any
+     */
+    public void onFrameParsed() {
+        if (pendingFields == 0) {
+            return;
+        }
+        
+        long start = sequence;
+        sequence = start + 1;
+        writeCommitted();
+        long version = (start >>> 1) + 1;
+        for (int field = 0; field < RadioChangeFilter.FIELD_COUNT; field++) {
+            if ((pendingFields & (1 << field)) != 0) {
+                fieldVersions.set(field, version);
+            }
+        }
+        sequence = start + 2;
+        
+        knownFields |= pendingFields;
+        pendingFields = 0;
+    }
+    
+    /**
+     * Copy the writer-side state into the committed fields (sequence is odd)
+     */
+    private void writeCommitted() {
+        committedFrequencyHz = pending.frequencyHz;
+        committedBand = pending.band;
+        committedSubBand = pending.subBand;
+        committedDemodulation = pending.demodulation;
+        committedBandwidth = pending.bandwidth;
+        committedSquelchLevel = pending.squelchLevel;
+        committedVolumeLevel = pending.volumeLevel;
+        committedSignalStrength = pending.signalStrength;
+        committedBatteryPercent = pending.batteryPercent;
+        committedFlags = pending.flags;
+        committedStatusBytes = pending.statusBytes;
+        committedRecordIndex = pendingRecordIndex;
+        committedDeviceInfo = pendingDeviceInfo;
+        if ((pendingFields & RadioListenerRegistry.MASK_CHANNEL_DISPLAY) != 0) {
+            committedChannelText = channelTexts.toString(pendingChannelText);
+        }
+        committedMillis = System.currentTimeMillis();
+    }
+    
+    /**
+     * Deliver the current value of each known field to a listener (e.g. one
+     * added after the values were reported)
+     * 
+     * Called on the parsing thread between frames, see
+     * RadioListenerRegistry.replayPending().
+     * 
+     * @param listener Listener to call
+     * @param fieldMask RadioListenerRegistry.MASK_* bits of the fields to replay
+     */
+    public void replayTo(RadioStatusListener listener, int fieldMask) {
+        int fields = fieldMask & knownFields;
+        if ((fields & RadioListenerRegistry.MASK_FREQUENCY) != 0) {
+            listener.onFrequencyChanged(pending.frequencyHz, pending.band);
+        }
+        if ((fields & RadioListenerRegistry.MASK_VOLUME) != 0) {
+            listener.onVolumeChanged(pending.volumeLevel);
+        }
+        if ((fields & RadioListenerRegistry.MASK_SIGNAL_STRENGTH) != 0) {
+            listener.onSignalStrengthChanged(pending.signalStrength);
+        }
+        if ((fields & RadioListenerRegistry.MASK_STATUS) != 0) {
+            listener.onStatusUpdate(pending);
+        }
+        if ((fields & RadioListenerRegistry.MASK_DEVICE_INFO) != 0) {
+            listener.onDeviceInfo(pendingDeviceInfo);
+        }
+        if ((fields & RadioListenerRegistry.MASK_LOCK_STATUS) != 0) {
+            listener.onLockStatusChanged(pending.isLocked());
+        }
+        if ((fields & RadioListenerRegistry.MASK_RECORDING_STATUS) != 0) {
+            listener.onRecordingStatusChanged(pending.isRecording(), pendingRecordIndex);
+        }
+        if ((fields & RadioListenerRegistry.MASK_BATTERY) != 0) {
+            listener.onBatteryLevel(pending.batteryPercent);
+        }
+        if ((fields & RadioListenerRegistry.MASK_CHANNEL_DISPLAY) != 0) {
+            listener.onChannelDisplay(pendingChannelText);
+        }
+    }
+    
+    /**
+     * Commit an empty state as a new version (e.g. after disconnecting)
+     */
+    public void clear() {
+        pending.copyFrom(new RadioStatus());
+        pendingRecordIndex = 0;
+        pendingDeviceInfo = null;
+        pendingChannelText.setLength(0);
+        pendingFields = 0;
+        knownFields = 0;
+        
+        long start = sequence;
+        sequence = start + 1;
+        writeCommitted();
+        committedChannelText = null;
+        sequence = start + 2;
+    }
+    
+    
+    // ==================== LISTENER METHODS ====================
+    
+    @Override
+    public void onFrequencyChanged(long frequencyHz, byte band) {
+        pending.frequencyHz = frequencyHz;
+        pending.band = band;
+        pendingFields |= 1 << RadioChangeFilter.FIELD_FREQUENCY;
+        if (target != null) {
+            target.onFrequencyChanged(frequencyHz, band);
+        }
+    }
+    
+    @Override
+    public void onVolumeChanged(int volume) {
+        pending.volumeLevel = volume;
+        pendingFields |= 1 << RadioChangeFilter.FIELD_VOLUME;
+        if (target != null) {
+            target.onVolumeChanged(volume);
+        }
+    }
+    
+    @Override
+    public void onSignalStrengthChanged(int strength) {
+        pending.signalStrength = strength;
+        pendingFields |= 1 << RadioChangeFilter.FIELD_SIGNAL_STRENGTH;
+        if (target != null) {
+            target.onSignalStrengthChanged(strength);
+        }
+    }
+    
+    @Override
+    public void onStatusUpdate(RadioStatus status) {
+        pending.copyFrom(status);
+        pendingFields |= 1 << RadioChangeFilter.FIELD_STATUS;
+        if (target != null) {
+            target.onStatusUpdate(status);
+        }
+    }
+    
+    @Override
+    public void onDeviceInfo(String deviceInfo) {
+        pendingDeviceInfo = deviceInfo;
+        pendingFields |= 1 << RadioChangeFilter.FIELD_DEVICE_INFO;
+        if (target != null) {
+            target.onDeviceInfo(deviceInfo);
+        }
+    }
+    
+    @Override
+    public void onLockStatusChanged(boolean isLocked) {
+        pending.setFlag(RadioStatus.FLAG_LOCKED, isLocked);
+        pendingFields |= 1 << RadioChangeFilter.FIELD_LOCK_STATUS;
+        if (target != null) {
+            target.onLockStatusChanged(isLocked);
+        }
+    }
+    
+    @Override
+    public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+        pending.setFlag(RadioStatus.FLAG_RECORDING, isRecording);
+        pendingRecordIndex = recordIndex;
+        pendingFields |= 1 << RadioChangeFilter.FIELD_RECORDING_STATUS;
+        if (target != null) {
+            target.onRecordingStatusChanged(isRecording, recordIndex);
+        }
+    }
+    
+    @Override
+    public void onBatteryLevel(int batteryPercent) {
+        pending.batteryPercent = batteryPercent;
+        pendingFields |= 1 << RadioChangeFilter.FIELD_BATTERY;
+        if (target != null) {
+            target.onBatteryLevel(batteryPercent);
+        }
+    }
+    
+    @Override
+    public void onChannelDisplay(CharSequence channelText) {
+        pendingChannelText.setLength(0);
+        pendingChannelText.append(channelText);
+        pendingFields |= 1 << RadioChangeFilter.FIELD_CHANNEL_DISPLAY;
+        if (target != null) {
+            target.onChannelDisplay(channelText);
+        }
+    }
+    
+    
+    // ==================== GETTERS & SETTERS ====================
+    
+    public RadioStatusListener getTarget() {
+        return target;
+    }
+    
+    public void setTarget(RadioStatusListener target) {
+        this.target = target;
+    }
+}
@@ -0,0 +1,46 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+/**
+ * Radio Text Cache
+ * 
+ * Hands out Strings for short texts that repeat, such as the channel
+ * display, which cycles through a handful of values. The Strings of the
+ * last few distinct texts are kept and returned again for equal text, so
+ * turning a reused CharSequence into a String allocates only for text not
+ * seen recently.
+ * 
+ * Not thread-safe: each owner uses its own cache from one thread.
+ */
+final class RadioTextCache {
+    
+    /** Texts kept by default, more than the display cycles through */
+    static final int DEFAULT_SIZE = 8;
+    
+    private final String[] texts;
+    private int next; // Slot replaced next
+    
+    /**
+     * @param size Number of distinct texts kept
+     */
+    RadioTextCache(int size) {
+        this.texts = new String[size];
+    }
+    
+    /**
+     * Get a String equal to a text
+     * 
+     * @param text Text to convert, may be reused by the caller afterwards
+     * @return A cached String with the same characters, or a new one
+     */
+    String toString(CharSequence text) {
+        for (String cached : texts) {
+            if (cached != null && cached.contentEquals(text)) {
+                return cached;
+            }
+        }
+        String copy = text.toString();
+        texts[next] = copy;
+        next = (next + 1) % texts.length;
+        return copy;
+    }
+}
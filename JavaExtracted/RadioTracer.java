@@ -0,0 +1,52 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+/**
+ * Radio Tracer
+ * 
+ * Receives timed events from the hot path so a low-overhead recorder can
+ * run continuously in production (the JDK Flight Recorder binding is
+ * RadioFlightRecorder in tools/):
+ * - RECEIVE: one notification in onCharacteristicChanged
+ * - PARSE: one frame in parseReceivedData
+ * - CALLBACK: one listener callback fanned out by the listener registry
+ * - SEND: one sendCommand call
+ * - WRITE: a command from sendCommand until its onCharacteristicWrite
+ * 
+ * Each event is begun and ended by the same component. begin() returns
+ * null when the event type is not being recorded, and callers then skip
+ * end() altogether, so a disabled tracer costs one call per event and
+ * allocates nothing. With no tracer set the hooks are a null check.
+ * 
+ * Events carry the opcode (byte 1) and length of the frame or command and
+ * the device address; notifications may hold partial frames, in which
+ * case the opcode is that of the first bytes.
+ */
+public interface RadioTracer {
+    
+    int RECEIVE = 0;
+    int PARSE = 1;
+    int CALLBACK = 2;
+    int SEND = 3;
+    int WRITE = 4;
+    
+    /**
+     * Start timing an event
+     * 
+     * @param type RECEIVE, PARSE, CALLBACK, SEND or WRITE
+     * @return Token for end(), or null when this event type is disabled
+     */
+    Object begin(int type);
+    
+    /**
+     * Finish an event started by begin()
+     * 
+     * @param token Non-null token returned by begin()
+     * @param deviceAddress Address of the radio, null if unknown
+     * @param opcode Byte 1 of the frame or command, -1 if too short
+     * @param length Length of the frame, notification or command in bytes
+     * @param detail CALLBACK: the RadioChangeFilter.FIELD_* delivered;
+     *               SEND: 1 if the write was initiated, else 0;
+     *               WRITE: the GATT status; RECEIVE and PARSE: 0
+     */
+    void end(Object token, String deviceAddress, int opcode, int length, int detail);
+}
@@ -0,0 +1,261 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import android.os.Vibrator;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Radio Allocation Budget
+ * 
+ * Steady-state allocation check for the receive and send paths, measured
+ * with ThreadMXBean.getThreadAllocatedBytes() on the calling thread:
+ * - Receive: parseReceivedData() over the recorded corpus, per opcode
+ *   and for the realistic mix (see RadioBenchmarkCorpus). The mix is also
+ *   broken down by command (opcode + sub-opcode): each frame's allocation
+ *   is charged to its command, so a command that allocates cannot hide
+ *   behind the mix average
+ * - Send: RadioCommandSender commands through an in-memory write
+ *   characteristic (see RadioCommandBenchmark)
+ * 
+ * Each case is warmed up first, then run MEASURED_OPERATIONS times in
+ * each of ROUNDS rounds; the lowest bytes per operation of the rounds
+ * (leaving out one-off allocations such as JIT deoptimization) must not
+ * exceed the budget; for the per-command breakdown, the lowest average of
+ * the rounds. The target is zero, so the default budget is 0.
+ * Cases over budget are listed and the exit status is 1.
+ * 
+ * Options (system properties):
+ *   -Dradio.alloc.budget=<bytes per operation>   default 0
+ *   -Dradio.docs=<docs directory>                default docs/ or ../docs/
+ * 
+ * Run from the repository root, with the classpath RadioCommandBenchmark
+ * runs on (build steps in benchmarks/README.md):
+ *   java -cp "build/benchmarks:$CP:$ANDROID_JAR" com.myhomesmartlife.bluetooth.CleanedUp.RadioAllocationBudget
+ */
+public final class RadioAllocationBudget {
+    
+    private static final String TAG = "RadioAllocationBudget";
+    
+    static final int WARMUP_OPERATIONS = 50_000;
+    static final int MEASURED_OPERATIONS = 200_000;
+    static final int ROUNDS = 3;
+    
+    private final com.sun.management.ThreadMXBean threads;
+    private final double budget;
+    private final List<String> overBudget = new ArrayList<>();
+    
+    private RadioAllocationBudget(double budget) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.budget = budget;
+    }
+    
+    
+    // ==================== RECEIVE PATH ====================
+    
+    private void checkReceivePath() throws IOException {
+        List<byte[]> corpus = RadioBenchmarkCorpus.frames();
+        Map<String, List<byte[]>> cases = new LinkedHashMap<>();
+        cases.put("mix", RadioBenchmarkCorpus.notificationMix(corpus, RadioBenchmarkCorpus.captureRecords()));
+        for (int opcode = 0; opcode < 256; opcode++) {
+            List<byte[]> frames = RadioBenchmarkCorpus.framesWithOpcode(corpus, opcode);
+            if (!frames.isEmpty()) {
+                cases.put("opcode " + RadioHexCodec.toHex(new byte[]{(byte) opcode}, true), frames);
+            }
+        }
+        
+        System.out.println("Receive path: parseReceivedData(), bytes allocated per frame");
+        for (Map.Entry<String, List<byte[]>> entry : cases.entrySet()) {
+            byte[][] frames = entry.getValue().toArray(new byte[0][]);
+            RadioProtocolHandler handler = new RadioProtocolHandler();
+            handler.setStatusListener(new RadioStubListener());
+            
+            int[] next = {0};
+            Runnable parseNext = () -> {
+                handler.parseReceivedData(frames[next[0]]);
+                next[0] = next[0] + 1 == frames.length ? 0 : next[0] + 1;
+            };
+            report(entry.getKey() + " (" + frames.length + " frames)", measure(parseNext));
+        }
+        
+        checkMixByCommand(cases.get("mix").toArray(new byte[0][]));
+    }
+    
+    /**
+     * Charge each frame of the mix to its command and check every command
+     * against the budget, in the state the mix leaves behind (so values
+     * that only change because of other frames are included)
+     */
+    private void checkMixByCommand(byte[][] frames) {
+        RadioProtocolHandler handler = new RadioProtocolHandler();
+        handler.setStatusListener(new RadioStubListener());
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            handler.parseReceivedData(frames[i % frames.length]);
+        }
+        
+        // Command key (opcode << 8 | sub-opcode) per frame, and a slot per distinct key
+        int[] keys = new int[frames.length];
+        Map<Integer, Integer> slots = new LinkedHashMap<>();
+        for (int i = 0; i < frames.length; i++) {
+            keys[i] = frames[i].length >= 3 ? (frames[i][1] & 0xFF) << 8 | (frames[i][2] & 0xFF) : -1;
+            slots.putIfAbsent(keys[i], slots.size());
+        }
+        int[] slotOf = new int[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            slotOf[i] = slots.get(keys[i]);
+        }
+        
+        long threadId = Thread.currentThread().getId();
+        long overhead = readOverhead(threadId);
+        int passes = Math.max(1, MEASURED_OPERATIONS / frames.length);
+        double[] lowest = new double[slots.size()];
+        Arrays.fill(lowest, Double.MAX_VALUE);
+        for (int round = 0; round < ROUNDS; round++) {
+            long[] bytes = new long[slots.size()];
+            long[] counts = new long[slots.size()];
+            for (int pass = 0; pass < passes; pass++) {
+                for (int i = 0; i < frames.length; i++) {
+                    long before = threads.getThreadAllocatedBytes(threadId);
+                    handler.parseReceivedData(frames[i]);
+                    long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+                    bytes[slotOf[i]] += Math.max(0, allocated);
+                    counts[slotOf[i]]++;
+                }
+            }
+            for (int slot = 0; slot < bytes.length; slot++) {
+                lowest[slot] = Math.min(lowest[slot], (double) bytes[slot] / counts[slot]);
+            }
+        }
+        
+        System.out.println("Receive path: mix by command, bytes allocated per frame");
+        for (Map.Entry<Integer, Integer> entry : slots.entrySet()) {
+            int key = entry.getKey();
+            String name = key < 0 ? "mix (short frames)"
+                    : "mix AB" + RadioHexCodec.toHex(new byte[]{(byte) (key >> 8), (byte) key}, true);
+            report(name, lowest[entry.getValue()]);
+        }
+    }
+    
+    /**
+     * Bytes reported between two back-to-back allocation reads, subtracted
+     * from each per-frame reading
+     */
+    private long readOverhead(long threadId) {
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            lowest = Math.min(lowest, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return lowest;
+    }
+    
+    
+    // ==================== SEND PATH ====================
+    
+    private void checkSendPath() {
+        RadioCommandBenchmark.FakeWriteCharacteristic characteristic = new RadioCommandBenchmark.FakeWriteCharacteristic();
+        RadioCommandSender sender = new RadioCommandSender(new RadioBluetoothManager(characteristic), (Vibrator) null);
+        byte[][] commands = allCommands();
+        int[] next = {0};
+        
+        Map<String, BooleanSupplier> cases = new LinkedHashMap<>();
+        cases.put("pressNumber", () -> sender.pressNumber(next[0]++ % 10));
+        cases.put("pressNumberLong", () -> sender.pressNumberLong(next[0]++ % 10));
+        cases.put("volumeUp", sender::volumeUp);
+        cases.put("frequencyUp", sender::frequencyUp);
+        cases.put("sendHandshake", sender::sendHandshake);
+        cases.put("sendCommand (" + commands.length + " CMD_* constants)",
+                () -> sender.sendCommand(commands[next[0]++ % commands.length]));
+        
+        System.out.println("Send path: RadioCommandSender -> RadioBluetoothManager, bytes allocated per command");
+        for (Map.Entry<String, BooleanSupplier> entry : cases.entrySet()) {
+            BooleanSupplier send = entry.getValue();
+            report(entry.getKey(), measure(() -> {
+                if (!send.getAsBoolean()) {
+                    throw new IllegalStateException("Send failed");
+                }
+            }));
+        }
+    }
+    
+    /**
+     * Every CMD_* constant of RadioProtocolCommands
+     */
+    private static byte[][] allCommands() {
+        List<byte[]> commands = new ArrayList<>();
+        for (Field field : RadioProtocolCommands.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == byte[].class
+                    && field.getName().startsWith("CMD_")) {
+                try {
+                    commands.add((byte[]) field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return commands.toArray(new byte[0][]);
+    }
+    
+    
+    // ==================== MEASUREMENT ====================
+    
+    /**
+     * Warm up an operation, then measure its allocation
+     * 
+     * @return Lowest bytes allocated per operation over the rounds
+     */
+    private double measure(Runnable operation) {
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            operation.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+                operation.run();
+            }
+            lowest = Math.min(lowest, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return (double) lowest / MEASURED_OPERATIONS;
+    }
+    
+    private void report(String name, double bytesPerOperation) {
+        boolean over = bytesPerOperation > budget;
+        System.out.println(String.format(Locale.ROOT, "  %-44s %10.2f  %s", name, bytesPerOperation, over ? "OVER BUDGET" : "ok"));
+        if (over) {
+            overBudget.add(name);
+        }
+    }
+    
+    
+    // ==================== MAIN ====================
+    
+    public static void main(String[] args) throws IOException {
+        RadioLog.setSink((priority, tag, message, error) -> { });
+        RadioLog.setLevel(RadioLog.INFO);
+        
+        double budget = Double.parseDouble(System.getProperty("radio.alloc.budget", "0"));
+        RadioAllocationBudget check = new RadioAllocationBudget(budget);
+        System.out.println(TAG + ": budget " + budget + " bytes per operation");
+        check.checkReceivePath();
+        check.checkSendPath();
+        
+        if (check.overBudget.isEmpty()) {
+            System.out.println("All paths within budget");
+        } else {
+            System.out.println("Over budget: " + String.join(", ", check.overBudget));
+            System.exit(1);
+        }
+    }
+}
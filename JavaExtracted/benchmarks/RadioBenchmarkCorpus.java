@@ -0,0 +1,104 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Radio Benchmark Corpus
+ * 
+ * The recorded RF320 traffic used by the benchmarks:
+ * - Frames: every complete frame in "Messages From RF320.txt"
+ * - Mix: the notification sequence of "BIDIRECTIONAL_CAPTURE.txt". That
+ *   capture only kept the first three bytes of each packet, so each entry
+ *   is replaced by a full frame with the same header from the frame list
+ *   (cycling through them); headers with no full frame are left out.
+ * 
+ * The docs directory is taken from the "radio.docs" system property, or
+ * found as docs/ or ../docs/ from the working directory.
+ */
+final class RadioBenchmarkCorpus {
+    
+    static final String FRAMES_FILE = "Messages From RF320.txt";
+    static final String CAPTURE_FILE = "BIDIRECTIONAL_CAPTURE.txt";
+    
+    private RadioBenchmarkCorpus() {
+    }
+    
+    /**
+     * Locate the docs directory
+     * 
+     * @throws IllegalStateException If it cannot be found
+     */
+    static File docsDirectory() {
+        String configured = System.getProperty("radio.docs");
+        if (configured != null) {
+            return new File(configured);
+        }
+        for (String candidate : new String[]{"docs", "../docs"}) {
+            File dir = new File(candidate);
+            if (new File(dir, FRAMES_FILE).isFile()) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("docs/ not found; run from the repository root or set -Dradio.docs=<dir>");
+    }
+    
+    /** Every frame of the frame list */
+    static List<byte[]> frames() throws IOException {
+        return RadioCaptureReader.readFrames(new File(docsDirectory(), FRAMES_FILE));
+    }
+    
+    /** Every record of the annotated capture */
+    static List<RadioCaptureReader.Record> captureRecords() throws IOException {
+        return RadioCaptureReader.readRecords(new File(docsDirectory(), CAPTURE_FILE));
+    }
+    
+    /**
+     * Frames of the frame list with the given opcode (byte 1)
+     */
+    static List<byte[]> framesWithOpcode(List<byte[]> frames, int opcode) {
+        List<byte[]> matching = new ArrayList<>();
+        for (byte[] frame : frames) {
+            if (frame.length > 1 && (frame[1] & 0xFF) == opcode) {
+                matching.add(frame);
+            }
+        }
+        return matching;
+    }
+    
+    /**
+     * Build the realistic notification mix
+     * 
+     * @param frames Full frames to draw from
+     * @param records Capture records giving the order of the headers
+     * @return Full frames in capture order
+     */
+    static List<byte[]> notificationMix(List<byte[]> frames, List<RadioCaptureReader.Record> records) {
+        List<byte[]> mix = new ArrayList<>();
+        for (RadioCaptureReader.Record record : RadioCaptureReader.completeValues(records, frames)) {
+            if (record.fromRadio) {
+                mix.add(record.value);
+            }
+        }
+        return mix;
+    }
+    
+    /**
+     * Concatenate frames into one notification stream
+     */
+    static byte[] concatenate(List<byte[]> frames) {
+        int total = 0;
+        for (byte[] frame : frames) {
+            total += frame.length;
+        }
+        byte[] stream = new byte[total];
+        int position = 0;
+        for (byte[] frame : frames) {
+            System.arraycopy(frame, 0, stream, position, frame.length);
+            position += frame.length;
+        }
+        return stream;
+    }
+}
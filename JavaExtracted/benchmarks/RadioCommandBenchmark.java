@@ -0,0 +1,147 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import android.os.Vibrator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Command Benchmark
+ * 
+ * Outbound command path, from packet encoding to the write characteristic:
+ * - buildCommand / calculateChecksum / verifyChecksum: packet encoding
+ * - pressNumber / pressNumberLong: digit dispatch plus the full
+ *   RadioCommandSender -> RadioBluetoothManager.sendCommand() round trip
+ * - sendCommand: the same round trip without the dispatch
+ * - keypadMacro: MACRO_LENGTH key presses, reported per press
+ * 
+ * Commands end in an in-memory write characteristic that copies each
+ * packet, as setValue() and the GATT write do. Allocation per command
+ * comes from -prof gc (gc.alloc.rate.norm).
+ * 
+ * The manager extends framework classes, so the classpath needs an
+ * android.jar that returns default values instead of throwing (the Android
+ * Gradle plugin's mockable jar) at run time; see benchmarks/README.md:
+ *   java -cp "build/benchmarks:$CP:$ANDROID_JAR" org.openjdk.jmh.Main RadioCommandBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadioCommandBenchmark {
+    
+    static final int MACRO_LENGTH = 256;
+    
+    /**
+     * In-memory write characteristic: keeps a copy of the last command
+     */
+    static final class FakeWriteCharacteristic implements RadioBluetoothManager.CommandWriter {
+        final byte[] value = new byte[32];
+        int length;
+        long writes;
+        
+        @Override
+        public boolean write(byte[] command) {
+            System.arraycopy(command, 0, value, 0, command.length);
+            length = command.length;
+            writes++;
+            return true;
+        }
+    }
+    
+    private final int[] digits = new int[MACRO_LENGTH];
+    private int next;
+    
+    private FakeWriteCharacteristic characteristic;
+    private RadioBluetoothManager manager;
+    private RadioCommandSender sender;
+    private byte[] packet;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        RadioLog.setSink((priority, tag, message, error) -> { });
+        RadioLog.setLevel(RadioLog.INFO);
+        
+        Random random = new Random(320);
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = random.nextInt(10);
+        }
+        
+        characteristic = new FakeWriteCharacteristic();
+        manager = new RadioBluetoothManager(characteristic);
+        sender = new RadioCommandSender(manager, (Vibrator) null);
+        packet = RadioProtocolCommands.CMD_NUMBER_5.clone();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RadioLog.setSink(null);
+    }
+    
+    
+    // ==================== ENCODING ====================
+    
+    @Benchmark
+    public byte[] buildCommand() {
+        return RadioProtocolCommands.buildCommand(RadioProtocolCommands.COMMAND_TYPE_BUTTON, (byte) nextDigit());
+    }
+    
+    @Benchmark
+    public byte calculateChecksum() {
+        return RadioProtocolCommands.calculateChecksum(packet, 0, packet.length - 1);
+    }
+    
+    @Benchmark
+    public boolean verifyChecksum() {
+        return RadioProtocolCommands.verifyChecksum(packet);
+    }
+    
+    
+    // ==================== DISPATCH & SEND ====================
+    
+    @Benchmark
+    public boolean pressNumber() {
+        return sender.pressNumber(nextDigit());
+    }
+    
+    @Benchmark
+    public boolean pressNumberLong() {
+        return sender.pressNumberLong(nextDigit());
+    }
+    
+    @Benchmark
+    public boolean sendCommand() {
+        return sender.sendCommand(RadioProtocolCommands.CMD_NUMBER_5);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(MACRO_LENGTH)
+    public long keypadMacro() {
+        for (int digit : digits) {
+            sender.pressNumber(digit);
+        }
+        return characteristic.writes;
+    }
+    
+    private int nextDigit() {
+        int digit = digits[next];
+        next = (next + 1) & (MACRO_LENGTH - 1);
+        return digit;
+    }
+}
@@ -0,0 +1,145 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Hex Codec Benchmark
+ * 
+ * RadioHexCodec against the per-character conversions it replaced
+ * (copied here as legacy* methods). size is the number of bytes per
+ * conversion: 8 and 64 cover single packets, 4096 a long capture dump.
+ * 
+ * Run with the JMH runner, built as in benchmarks/README.md:
+ *   java -cp "build/benchmarks:$CP" org.openjdk.jmh.Main RadioHexCodecBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadioHexCodecBenchmark {
+    
+    @Param({"8", "64", "4096"})
+    public int size;
+    
+    private byte[] bytes;
+    private String hex;
+    private String text;
+    
+    // Caller-supplied targets for the allocation-free forms
+    private char[] charTarget;
+    private byte[] byteTarget;
+    private StringBuilder textTarget;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(320);
+        bytes = new byte[size];
+        random.nextBytes(bytes);
+        hex = RadioHexCodec.toHex(bytes, true);
+        
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) (0x20 + random.nextInt(0x5F));
+        }
+        text = new String(chars);
+        
+        charTarget = new char[size * 2];
+        byteTarget = new byte[size];
+        textTarget = new StringBuilder(size);
+    }
+    
+    
+    // ==================== BYTES TO HEX ====================
+    
+    @Benchmark
+    public String legacyBytesToHex() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02X", b & 0xFF));
+        }
+        return sb.toString();
+    }
+    
+    @Benchmark
+    public String codecToHex() {
+        return RadioHexCodec.toHex(bytes, true);
+    }
+    
+    @Benchmark
+    public char[] codecEncodeIntoCharArray() {
+        RadioHexCodec.encode(bytes, 0, bytes.length, charTarget, 0, true);
+        return charTarget;
+    }
+    
+    
+    // ==================== HEX TO BYTES ====================
+    
+    @Benchmark
+    public byte[] legacyHexStringToBytes() {
+        int len = hex.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
+                    + Character.digit(hex.charAt(i + 1), 16));
+        }
+        return data;
+    }
+    
+    @Benchmark
+    public byte[] codecDecodeIntoByteArray() {
+        RadioHexCodec.decode(hex, 0, hex.length(), byteTarget, 0);
+        return byteTarget;
+    }
+    
+    
+    // ==================== HEX TO ASCII ====================
+    
+    @Benchmark
+    public String legacyHexToAscii() {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < hex.length(); i += 2) {
+            String str = hex.substring(i, i + 2);
+            int charCode = Integer.parseInt(str, 16);
+            output.append((char) charCode);
+        }
+        return output.toString();
+    }
+    
+    @Benchmark
+    public StringBuilder codecHexToAscii() {
+        textTarget.setLength(0);
+        return RadioHexCodec.appendAscii(textTarget, hex, 0, hex.length());
+    }
+    
+    
+    // ==================== ASCII TO HEX ====================
+    
+    @Benchmark
+    public String legacyAsciiToHex() {
+        StringBuilder sb = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            sb.append(String.format("%02X", (int) c));
+        }
+        return sb.toString();
+    }
+    
+    @Benchmark
+    public String codecAsciiToHex() {
+        return RadioProtocolHandler.asciiToHex(text);
+    }
+}
@@ -0,0 +1,148 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Log Benchmark
+ * 
+ * Per-frame logging cost on the receive path, old style against RadioLog.
+ * Runs on a plain JVM: messages go to a sink that only hands them to a
+ * Blackhole, so the numbers show the cost of building them.
+ * 
+ * logMode:
+ * - off: debug logging disabled (the production case)
+ * - sampled: debug logging on, 1 in 64 frames per opcode
+ * - all: debug logging on for every frame
+ * 
+ * Run with the JMH runner, built as in benchmarks/README.md:
+ *   java -cp "build/benchmarks:$CP" org.openjdk.jmh.Main RadioLogBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadioLogBenchmark {
+    
+    private static final String TAG = "RadioLogBenchmark";
+    
+    /**
+     * Detailed frequency packet (ab0901, short layout) as captured in
+     * "Messages From RF320.txt", one of the most frequent frames
+     */
+    private static final byte[] PACKET = RadioProtocolHandler.hexStringToBytes("AB090106927A0200001300DC");
+    
+    @Param({"off", "sampled", "all"})
+    public String logMode;
+    
+    private RadioProtocolHandler handler;
+    private final RadioStubListener listener = new RadioStubListener();
+    private Blackhole blackhole;
+    
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        RadioLog.setSink((priority, tag, message, error) -> this.blackhole.consume(message));
+        switch (logMode) {
+            case "sampled":
+                RadioLog.setLevel(RadioLog.DEBUG);
+                RadioLog.setSampleRate(64);
+                break;
+            case "all":
+                RadioLog.setLevel(RadioLog.DEBUG);
+                RadioLog.setSampleRate(1);
+                break;
+            default:
+                RadioLog.setLevel(RadioLog.INFO);
+                RadioLog.setSampleRate(1);
+                break;
+        }
+        handler = new RadioProtocolHandler();
+        handler.setStatusListener(listener);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        blackhole.consume(listener.checksum);
+        RadioLog.setSink(null);
+        RadioLog.setLevel(RadioLog.INFO);
+        RadioLog.setSampleRate(1);
+    }
+    
+    
+    // ==================== RECEIVE CALLBACK ====================
+    
+    /**
+     * Old onCharacteristicChanged: the hex string was built for every
+     * notification and dropped by Log.d when debug was off
+     */
+    @Benchmark
+    public void legacyDataReceivedLog() {
+        String message = "Data received: " + legacyBytesToHex(PACKET);
+        if (RadioLog.isDebugEnabled()) {
+            blackhole.consume(message);
+        }
+    }
+    
+    /**
+     * onCharacteristicChanged with RadioLog: hex is only rendered when
+     * debug logging is on
+     */
+    @Benchmark
+    public void facadeDataReceivedLog() {
+        RadioLog.dHex(TAG, "Data received: ", PACKET);
+    }
+    
+    
+    // ==================== PARSING ====================
+    
+    /**
+     * Old per-frame parser logging: both messages were built for every
+     * frame, whatever the log level
+     */
+    @Benchmark
+    public void legacyParserLog() {
+        blackhole.consume("Parsing data: " + legacyBytesToHex(PACKET));
+        blackhole.consume(String.format("Detailed freq: idx=0x%02X mode=0x%02X freq=%s param=0x%02X",
+                0x01, 0x06, "927A02000013", 0x00));
+    }
+    
+    /**
+     * Full parse of one frame with the handler's sampled RadioLog output
+     */
+    @Benchmark
+    public void parseFrame() {
+        handler.parseReceivedData(PACKET);
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    /**
+     * RadioProtocolCommands.bytesToHex() as it was before RadioHexCodec,
+     * kept here so the legacy cases still measure the old formatting
+     */
+    private static String legacyBytesToHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02X", b & 0xFF));
+        }
+        return sb.toString();
+    }
+}
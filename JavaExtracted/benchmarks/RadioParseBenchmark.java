@@ -0,0 +1,104 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radio Parse Benchmark
+ * 
+ * Inbound parsing baseline over the recorded RF320 corpus: each invocation
+ * passes the next corpus frame to RadioProtocolHandler.parseReceivedData(),
+ * cycling through the frames of one opcode or through the realistic mix
+ * (see RadioBenchmarkCorpus). Listeners are stubbed and logging goes to a
+ * no-op sink, so it runs on a plain JVM without Android.
+ * 
+ * - framesPerSecond: throughput
+ * - timePerFrame: average time per frame
+ * - allocation per frame: run with -prof gc and read gc.alloc.rate.norm
+ * 
+ * forwardAll=true turns the change filter off, so every parsed value
+ * reaches the listener as it would for the first frames after connecting.
+ * 
+ * Run from the repository root with the JMH runner, built as in
+ * benchmarks/README.md:
+ *   java -cp "build/benchmarks:$CP" org.openjdk.jmh.Main RadioParseBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadioParseBenchmark {
+    
+    /** "mix" or an opcode (byte 1) in hex */
+    @Param({"mix", "02", "03", "04", "05", "06", "07", "08", "09", "0B", "0D", "0E", "10", "11"})
+    public String opcode;
+    
+    @Param({"false", "true"})
+    public boolean forwardAll;
+    
+    private byte[][] frames;
+    private int next;
+    private RadioProtocolHandler handler;
+    private RadioStubListener listener;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        RadioLog.setSink((priority, tag, message, error) -> { });
+        RadioLog.setLevel(RadioLog.INFO);
+        
+        List<byte[]> corpus = RadioBenchmarkCorpus.frames();
+        List<byte[]> selected = "mix".equals(opcode)
+                ? RadioBenchmarkCorpus.notificationMix(corpus, RadioBenchmarkCorpus.captureRecords())
+                : RadioBenchmarkCorpus.framesWithOpcode(corpus, Integer.parseInt(opcode, 16));
+        if (selected.isEmpty()) {
+            throw new IllegalStateException("No corpus frames for " + opcode);
+        }
+        frames = selected.toArray(new byte[0][]);
+        
+        listener = new RadioStubListener();
+        handler = new RadioProtocolHandler();
+        handler.setStatusListener(listener);
+        handler.getChangeFilter().setForwardAll(forwardAll);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RadioLog.setSink(null);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long framesPerSecond() {
+        return parseNext();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long timePerFrame() {
+        return parseNext();
+    }
+    
+    private long parseNext() {
+        byte[] frame = frames[next];
+        next = next + 1 == frames.length ? 0 : next + 1;
+        handler.parseReceivedData(frame);
+        return listener.checksum;
+    }
+}
@@ -0,0 +1,71 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatus;
+import com.myhomesmartlife.bluetooth.CleanedUp.RadioProtocolHandler.RadioStatusListener;
+
+/**
+ * Radio Stub Listener
+ * 
+ * Listener for benchmarks: folds every callback into a checksum, so the
+ * JIT cannot drop the parsing work, without allocating or touching
+ * Android classes.
+ */
+final class RadioStubListener implements RadioStatusListener {
+    
+    long callbacks;
+    long checksum;
+    
+    @Override
+    public void onFrequencyChanged(long frequencyHz, byte band) {
+        callbacks++;
+        checksum += frequencyHz + band;
+    }
+    
+    @Override
+    public void onVolumeChanged(int volume) {
+        callbacks++;
+        checksum += volume;
+    }
+    
+    @Override
+    public void onSignalStrengthChanged(int strength) {
+        callbacks++;
+        checksum += strength;
+    }
+    
+    @Override
+    public void onStatusUpdate(RadioStatus status) {
+        callbacks++;
+        checksum += status.frequencyHz + status.flags;
+    }
+    
+    @Override
+    public void onDeviceInfo(String deviceInfo) {
+        callbacks++;
+        checksum += deviceInfo.length();
+    }
+    
+    @Override
+    public void onLockStatusChanged(boolean isLocked) {
+        callbacks++;
+        checksum += isLocked ? 1 : 0;
+    }
+    
+    @Override
+    public void onRecordingStatusChanged(boolean isRecording, int recordIndex) {
+        callbacks++;
+        checksum += recordIndex;
+    }
+    
+    @Override
+    public void onBatteryLevel(int batteryPercent) {
+        callbacks++;
+        checksum += batteryPercent;
+    }
+    
+    @Override
+    public void onChannelDisplay(CharSequence channelText) {
+        callbacks++;
+        checksum += channelText.length();
+    }
+}
@@ -0,0 +1,267 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Radio Flight Recorder
+ * 
+ * RadioTracer that emits JDK Flight Recorder events, for a continuous
+ * low-overhead recording of the hot path instead of debug logging:
+ * - com.myhomesmartlife.radio.FrameReceived (onCharacteristicChanged)
+ * - com.myhomesmartlife.radio.FrameParsed (parseReceivedData)
+ * - com.myhomesmartlife.radio.ListenerCallback (listener fan-out)
+ * - com.myhomesmartlife.radio.CommandSent (sendCommand)
+ * - com.myhomesmartlife.radio.CommandWritten (sendCommand until
+ *   onCharacteristicWrite)
+ * 
+ * Each event carries the device address, opcode and length. Events are
+ * disabled until a recording enables them (e.g. -XX:StartFlightRecording
+ * with a .jfc that turns them on, or Recording.enable(name)); while
+ * disabled begin() checks a cached EventType and returns null, so nothing
+ * is allocated. Stack traces are off by default to keep enabled events
+ * cheap.
+ * 
+ * jdk.jfr is not part of Android, so this lives with the desktop tools
+ * rather than the app sources.
+ * 
+ * Usage:
+ *   RadioFlightRecorder tracer = new RadioFlightRecorder();
+ *   manager.setTracer(tracer);
+ *   handler.setTracer(tracer, manager.getDeviceAddress());
+ * 
+ *   java ... RadioFlightRecorder docs/BIDIRECTIONAL_CAPTURE.txt radio.jfr
+ *   jfr print --events FrameParsed radio.jfr
+ */
+public class RadioFlightRecorder implements RadioTracer {
+    
+    private static final String TAG = "RadioFlightRecorder";
+    
+    static {
+        FlightRecorder.register(FrameReceivedEvent.class);
+        FlightRecorder.register(FrameParsedEvent.class);
+        FlightRecorder.register(ListenerCallbackEvent.class);
+        FlightRecorder.register(CommandSentEvent.class);
+        FlightRecorder.register(CommandWrittenEvent.class);
+    }
+    
+    // Cached so a disabled event type is rejected without allocating
+    private static final EventType[] TYPES = {
+        EventType.getEventType(FrameReceivedEvent.class),
+        EventType.getEventType(FrameParsedEvent.class),
+        EventType.getEventType(ListenerCallbackEvent.class),
+        EventType.getEventType(CommandSentEvent.class),
+        EventType.getEventType(CommandWrittenEvent.class)
+    };
+    
+    
+    // ==================== EVENTS ====================
+    
+    /**
+     * Fields shared by all radio events
+     */
+    abstract static class RadioEvent extends Event {
+        @Label("Device Address")
+        String deviceAddress;
+        
+        @Label("Opcode")
+        @Description("Byte 1 of the frame or command, -1 if too short")
+        int opcode;
+        
+        @Label("Length")
+        @Description("Bytes in the notification, frame or command")
+        int length;
+    }
+    
+    @Name("com.myhomesmartlife.radio.FrameReceived")
+    @Label("Frame Received")
+    @Description("One notification delivered by onCharacteristicChanged")
+    @Category({"Radio", "Receive"})
+    @StackTrace(false)
+    static final class FrameReceivedEvent extends RadioEvent {
+    }
+    
+    @Name("com.myhomesmartlife.radio.FrameParsed")
+    @Label("Frame Parsed")
+    @Description("One frame parsed by RadioProtocolHandler")
+    @Category({"Radio", "Receive"})
+    @StackTrace(false)
+    static final class FrameParsedEvent extends RadioEvent {
+    }
+    
+    @Name("com.myhomesmartlife.radio.ListenerCallback")
+    @Label("Listener Callback")
+    @Description("One callback fanned out to the subscribed listeners")
+    @Category({"Radio", "Receive"})
+    @StackTrace(false)
+    static final class ListenerCallbackEvent extends RadioEvent {
+        @Label("Callback")
+        String callback;
+    }
+    
+    @Name("com.myhomesmartlife.radio.CommandSent")
+    @Label("Command Sent")
+    @Description("One sendCommand call")
+    @Category({"Radio", "Send"})
+    @StackTrace(false)
+    static final class CommandSentEvent extends RadioEvent {
+        @Label("Initiated")
+        @Description("Whether the GATT write was started")
+        boolean initiated;
+    }
+    
+    @Name("com.myhomesmartlife.radio.CommandWritten")
+    @Label("Command Written")
+    @Description("A command from sendCommand until onCharacteristicWrite")
+    @Category({"Radio", "Send"})
+    @StackTrace(false)
+    static final class CommandWrittenEvent extends RadioEvent {
+        @Label("GATT Status")
+        int status;
+    }
+    
+    
+    // ==================== TRACER ====================
+    
+    @Override
+    public Object begin(int type) {
+        if (!TYPES[type].isEnabled()) {
+            return null;
+        }
+        RadioEvent event;
+        switch (type) {
+            case RECEIVE:
+                event = new FrameReceivedEvent();
+                break;
+            case PARSE:
+                event = new FrameParsedEvent();
+                break;
+            case CALLBACK:
+                event = new ListenerCallbackEvent();
+                break;
+            case SEND:
+                event = new CommandSentEvent();
+                break;
+            default:
+                event = new CommandWrittenEvent();
+                break;
+        }
+        event.begin();
+        return event;
+    }
+    
+    @Override
+    public void end(Object token, String deviceAddress, int opcode, int length, int detail) {
+        RadioEvent event = (RadioEvent) token;
+        event.end();
+        if (!event.shouldCommit()) {
+            return; // Below the recording's duration threshold
+        }
+        event.deviceAddress = deviceAddress;
+        event.opcode = opcode;
+        event.length = length;
+        if (event instanceof ListenerCallbackEvent) {
+            ((ListenerCallbackEvent) event).callback = RadioChangeFilter.getFieldName(detail);
+        } else if (event instanceof CommandSentEvent) {
+            ((CommandSentEvent) event).initiated = detail != 0;
+        } else if (event instanceof CommandWrittenEvent) {
+            ((CommandWrittenEvent) event).status = detail;
+        }
+        event.commit();
+    }
+    
+    
+    // ==================== COMMAND LINE ====================
+    
+    /**
+     * Parse a capture and send a few commands with every radio event
+     * enabled, and dump the recording
+     * 
+     * RadioBluetoothManager needs android.bluetooth, so the capture is
+     * traced here the way its callbacks would: each notification as
+     * received and handed to the handler, each command as a write that
+     * starts and completes with GATT_SUCCESS.
+     * 
+     * Usage: RadioFlightRecorder <capture.txt> <output.jfr>
+     */
+    public static void main(String[] args) throws IOException {
+        RadioLog.setSink((priority, tag, message, error) -> System.err.println(tag + ": " + message));
+        if (args.length < 2) {
+            System.err.println("Usage: RadioFlightRecorder <capture.txt> <output.jfr>");
+            System.exit(2);
+        }
+        File file = new File(args[0]);
+        List<RadioCaptureReader.Record> records = RadioCaptureReader.readRecords(file);
+        if (records.isEmpty()) {
+            records = RadioCaptureReader.toRecords(RadioCaptureReader.readFrames(file), 0);
+        } else {
+            File frames = new File(file.getAbsoluteFile().getParentFile(), "Messages From RF320.txt");
+            if (frames.isFile()) {
+                records = RadioCaptureReader.completeValues(records, RadioCaptureReader.readFrames(frames));
+            }
+        }
+        String address = "00:00:00:00:00:00";
+        RadioFlightRecorder tracer = new RadioFlightRecorder();
+        
+        try (Recording recording = new Recording()) {
+            for (EventType type : TYPES) {
+                recording.enable(type.getName()).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            
+            RadioProtocolHandler handler = new RadioProtocolHandler();
+            handler.setStatusListener(new RadioListenerRegistry()); // Empty: wants every field, calls nobody
+            handler.setTracer(tracer, address);
+            
+            int notifications = 0;
+            int commands = 0;
+            for (RadioCaptureReader.Record record : records) {
+                if (record.fromRadio) {
+                    Object trace = tracer.begin(RECEIVE);
+                    handler.onNotificationReceived(record.value);
+                    if (trace != null) {
+                        tracer.end(trace, address, opcodeOf(record.value), record.value.length, 0);
+                    }
+                    notifications++;
+                } else {
+                    traceCommand(tracer, address, record.value);
+                    commands++;
+                }
+            }
+            
+            recording.stop();
+            recording.dump(Path.of(args[1]));
+            System.err.println(TAG + ": " + notifications + " notifications, " + commands
+                    + " commands recorded to " + args[1]);
+        }
+    }
+    
+    private static void traceCommand(RadioTracer tracer, String address, byte[] command) {
+        int opcode = opcodeOf(command);
+        Object send = tracer.begin(SEND);
+        Object write = tracer.begin(WRITE);
+        if (write != null) {
+            tracer.end(write, address, opcode, command.length, 0); // GATT_SUCCESS
+        }
+        if (send != null) {
+            tracer.end(send, address, opcode, command.length, 1);
+        }
+    }
+    
+    private static int opcodeOf(byte[] data) {
+        return data.length > 1 ? data[1] & 0xFF : -1;
+    }
+}
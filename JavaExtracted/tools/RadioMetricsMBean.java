@@ -0,0 +1,189 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Radio Metrics MBean
+ * 
+ * Exposes a RadioMetrics registry over JMX as read-only attributes:
+ * - FramesTotal, Frames_XX (per opcode XX seen so far), UnknownFrames,
+ *   ParseErrors, ChecksumFailures, ListenerErrors
+ * - CommandsSentTotal, CommandsSent_<CMD_NAME> (per constant),
+ *   CommandsRejected, WriteFailures
+ * - ParseLatency* and DispatchLatency*: Count, MeanNanos, P50Nanos,
+ *   P90Nanos, P99Nanos, P999Nanos, MaxNanos
+ * 
+ * The attribute list is rebuilt each time a client asks for the MBean
+ * info, so newly seen opcodes appear on the next refresh.
+ * 
+ * javax.management is not part of Android, so this lives with the
+ * desktop tools rather than the app sources.
+ * 
+ * Usage:
+ *   RadioMetrics metrics = new RadioMetrics();
+ *   handler.setMetrics(metrics);
+ *   ObjectName name = RadioMetricsMBean.register(metrics, "radio-1");
+ */
+public class RadioMetricsMBean implements DynamicMBean {
+    
+    private static final String TAG = "RadioMetricsMBean";
+    
+    /** JMX domain of the registered MBeans */
+    public static final String DOMAIN = "com.myhomesmartlife.radio";
+    
+    private final RadioMetrics metrics;
+    private volatile Map<String, Supplier<Object>> attributes;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    public RadioMetricsMBean(RadioMetrics metrics) {
+        this.metrics = metrics;
+        this.attributes = buildAttributes();
+    }
+    
+    
+    // ==================== REGISTRATION ====================
+    
+    /**
+     * Register a registry with the platform MBean server
+     * 
+     * @param metrics Registry to expose
+     * @param name Value of the "name" key, e.g. the radio's address
+     * @return Name the MBean was registered under
+     * @throws JMException If the name is invalid or already registered
+     */
+    public static ObjectName register(RadioMetrics metrics, String name) throws JMException {
+        ObjectName objectName = objectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new RadioMetricsMBean(metrics), objectName);
+        RadioLog.i(TAG, "Registered {}", objectName);
+        return objectName;
+    }
+    
+    /**
+     * Remove a registry registered with register()
+     */
+    public static void unregister(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName(name));
+        } catch (InstanceNotFoundException e) {
+            RadioLog.w(TAG, "Not registered: {}", name);
+        }
+    }
+    
+    static ObjectName objectName(String name) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+    }
+    
+    
+    // ==================== ATTRIBUTES ====================
+    
+    private Map<String, Supplier<Object>> buildAttributes() {
+        Map<String, Supplier<Object>> map = new LinkedHashMap<>();
+        map.put("FramesTotal", metrics::getFramesTotal);
+        for (int opcode : metrics.getSeenOpcodes()) {
+            map.put(String.format(Locale.ROOT, "Frames_%02X", opcode), () -> metrics.getFrames(opcode));
+        }
+        map.put("UnknownFrames", metrics::getUnknownFrames);
+        map.put("ParseErrors", metrics::getParseErrors);
+        map.put("ChecksumFailures", metrics::getChecksumFailures);
+        map.put("ListenerErrors", metrics::getListenerErrors);
+        
+        map.put("CommandsSentTotal", metrics::getCommandsSentTotal);
+        String[] commands = RadioMetrics.getCommandNames();
+        for (int i = 0; i < commands.length; i++) {
+            int index = i;
+            map.put("CommandsSent_" + commands[i].replace('/', '_'), () -> metrics.getCommandsSent(index));
+        }
+        map.put("CommandsRejected", metrics::getCommandsRejected);
+        map.put("WriteFailures", metrics::getWriteFailures);
+        
+        putHistogram(map, "ParseLatency", metrics.getParseLatency());
+        putHistogram(map, "DispatchLatency", metrics.getDispatchLatency());
+        return map;
+    }
+    
+    private static void putHistogram(Map<String, Supplier<Object>> map, String prefix, RadioLatencyHistogram histogram) {
+        map.put(prefix + "Count", histogram::getCount);
+        map.put(prefix + "MeanNanos", histogram::getMean);
+        map.put(prefix + "P50Nanos", () -> histogram.getPercentile(0.50));
+        map.put(prefix + "P90Nanos", () -> histogram.getPercentile(0.90));
+        map.put(prefix + "P99Nanos", () -> histogram.getPercentile(0.99));
+        map.put(prefix + "P999Nanos", () -> histogram.getPercentile(0.999));
+        map.put(prefix + "MaxNanos", histogram::getMax);
+    }
+    
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Object> supplier = attributes.get(attribute);
+        if (supplier == null) {
+            // May be an opcode first seen since the last refresh
+            attributes = buildAttributes();
+            supplier = attributes.get(attribute);
+        }
+        if (supplier == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return supplier.get();
+    }
+    
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // Left out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+    
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Supplier<Object>> current = buildAttributes();
+        attributes = current;
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[current.size()];
+        int i = 0;
+        for (Map.Entry<String, Supplier<Object>> entry : current.entrySet()) {
+            String type = entry.getKey().endsWith("MeanNanos") ? "double" : "long";
+            infos[i++] = new MBeanAttributeInfo(entry.getKey(), type, entry.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "RF320 protocol metrics", infos, null, null, null);
+    }
+    
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only: " + attribute.getName());
+    }
+    
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+    
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+}
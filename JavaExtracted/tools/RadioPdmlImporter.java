@@ -0,0 +1,346 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Radio PDML Importer
+ * 
+ * Streams ATT notifications and writes out of Wireshark PDML exports
+ * (File > Export Packet Dissections > As PDML, e.g. docs/BTDump.pdml)
+ * with StAX, one packet at a time, so memory stays constant whatever the
+ * size of the capture.
+ * 
+ * Per packet it reads frame.number, frame.time_relative, btatt.opcode,
+ * btatt.handle and btatt.value, and yields a RadioCaptureReader.Record:
+ * - Handle Value Notification / Indication: fromRadio = true
+ * - Write Request / Write Command: fromRadio = false
+ * Other ATT traffic (discovery, errors, write responses) is skipped.
+ * 
+ * javax.xml.stream is not part of Android, so this lives with the
+ * desktop tools rather than the app sources.
+ * 
+ * Usage:
+ *   try (RadioPdmlImporter importer = new RadioPdmlImporter(in)) {
+ *       while (importer.hasNext()) {
+ *           RadioCaptureReader.Record record = importer.next();
+ *       }
+ *   }
+ *   RadioPdmlImporter.importTo(in, RadioPdmlImporter.toHandler(handler));
+ */
+public final class RadioPdmlImporter implements Iterator<RadioCaptureReader.Record>, Closeable {
+    
+    private static final String TAG = "RadioPdmlImporter";
+    
+    // ATT opcodes (Bluetooth Core Spec Vol 3 Part F 3.4.8)
+    public static final int ATT_WRITE_REQUEST = 0x12;
+    public static final int ATT_HANDLE_VALUE_NOTIFICATION = 0x1B;
+    public static final int ATT_HANDLE_VALUE_INDICATION = 0x1D;
+    public static final int ATT_WRITE_COMMAND = 0x52;
+    
+    private static final XMLInputFactory FACTORY = createFactory();
+    
+    
+    // ==================== RECORD SINK ====================
+    
+    /**
+     * Receives imported records in capture order
+     */
+    public interface RecordSink {
+        void onRecord(RadioCaptureReader.Record record);
+    }
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    private final InputStream input;
+    private final XMLStreamReader reader;
+    private RadioCaptureReader.Record pending;
+    private long packets;
+    
+    // Fields of the packet being read
+    private int frameNumber;
+    private long timeNanos;
+    private int attOpcode;
+    private int handle;
+    private String value;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    /**
+     * Start importing a PDML stream
+     * 
+     * @param input PDML document, closed by close()
+     * @throws IOException If the document cannot be opened as XML
+     */
+    public RadioPdmlImporter(InputStream input) throws IOException {
+        this.input = input;
+        try {
+            this.reader = FACTORY.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot read PDML", e);
+        }
+    }
+    
+    /**
+     * Start importing a PDML file
+     */
+    public RadioPdmlImporter(File file) throws IOException {
+        this(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+    }
+    
+    
+    // ==================== ITERATION ====================
+    
+    /**
+     * Check for another record, reading ahead to the next ATT value
+     * 
+     * @throws IllegalStateException If the document is not well-formed
+     */
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            try {
+                pending = readRecord();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("Malformed PDML after " + packets + " packets", e);
+            }
+        }
+        return pending != null;
+    }
+    
+    @Override
+    public RadioCaptureReader.Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        RadioCaptureReader.Record record = pending;
+        pending = null;
+        return record;
+    }
+    
+    /**
+     * Number of packets read so far, including skipped ones
+     */
+    public long getPacketCount() {
+        return packets;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            RadioLog.w(TAG, "Error closing PDML reader: {}", e.getMessage());
+        }
+        input.close();
+    }
+    
+    
+    // ==================== SINKS ====================
+    
+    /**
+     * Import a whole PDML stream into a sink in one pass
+     * 
+     * @param input PDML document, closed when done
+     * @param sink Receives every record
+     * @return Number of records delivered
+     * @throws IOException If reading fails or the document is malformed
+     */
+    public static long importTo(InputStream input, RecordSink sink) throws IOException {
+        long records = 0;
+        try (RadioPdmlImporter importer = new RadioPdmlImporter(input)) {
+            while (importer.hasNext()) {
+                sink.onRecord(importer.next());
+                records++;
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e.getCause());
+        }
+        return records;
+    }
+    
+    /**
+     * Sink that feeds notifications to a handler as the GATT callback
+     * would; writes are ignored
+     */
+    public static RecordSink toHandler(RadioProtocolHandler handler) {
+        return record -> {
+            if (record.fromRadio) {
+                handler.onNotificationReceived(record.value);
+            }
+        };
+    }
+    
+    
+    // ==================== PARSING ====================
+    
+    /**
+     * Read packets until one carries an ATT notification or write value
+     * 
+     * @return The record, or null at the end of the document
+     */
+    private RadioCaptureReader.Record readRecord() throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if ("field".equals(element)) {
+                    readField();
+                } else if ("packet".equals(element)) {
+                    frameNumber = -1;
+                    timeNanos = 0;
+                    attOpcode = -1;
+                    handle = -1;
+                    value = null;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "packet".equals(reader.getLocalName())) {
+                packets++;
+                RadioCaptureReader.Record record = toRecord();
+                if (record != null) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private void readField() {
+        String name = reader.getAttributeValue(null, "name");
+        if (name == null) {
+            return;
+        }
+        try {
+            switch (name) {
+                case "frame.number":
+                    frameNumber = Integer.parseInt(reader.getAttributeValue(null, "show"));
+                    break;
+                case "frame.time_relative":
+                    timeNanos = Math.round(Double.parseDouble(reader.getAttributeValue(null, "show")) * 1e9);
+                    break;
+                case "btatt.opcode":
+                    attOpcode = parseShowInt(reader.getAttributeValue(null, "show"));
+                    break;
+                case "btatt.handle":
+                    handle = parseShowInt(reader.getAttributeValue(null, "show"));
+                    break;
+                case "btatt.value":
+                    value = reader.getAttributeValue(null, "value");
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException | NullPointerException e) {
+            RadioLog.w(TAG, "Skipping malformed {} field", name);
+        }
+    }
+    
+    /**
+     * Turn the fields of the finished packet into a record
+     * 
+     * @return The record, or null if the packet carries no usable value
+     */
+    private RadioCaptureReader.Record toRecord() {
+        if (value == null) {
+            return null;
+        }
+        boolean fromRadio;
+        switch (attOpcode) {
+            case ATT_HANDLE_VALUE_NOTIFICATION:
+            case ATT_HANDLE_VALUE_INDICATION:
+                fromRadio = true;
+                break;
+            case ATT_WRITE_REQUEST:
+            case ATT_WRITE_COMMAND:
+                fromRadio = false;
+                break;
+            default:
+                return null;
+        }
+        try {
+            return new RadioCaptureReader.Record(frameNumber, timeNanos, handle, fromRadio, RadioHexCodec.fromHex(value));
+        } catch (IllegalArgumentException e) {
+            RadioLog.w(TAG, "Skipping frame {}: bad value", frameNumber);
+            return null;
+        }
+    }
+    
+    
+    // ==================== HELPER METHODS ====================
+    
+    /**
+     * Parse a "show" attribute such as "0x000e" or "27"
+     */
+    private static int parseShowInt(String text) {
+        if (text.startsWith("0x") || text.startsWith("0X")) {
+            return Integer.parseInt(text.substring(2), 16);
+        }
+        return Integer.parseInt(text);
+    }
+    
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // PDML needs neither; refusing them keeps untrusted exports from pulling in external files
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+    
+    
+    // ==================== COMMAND LINE ====================
+    
+    /**
+     * Convert a PDML export to the annotated capture format read by
+     * RadioCaptureReader.readRecords() and RadioCaptureReplay
+     * 
+     * Usage: RadioPdmlImporter <capture.pdml> [output.txt]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RadioPdmlImporter <capture.pdml> [output.txt]");
+            System.exit(2);
+        }
+        RadioLog.setSink((priority, tag, message, error) -> System.err.println(tag + ": " + message));
+        
+        PrintStream out = args.length > 1 ? new PrintStream(new File(args[1]), "UTF-8") : System.out;
+        long notifications = 0;
+        long writes = 0;
+        try (RadioPdmlImporter importer = new RadioPdmlImporter(new File(args[0]))) {
+            while (importer.hasNext()) {
+                RadioCaptureReader.Record record = importer.next();
+                out.println();
+                out.println("Frame     : " + record.frameNumber);
+                out.println(String.format("Time      : %d.%09d", record.timeNanos / 1_000_000_000L, record.timeNanos % 1_000_000_000L));
+                out.println("Direction :  " + (record.fromRadio ? "RECV" : "SENT"));
+                out.println(String.format("Handle    : 0x%04x (%s)", record.handle,
+                        record.fromRadio ? "NOTIFY - RADIO SENDS" : "WRITE - APP SENDS"));
+                out.println("Value     : " + RadioHexCodec.toHex(record.value, true));
+                if (record.fromRadio) {
+                    notifications++;
+                } else {
+                    writes++;
+                }
+            }
+            System.err.println(TAG + ": " + importer.getPacketCount() + " packets, "
+                    + notifications + " notifications, " + writes + " writes");
+        } finally {
+            if (out != System.out) {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.myhomesmartlife.bluetooth.CleanedUp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Radio Prometheus Endpoint
+ * 
+ * Serves a RadioMetrics registry at /metrics in the Prometheus text
+ * exposition format (version 0.0.4):
+ * - radio_frames_total{opcode}: frames parsed by RadioProtocolHandler,
+ *   per opcode seen so far; radio_unknown_frames_total,
+ *   radio_parse_errors_total, radio_checksum_failures_total,
+ *   radio_listener_errors_total
+ * - radio_commands_sent_total{command}: writes started by
+ *   RadioBluetoothManager, per RadioProtocolCommands.CMD_* constant;
+ *   radio_commands_rejected_total, radio_write_failures_total
+ * - radio_connection_state_transitions_total{state}: per
+ *   RadioBluetoothManager.ConnectionState
+ * - radio_reconnects_total, radio_restarts_total
+ * - radio_parse_latency_seconds, radio_dispatch_latency_seconds:
+ *   histograms with buckets from about 1 us to 17 s
+ * 
+ * Every name, label and bucket bound is encoded once at construction,
+ * and a scrape renders numbers straight into a reused byte buffer, so
+ * scraping every few seconds creates no garbage on the radio host beyond
+ * what the HTTP server itself needs per request. The buffer only grows if
+ * a scrape outgrows it (e.g. new opcodes), and then keeps its size.
+ * 
+ * com.sun.net.httpserver is not part of Android, so this lives with the
+ * desktop tools rather than the app sources.
+ * 
+ * Usage:
+ *   RadioMetrics metrics = new RadioMetrics();
+ *   handler.setMetrics(metrics);
+ *   manager.setMetrics(metrics);
+ *   RadioPrometheusEndpoint endpoint = new RadioPrometheusEndpoint(metrics);
+ *   endpoint.start(RadioPrometheusEndpoint.DEFAULT_PORT);
+ * 
+ *   java ... RadioPrometheusEndpoint 9320 docs/BIDIRECTIONAL_CAPTURE.txt
+ *   curl http://localhost:9320/metrics
+ */
+public class RadioPrometheusEndpoint {
+    
+    private static final String TAG = "RadioPrometheusEndpoint";
+    
+    /** Default TCP port */
+    public static final int DEFAULT_PORT = 9320;
+    
+    /** Path the metrics are served at */
+    public static final String PATH = "/metrics";
+    
+    /** Content type of the text exposition format */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    
+    // Histogram buckets: the ends of every other power of two, 2^10 - 1 ns
+    // (about 1 us) to 2^34 - 1 ns (about 17 s)
+    private static final int FIRST_BOUND_EXPONENT = 10;
+    private static final int LAST_BOUND_EXPONENT = 34;
+    private static final int BOUND_STEP = 2;
+    
+    private static final byte[] FRAMES_HEADER = header("radio_frames_total", "counter",
+            "Frames parsed, by opcode (byte 1)");
+    private static final byte[] UNKNOWN_FRAMES = counter("radio_unknown_frames_total",
+            "Frames with no parser for their command type");
+    private static final byte[] PARSE_ERRORS = counter("radio_parse_errors_total",
+            "Frames that were too short or that their parser failed on");
+    private static final byte[] CHECKSUM_FAILURES = counter("radio_checksum_failures_total",
+            "Candidate frames rejected by the frame assembler");
+    private static final byte[] LISTENER_ERRORS = counter("radio_listener_errors_total",
+            "Exceptions thrown by listener callbacks");
+    private static final byte[] COMMANDS_HEADER = header("radio_commands_sent_total", "counter",
+            "Command writes started, by command constant");
+    private static final byte[] COMMANDS_REJECTED = counter("radio_commands_rejected_total",
+            "Commands that sendCommand refused or failed to start");
+    private static final byte[] WRITE_FAILURES = counter("radio_write_failures_total",
+            "Command writes that completed with a GATT error");
+    private static final byte[] STATES_HEADER = header("radio_connection_state_transitions_total", "counter",
+            "Transitions into each connection state");
+    private static final byte[] RECONNECTS = counter("radio_reconnects_total",
+            "Reconnects of the same GATT client");
+    private static final byte[] RESTARTS = counter("radio_restarts_total",
+            "GATT clients closed and connected again");
+    
+    
+    // ==================== MEMBER VARIABLES ====================
+    
+    /**
+     * Preencoded text of one histogram
+     */
+    private static final class HistogramText {
+        final byte[] header;
+        final byte[][] buckets; // "name_bucket{le=\"...\"} " per bound, then +Inf
+        final byte[] sum;
+        final byte[] count;
+        
+        HistogramText(String name, String help) {
+            this.header = header(name, "histogram", help);
+            this.buckets = new byte[BOUND_BUCKETS.length + 1][];
+            for (int i = 0; i < BOUND_BUCKETS.length; i++) {
+                long bound = RadioLatencyHistogram.bucketUpperBound(BOUND_BUCKETS[i]);
+                buckets[i] = ascii(name + "_bucket{le=\"" + seconds(bound) + "\"} ");
+            }
+            buckets[BOUND_BUCKETS.length] = ascii(name + "_bucket{le=\"+Inf\"} ");
+            this.sum = ascii(name + "_sum ");
+            this.count = ascii(name + "_count ");
+        }
+    }
+    
+    // RadioLatencyHistogram bucket whose upper bound ends each exported bucket
+    private static final int[] BOUND_BUCKETS = boundBuckets();
+    
+    private static final byte[][] OPCODE_SERIES = new byte[256][];
+    private static final byte[][] COMMAND_SERIES;
+    private static final byte[][] STATE_SERIES;
+    private static final RadioBluetoothManager.ConnectionState[] STATES = RadioBluetoothManager.ConnectionState.values();
+    
+    static {
+        for (int opcode = 0; opcode < OPCODE_SERIES.length; opcode++) {
+            OPCODE_SERIES[opcode] = ascii(String.format(Locale.ROOT, "radio_frames_total{opcode=\"0x%02x\"} ", opcode));
+        }
+        String[] commands = RadioMetrics.getCommandNames();
+        COMMAND_SERIES = new byte[commands.length][];
+        for (int i = 0; i < commands.length; i++) {
+            COMMAND_SERIES[i] = ascii("radio_commands_sent_total{command=\"" + commands[i] + "\"} ");
+        }
+        STATE_SERIES = new byte[STATES.length][];
+        for (int i = 0; i < STATES.length; i++) {
+            STATE_SERIES[i] = ascii("radio_connection_state_transitions_total{state=\"" + STATES[i].name() + "\"} ");
+        }
+    }
+    
+    private static final HistogramText PARSE_LATENCY = new HistogramText("radio_parse_latency_seconds",
+            "Time to parse one notification, including listener callbacks");
+    private static final HistogramText DISPATCH_LATENCY = new HistogramText("radio_dispatch_latency_seconds",
+            "Time to fan one callback out to the listeners");
+    
+    private final RadioMetrics metrics;
+    
+    // Scrape state, guarded by this
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int position;
+    private final byte[] digits = new byte[20];
+    private final long[] bucketCounts = new long[RadioLatencyHistogram.BUCKETS];
+    
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    
+    // ==================== CONSTRUCTOR ====================
+    
+    public RadioPrometheusEndpoint(RadioMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    
+    // ==================== SERVER ====================
+    
+    /**
+     * Serve on a port of every local address
+     * 
+     * @param port TCP port, 0 for any free one
+     * @throws IOException If the port cannot be bound
+     */
+    public void start(int port) throws IOException {
+        start(new InetSocketAddress(port));
+    }
+    
+    /**
+     * Serve on an address, e.g. localhost only
+     * 
+     * @throws IOException If the address cannot be bound
+     * @throws IllegalStateException If already started
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Already serving on port " + getPort());
+        }
+        HttpServer created = HttpServer.create(address, 0);
+        created.createContext(PATH, this::handle);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        created.setExecutor(executor);
+        created.start();
+        server = created;
+        RadioLog.i(TAG, "Serving metrics on port {}", getPort());
+    }
+    
+    /**
+     * Stop serving; start() may be called again afterwards
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdown();
+        server = null;
+        executor = null;
+        RadioLog.i(TAG, "Stopped");
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            synchronized (this) {
+                int length = render();
+                exchange.sendResponseHeaders(200, head ? -1 : length);
+                if (!head) {
+                    exchange.getResponseBody().write(buffer, 0, length);
+                }
+            }
+        } catch (RuntimeException e) {
+            RadioLog.e(TAG, "Scrape failed", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    
+    // ==================== RENDERING ====================
+    
+    /**
+     * Render the current metrics and write them out (e.g. to a file for
+     * the node exporter's textfile collector)
+     */
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        int length = render();
+        out.write(buffer, 0, length);
+    }
+    
+    /**
+     * Render the current metrics into the buffer (caller holds the lock)
+     * 
+     * @return Number of bytes rendered
+     */
+    private int render() {
+        position = 0;
+        
+        write(FRAMES_HEADER);
+        for (int opcode = 0; opcode < OPCODE_SERIES.length; opcode++) {
+            long frames = metrics.getFrames(opcode);
+            if (frames > 0) {
+                writeSample(OPCODE_SERIES[opcode], frames);
+            }
+        }
+        writeSample(UNKNOWN_FRAMES, metrics.getUnknownFrames());
+        writeSample(PARSE_ERRORS, metrics.getParseErrors());
+        writeSample(CHECKSUM_FAILURES, metrics.getChecksumFailures());
+        writeSample(LISTENER_ERRORS, metrics.getListenerErrors());
+        
+        write(COMMANDS_HEADER);
+        for (int i = 0; i < COMMAND_SERIES.length; i++) {
+            writeSample(COMMAND_SERIES[i], metrics.getCommandsSent(i));
+        }
+        writeSample(COMMANDS_REJECTED, metrics.getCommandsRejected());
+        writeSample(WRITE_FAILURES, metrics.getWriteFailures());
+        
+        write(STATES_HEADER);
+        for (int i = 0; i < STATES.length; i++) {
+            writeSample(STATE_SERIES[i], metrics.getStateTransitions(STATES[i]));
+        }
+        writeSample(RECONNECTS, metrics.getReconnects());
+        writeSample(RESTARTS, metrics.getRestarts());
+        
+        writeHistogram(PARSE_LATENCY, metrics.getParseLatency());
+        writeHistogram(DISPATCH_LATENCY, metrics.getDispatchLatency());
+        return position;
+    }
+    
+    private void writeHistogram(HistogramText text, RadioLatencyHistogram histogram) {
+        histogram.snapshot(bucketCounts);
+        write(text.header);
+        long cumulative = 0;
+        int bucket = 0;
+        for (int i = 0; i < BOUND_BUCKETS.length; i++) {
+            for (; bucket <= BOUND_BUCKETS[i]; bucket++) {
+                cumulative += bucketCounts[bucket];
+            }
+            writeSample(text.buckets[i], cumulative);
+        }
+        for (; bucket < RadioLatencyHistogram.BUCKETS; bucket++) {
+            cumulative += bucketCounts[bucket];
+        }
+        writeSample(text.buckets[BOUND_BUCKETS.length], cumulative);
+        write(text.sum);
+        writeSeconds(histogram.getSum());
+        writeByte('\n');
+        // From the same snapshot as the buckets, so _count always equals +Inf
+        writeSample(text.count, cumulative);
+    }
+    
+    private void writeSample(byte[] series, long value) {
+        write(series);
+        writeLong(value);
+        writeByte('\n');
+    }
+    
+    /** Nanoseconds as decimal seconds with nine fraction digits */
+    private void writeSeconds(long nanos) {
+        writeLong(nanos / 1_000_000_000L);
+        writeByte('.');
+        long fraction = nanos % 1_000_000_000L;
+        ensureCapacity(9);
+        for (int i = 8; i >= 0; i--) {
+            buffer[position + i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        position += 9;
+    }
+    
+    private void writeLong(long value) {
+        if (value < 0) {
+            writeByte('-');
+            value = -value; // Counters never get near Long.MIN_VALUE
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        int count = digits.length - start;
+        ensureCapacity(count);
+        System.arraycopy(digits, start, buffer, position, count);
+        position += count;
+    }
+    
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+    
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) c;
+    }
+    
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            RadioLog.d(TAG, "Grew scrape buffer to {} bytes", buffer.length);
+        }
+    }
+    
+    
+    // ==================== ENCODING ====================
+    
+    private static int[] boundBuckets() {
+        int[] buckets = new int[(LAST_BOUND_EXPONENT - FIRST_BOUND_EXPONENT) / BOUND_STEP + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            long bound = (1L << (FIRST_BOUND_EXPONENT + i * BOUND_STEP)) - 1;
+            buckets[i] = RadioLatencyHistogram.bucketOf(bound);
+        }
+        return buckets;
+    }
+    
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%d.%09d", nanos / 1_000_000_000L, nanos % 1_000_000_000L);
+    }
+    
+    private static byte[] header(String name, String type, String help) {
+        return ascii(headerText(name, type, help));
+    }
+    
+    /** HELP and TYPE lines of an unlabelled counter, followed by its name */
+    private static byte[] counter(String name, String help) {
+        return ascii(headerText(name, "counter", help) + name + " ");
+    }
+    
+    private static String headerText(String name, String type, String help) {
+        return "# HELP " + name + " " + help + "\n# TYPE " + name + " " + type + "\n";
+    }
+    
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    
+    // ==================== COMMAND LINE ====================
+    
+    /**
+     * Serve metrics, optionally filled by replaying a capture first
+     * 
+     * The capture's notifications go through RadioProtocolHandler and its
+     * commands are counted as RadioBluetoothManager counts accepted writes;
+     * the manager itself needs android.bluetooth, so it is not constructed.
+     * 
+     * Usage: RadioPrometheusEndpoint [port] [capture.txt]
+     */
+    public static void main(String[] args) throws IOException {
+        RadioLog.setSink((priority, tag, message, error) -> System.err.println(tag + ": " + message));
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RadioMetrics metrics = new RadioMetrics();
+        
+        if (args.length > 1) {
+            File file = new File(args[1]);
+            List<RadioCaptureReader.Record> records = RadioCaptureReader.readRecords(file);
+            if (records.isEmpty()) {
+                records = RadioCaptureReader.toRecords(RadioCaptureReader.readFrames(file), 0);
+            } else {
+                File frames = new File(file.getAbsoluteFile().getParentFile(), "Messages From RF320.txt");
+                if (frames.isFile()) {
+                    records = RadioCaptureReader.completeValues(records, RadioCaptureReader.readFrames(frames));
+                }
+            }
+            RadioProtocolHandler handler = new RadioProtocolHandler();
+            handler.setStatusListener(new RadioListenerRegistry()); // Empty: wants every field, calls nobody
+            handler.setMetrics(metrics);
+            for (RadioCaptureReader.Record record : records) {
+                if (record.fromRadio) {
+                    handler.onNotificationReceived(record.value);
+                } else {
+                    metrics.onCommandSent(record.value);
+                }
+            }
+        }
+        
+        RadioPrometheusEndpoint endpoint = new RadioPrometheusEndpoint(metrics);
+        endpoint.start(port);
+        System.err.println(TAG + ": serving http://localhost:" + endpoint.getPort() + PATH);
+        try {
+            Thread.currentThread().join(); // Until interrupted or killed
+        } catch (InterruptedException e) {
+            endpoint.stop();
+        }
+    }
+    
+    
+    // ==================== GETTERS ====================
+    
+    /** Bound port, or -1 when not serving */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+    
+    public RadioMetrics getMetrics() {
+        return metrics;
+    }
+}